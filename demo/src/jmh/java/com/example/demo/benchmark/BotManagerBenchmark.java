@@ -0,0 +1,55 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.bot.BotManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Một tin nhắn đi qua toàn bộ bot mặc định (kiểm tra mute/ban, rồi canHandle/processMessage của từng bot)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BotManagerBenchmark {
+
+    // Số người gửi luân phiên: ít người thì SpamDetector báo spam liên tục, nhiều người thì gần như không
+    @Param({ "1000" })
+    public int users;
+
+    // Câu chat thường (phần lớn lưu lượng) và một lệnh bot
+    @Param({ "xin chào cả lớp", "/help" })
+    public String text;
+
+    private BotManager botManager;
+    private ChatMessage[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        botManager = new BotManager();
+        messages = new ChatMessage[users];
+        for (int i = 0; i < users; i++) {
+            messages[i] = new ChatMessage("user" + i, text, "general");
+        }
+    }
+
+    @Benchmark
+    public List<ChatMessage> processMessage() {
+        ChatMessage message = messages[next];
+        next = (next + 1) % messages.length;
+        return botManager.processMessage(message, null);
+    }
+}
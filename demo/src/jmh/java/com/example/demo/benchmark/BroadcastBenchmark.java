@@ -0,0 +1,75 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.room.ChatRoom;
+import com.example.demo.session.ClientSession;
+import com.example.demo.session.OutboundQueue;
+import com.example.demo.session.OverflowPolicy;
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.wire.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.WebSocketMessage;
+import java.util.concurrent.TimeUnit;
+
+// Phần việc của broadcastToRoom trên worker của phòng: encode một lần rồi đưa cùng frame
+// vào hàng đợi gửi của từng thành viên. Hàng đợi xả ngay trên thread gọi vào session giả
+// bỏ qua dữ liệu, nên số đo gồm cả lượt xả nhưng không có I/O mạng.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int members;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ChatMessage message = new ChatMessage("sv01", "xin chào cả lớp", "general");
+    private ChatRoom room;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        room = new ChatRoom("general");
+        for (int i = 0; i < members; i++) {
+            DiscardingSession session = new DiscardingSession("member-" + i, blackhole);
+            OutboundQueue outbound = new OutboundQueue(session, 256, OverflowPolicy.DROP_OLDEST, Runnable::run,
+                null, failed -> { });
+            room.add(new ClientSession(session, outbound, null));
+        }
+    }
+
+    @Benchmark
+    public void broadcastToRoom() throws Exception {
+        room.broadcast(OutboundFrame.encode(message, objectMapper));
+    }
+
+    // Session giả không giữ lại frame (StubWebSocketSession ghi lại mọi frame, sẽ đầy bộ nhớ)
+    private static final class DiscardingSession extends StubWebSocketSession {
+
+        private final Blackhole blackhole;
+
+        DiscardingSession(String id, Blackhole blackhole) {
+            super(id);
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            blackhole.consume(message);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+// Bước đầu tiên của mọi tin nhắn đến: payload JSON của client -> ChatMessage
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageParseBenchmark {
+
+    // Tin nhắn ngắn thường gặp và tin nhắn dài (dán đoạn code, câu hỏi bài tập)
+    @Param({ "24", "1024" })
+    public int length;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        String text = "xin chào các bạn nhé ".repeat(length / 20 + 1).substring(0, length);
+        payload = "{\"nickname\":\"sv01\",\"message\":\"" + text + "\",\"room\":\"general\"}";
+    }
+
+    @Benchmark
+    public ChatMessage readValue() throws Exception {
+        return objectMapper.readValue(payload, ChatMessage.class);
+    }
+}
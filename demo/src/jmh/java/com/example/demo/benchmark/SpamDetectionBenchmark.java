@@ -0,0 +1,51 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.bot.MessageEnvelope;
+import com.example.demo.bot.SpamDetectionBot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+// SpamDetector chạy với mọi tin nhắn: chi phí phụ thuộc số user đang theo dõi
+// và số mốc thời gian mỗi user tích lũy trong cửa sổ một phút
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpamDetectionBenchmark {
+
+    @Param({ "100", "10000", "100000" })
+    public int users;
+
+    private SpamDetectionBot bot;
+    private MessageEnvelope[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        bot = new SpamDetectionBot();
+        messages = new MessageEnvelope[users];
+        for (int i = 0; i < users; i++) {
+            messages[i] = MessageEnvelope.of(new ChatMessage("user" + i, "xin chào cả lớp", "general"));
+        }
+    }
+
+    @Benchmark
+    public ChatMessage processMessage() {
+        MessageEnvelope message = messages[next];
+        next = (next + 1) % messages.length;
+        return bot.canHandle(message) ? bot.processMessage(message, null) : null;
+    }
+}
@@ -1,41 +1,178 @@
 package com.example.demo;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.demo.bot.BotManager;
+import com.example.demo.bot.MessageEnvelope;
+import com.example.demo.chatlog.ChatLog;
+import com.example.demo.cluster.ClusterMode;
+import com.example.demo.cluster.LocalRoomEventBus;
+import com.example.demo.cluster.RoomEvent;
+import com.example.demo.cluster.RoomEventBus;
+import com.example.demo.cluster.TcpRoomEventBus;
+import com.example.demo.metrics.ChatMetrics;
+import com.example.demo.moderation.ModerationGate;
+import com.example.demo.room.ChatRoom;
+import com.example.demo.room.HistoryBudget;
+import com.example.demo.room.PresenceNotices;
+import com.example.demo.room.RoomEngine;
+import com.example.demo.room.RoomHistory;
+import com.example.demo.session.ClientSession;
+import com.example.demo.session.FlowControlledInbound;
+import com.example.demo.session.HeartbeatWheel;
+import com.example.demo.session.InboundMode;
+import com.example.demo.session.OutboundQueue;
+import com.example.demo.session.OutboundStats;
+import com.example.demo.session.ResumeToken;
+import com.example.demo.session.SerialExecutor;
+import com.example.demo.wire.BinaryChatCodec;
+import com.example.demo.wire.FrameCompressor;
+import com.example.demo.wire.OutboundFrame;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
-public class ChatHandler extends TextWebSocketHandler {
+public class ChatHandler extends AbstractWebSocketHandler implements SubProtocolCapable, DisposableBean {
 
-    // Map lưu trữ các phòng chat: key = tên phòng, value = Set các session
-    private final Map<String, Set<WebSocketSession>> rooms = new ConcurrentHashMap<>();
+    private final ChatProperties properties;
+
+    // Map lưu trữ các phòng chat: key = tên phòng, value = phòng.
+    // Chỉ worker sở hữu phòng (RoomEngine) mới thêm/xóa phòng đó; thread khác chỉ đọc
+    private final Map<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+    
+    // Lịch sử gần đây theo phòng, sống lâu hơn ChatRoom (phòng trống vẫn giữ lịch sử
+    // cho người kết nối lại trong chat.history.idle-ttl-ms). Cũng chỉ worker sở hữu phòng mới đọc/ghi
+    private final Map<String, RoomHistory> histories = new ConcurrentHashMap<>();
+    private final HistoryBudget historyBudget;
+    // Thời điểm phòng trống (chỉ worker sở hữu phòng đọc/ghi) và hẹn giờ giải phóng lịch sử của nó
+    // (null khi chat.history.idle-ttl-ms = 0: giải phóng ngay khi người cuối rời)
+    private final Map<String, Long> idleSince = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService historyTimer;
     
-    // Map lưu trữ session và phòng hiện tại của họ
-    private final Map<WebSocketSession, String> sessionRooms = new ConcurrentHashMap<>();
+    // Log tin nhắn trên đĩa (null khi chat.log.enabled = false)
+    private final ChatLog chatLog;
     
-    // Map lưu trữ session và nickname của họ
-    private final Map<WebSocketSession, String> sessionNicknames = new ConcurrentHashMap<>();
+    // Các kết nối đang mở theo session id (chỉ dùng cho thống kê, trạng thái
+    // của từng kết nối nằm trong ClientSession gắn vào session attributes)
+    private final Map<String, ClientSession> clients = new ConcurrentHashMap<>();
     
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // Nén frame nhị phân lớn (trả lời của bot...), null khi chat.compression.enabled = false
+    private final FrameCompressor compressor;
+    
+    // Số liệu vận hành (session, fan-out, độ trễ broadcast, bot, kiểm duyệt), xem /actuator/chat
+    private final ChatMetrics metrics = new ChatMetrics();
     
     // Bot Manager để xử lý các bot
-    private final BotManager botManager = new BotManager();
+    private final BotManager botManager;
+    // Quyết định cho qua/bỏ/hãm tin nhắn của người gửi trước khi bot chạy và trước khi phát
+    private final ModerationGate moderationGate;
+    
+    // Xả hàng đợi gửi của tất cả session
+    private final ExecutorService outboundExecutor;
+    // Hẹn giờ đóng cửa sổ gộp frame (null khi chat.outbound.batch-window-ms = 0)
+    private final ScheduledExecutorService batchScheduler;
+    
+    // Chế độ VIRTUAL_THREADS: tin nhắn đến được xử lý ngoài thread của container,
+    // mỗi session có một hàng đợi tuần tự riêng để giữ thứ tự
+    private final ExecutorService inboundExecutor;
+    // Chế độ FLOW_CONTROLLED: trần chung số thread của container bị chặn (null = không giới hạn)
+    private final Semaphore inboundBlockingPermits;
+    
+    // Một bánh xe hẹn giờ cho heartbeat của tất cả session (null khi chat.heartbeat.enabled = false)
+    private final HeartbeatWheel heartbeat;
+    private final ScheduledExecutorService heartbeatTimer;
+    
+    // Mỗi phòng thuộc về một worker đơn luồng: join/leave/broadcast/bot của phòng chạy tuần tự ở đó
+    private final RoomEngine roomEngine;
+    
+    // Thông báo join/leave đang gom theo phòng (chỉ worker sở hữu phòng đọc/ghi) và hẹn giờ phát
+    // (null khi chat.rooms.notice-window-ms = 0)
+    private final Map<String, PresenceNotices> presence = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService presenceTimer;
+    
+    // Mọi broadcast theo phòng đi qua bus để tới session trên tất cả các instance
+    private final RoomEventBus roomEvents;
+
+    public ChatHandler(ChatProperties properties) {
+        this.properties = properties;
+        ChatProperties.Bots bots = properties.getBots();
+        this.botManager = new BotManager(metrics, bots.getTimeoutMs(), bots.getLaneCapacity());
+        ChatProperties.Moderation moderation = properties.getModeration();
+        this.moderationGate = new ModerationGate(botManager.getModerationService(), metrics,
+            moderation.getRatePerSecond(), moderation.getBurst(), System::nanoTime);
+        ChatProperties.Compression compression = properties.getCompression();
+        this.compressor = compression.isEnabled()
+            ? new FrameCompressor(compression.getLevel(), compression.getMinSize())
+            : null;
+        this.outboundExecutor = Executors.newFixedThreadPool(properties.getOutbound().getDrainThreads(),
+            namedDaemonThreads("chat-outbound-"));
+        this.batchScheduler = properties.getOutbound().getBatchWindowMs() > 0
+            ? Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("chat-batch-timer-"))
+            : null;
+        this.inboundExecutor = properties.getInbound().getMode() != InboundMode.INLINE
+            ? createInboundExecutor(properties.getInbound().getFallbackThreads())
+            : null;
+        this.inboundBlockingPermits = properties.getInbound().getMaxBlockedThreads() > 0
+            ? new Semaphore(properties.getInbound().getMaxBlockedThreads())
+            : null;
+        
+        ChatProperties.Heartbeat heartbeatProperties = properties.getHeartbeat();
+        if (heartbeatProperties.isEnabled()) {
+            this.heartbeat = new HeartbeatWheel(heartbeatProperties.getTickMs(), heartbeatProperties.getPingIntervalMs(),
+                heartbeatProperties.getIdleTimeoutMs(), System::currentTimeMillis, this::evictIdle);
+            this.heartbeatTimer = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("chat-heartbeat-"));
+            this.heartbeat.start(heartbeatTimer);
+        } else {
+            this.heartbeat = null;
+            this.heartbeatTimer = null;
+        }
+        
+        this.historyBudget = new HistoryBudget(properties.getHistory().getMaxBytes());
+        this.historyTimer = properties.getHistory().getIdleTtlMs() > 0
+            ? Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("chat-history-timer-"))
+            : null;
+        this.chatLog = createChatLog(properties.getLog());
+        this.roomEngine = new RoomEngine(properties.getRooms().getWorkers());
+        this.presenceTimer = properties.getRooms().getNoticeWindowMs() > 0
+            ? Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("chat-presence-timer-"))
+            : null;
+        this.roomEvents = createRoomEventBus(properties.getCluster());
+    }
 
     @Override
     public void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        ClientSession client = ClientSession.of(session);
+        if (client == null) {
+            return;
+        }
         String payload = message.getPayload();
+        client.recordReceived();
         
         // Handle heartbeat/ping messages for mobile connection stability
         if ("ping".equals(payload)) {
-            session.sendMessage(new TextMessage("pong"));
+            client.send(OutboundFrame.PONG);
             return;
         }
         
@@ -44,44 +181,92 @@ public class ChatHandler extends TextWebSocketHandler {
             return;
         }
         
-        System.out.println("Message received: " + payload);
-
+        dispatch(client, () -> processMessage(client, payload));
+    }
+    
+    // Frame nhị phân chỉ đến từ client đã thỏa thuận subprotocol chat.bin.v1
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        ClientSession client = ClientSession.of(session);
+        if (client == null) {
+            return;
+        }
+        client.recordReceived();
+        
+        BinaryChatCodec.Frame frame;
         try {
-            // Parse JSON message
-            ChatMessage chatMessage = objectMapper.readValue(payload, ChatMessage.class);
-            
-            // Lưu nickname của session
-            sessionNicknames.put(session, chatMessage.getNickname());
-            
-            // Xử lý lệnh /join
-            if (chatMessage.getMessage().startsWith("/join ")) {
-                String newRoomName = chatMessage.getMessage().substring(6).trim();
-                if (!newRoomName.isEmpty()) {
-                    joinRoom(session, newRoomName);
-                    return;
-                }
+            frame = BinaryChatCodec.decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed binary frame from session " + session.getId() + ": " + e.getMessage());
+            session.close(CloseStatus.BAD_DATA);
+            return;
+        }
+        
+        switch (frame.type()) {
+            case BinaryChatCodec.TYPE_PING -> client.send(OutboundFrame.PONG);
+            case BinaryChatCodec.TYPE_PONG -> {
+                // Client responded to our ping, connection is alive
             }
-            
-            // Xử lý tin nhắn qua Bot Manager trước
-            List<ChatMessage> botResponses = botManager.processMessage(chatMessage, session);
-            
-            // Nếu có bot response, gửi chúng
-            for (ChatMessage botResponse : botResponses) {
-                broadcastToRoom(botResponse.getRoom(), botResponse, session);
+            default -> {
+                ChatMessage chatMessage = frame.message();
+                if (chatMessage.getMessage() != null) {
+                    dispatch(client, () -> processChatMessage(client, chatMessage));
+                }
             }
-            
-            // Nếu user bị mute/ban, bot đã xử lý và return, không gửi tin nhắn gốc
-            if (!botResponses.isEmpty() && 
-                botResponses.stream().anyMatch(r -> r.getMessage().contains("bị cấm") || r.getMessage().contains("bị tắt tiếng"))) {
-                return;
+        }
+    }
+    
+    // Trả lời cho ping tầng WebSocket của heartbeat
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        ClientSession client = ClientSession.of(session);
+        if (client != null) {
+            client.touch();
+        }
+    }
+    
+    @Override
+    public List<String> getSubProtocols() {
+        // Client không yêu cầu subprotocol nào thì vẫn dùng JSON như cũ
+        return List.of(BinaryChatCodec.PROTOCOL);
+    }
+    
+    // Xử lý ngay trên thread của container (INLINE) hoặc chuyển sang hàng đợi tuần tự của session
+    private void dispatch(ClientSession client, InboundTask task) throws IOException {
+        metrics.messageReceived();
+        Executor inbound = client.getInbound();
+        if (inbound == null) {
+            task.run();
+            return;
+        }
+        
+        // Trả thread của container về ngay (FLOW_CONTROLLED: chờ tới khi session còn demand),
+        // phần còn lại chạy tuần tự theo session
+        inbound.execute(() -> {
+            if (client.isClosed()) {
+                return; // Session đã đóng trong lúc tin nhắn còn chờ
             }
-            
-            // Xử lý tin nhắn bình thường (nếu không phải bot command)
-            String currentRoom = sessionRooms.get(session);
-            if (currentRoom != null && !chatMessage.getMessage().startsWith("/")) {
-                broadcastToRoom(currentRoom, chatMessage, session);
+            try {
+                task.run();
+            } catch (Exception e) {
+                System.err.println("Error processing message from session " + client.getId() + ": " + e.getMessage());
             }
-            
+        });
+    }
+    
+    @FunctionalInterface
+    private interface InboundTask {
+        void run() throws IOException;
+    }
+    
+    // Parse, chạy bot và broadcast một tin nhắn đến
+    private void processMessage(ClientSession client, String payload) throws IOException {
+        System.out.println("Message received: " + payload);
+
+        try {
+            // Parse JSON message
+            ChatMessage chatMessage = objectMapper.readValue(payload, ChatMessage.class);
+            processChatMessage(client, chatMessage);
         } catch (Exception e) {
             // Nếu không parse được JSON, xử lý như tin nhắn văn bản thường
             System.out.println("Failed to parse JSON, treating as plain text: " + e.getMessage());
@@ -90,121 +275,573 @@ public class ChatHandler extends TextWebSocketHandler {
             if (payload.startsWith("/join ")) {
                 String newRoomName = payload.substring(6).trim();
                 if (!newRoomName.isEmpty()) {
-                    joinRoom(session, newRoomName);
+                    joinRoom(client, newRoomName);
                     return;
                 }
             }
             
             // Gửi tin nhắn văn bản thường đến phòng hiện tại
-            String currentRoom = sessionRooms.get(session);
+            String currentRoom = client.getRoom();
             if (currentRoom != null) {
-                String nickname = sessionNicknames.getOrDefault(session, "Anonymous");
-                ChatMessage textMessage = new ChatMessage(nickname, payload, currentRoom);
-                
-                // Xử lý qua bot trước
-                List<ChatMessage> botResponses = botManager.processMessage(textMessage, session);
-                for (ChatMessage botResponse : botResponses) {
-                    broadcastToRoom(botResponse.getRoom(), botResponse, session);
-                }
-                
-                // Gửi tin nhắn gốc nếu không bị chặn
-                if (botResponses.isEmpty() || 
-                    !botResponses.stream().anyMatch(r -> r.getMessage().contains("bị cấm") || r.getMessage().contains("bị tắt tiếng"))) {
-                    broadcastToRoom(currentRoom, textMessage, session);
+                MessageEnvelope envelope = MessageEnvelope.of(new ChatMessage(client.getNickname(), payload, currentRoom),
+                    client.getRole());
+                if (admit(client, envelope)) {
+                    roomEngine.execute(currentRoom, () -> runBotsAndBroadcast(client, envelope, currentRoom, true));
                 }
             }
         }
     }
+    
+    // Xử lý một ChatMessage đã giải mã (từ JSON hoặc frame nhị phân)
+    private void processChatMessage(ClientSession client, ChatMessage chatMessage) throws IOException {
+        // Lưu nickname của session
+        client.setNickname(chatMessage.getNickname());
+        
+        // Phân tích một lần: lệnh /join, phân biệt lệnh/tin thường và mọi bot dùng chung kết quả.
+        // Quyền của lệnh kiểm duyệt theo vai trò của tài khoản đăng nhập, không theo nickname tự khai
+        MessageEnvelope envelope = MessageEnvelope.of(chatMessage, client.getRole());
+        
+        // Xử lý lệnh /join
+        if (envelope.isCommand("/join") && envelope.getArgCount() > 0) {
+            joinRoom(client, envelope.getArgsFrom(0));
+            return;
+        }
+        
+        String currentRoom = client.getRoom();
+        if (currentRoom != null && admit(client, envelope)) {
+            roomEngine.execute(currentRoom, () -> runBotsAndBroadcast(client, envelope, currentRoom, !envelope.isCommand()));
+        }
+    }
+    
+    // Verdict kiểm duyệt trước khi điều phối: tin nhắn bị bỏ hoặc bị hãm không vào hộp thư của
+    // phòng, không tới bot hay người nhận nào; chỉ người gửi nhận thông báo lý do. Xét theo tài khoản
+    // của session, nickname trong frame không ảnh hưởng
+    private boolean admit(ClientSession client, MessageEnvelope envelope) throws IOException {
+        ModerationGate.Verdict verdict = moderationGate.check(client.getIdentity());
+        if (verdict.allowed()) {
+            return true;
+        }
+        client.send(encode(new ChatMessage("🤖 System", verdict.notice(), envelope.getRoom())));
+        return false;
+    }
+    
+    // Chạy trên worker của phòng hiện tại, người gửi đã qua ModerationGate
+    private void runBotsAndBroadcast(ClientSession client, MessageEnvelope envelope, String roomName,
+                                     boolean broadcastOriginal) {
+        if (properties.getBots().isAsync()) {
+            // Tin nhắn gốc được phát luôn, bot chạy trên làn riêng và trả lời tới phòng khi xong
+            // (bot chậm không giữ worker của phòng)
+            if (broadcastOriginal) {
+                broadcastToRoom(roomName, envelope.getMessage());
+            }
+            client.setBotWork(botManager.processMessageAsync(envelope, client.getSession(),
+                reply -> broadcastToRoom(reply.getRoom(), reply)));
+            return;
+        }
+        
+        // Đồng bộ: trả lời của bot luôn đi trước tin nhắn gốc trong phòng
+        List<ChatMessage> botResponses = botManager.runBots(envelope, client.getSession());
+        for (ChatMessage botResponse : botResponses) {
+            broadcastToRoom(botResponse.getRoom(), botResponse);
+        }
+        
+        // Xử lý tin nhắn bình thường (nếu không phải bot command)
+        if (broadcastOriginal) {
+            broadcastToRoom(roomName, envelope.getMessage());
+        }
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        // Tự động thêm vào phòng general
-        joinRoom(session, "general");
-        System.out.println("New connection: " + session.getId() + " joined room: general");
+        ChatProperties.Outbound outbound = properties.getOutbound();
+        OutboundQueue queue = new OutboundQueue(session, outbound.getCapacity(), outbound.getOverflowPolicy(),
+            outboundExecutor, skipped -> coalescedNotice(session, skipped), this::onSendFailure,
+            batchScheduler, outbound.getBatchWindowMs(), outbound.getSendTimeLimitMs());
+        Executor inbound = createInbound(session);
+        
+        ClientSession client = new ClientSession(session, queue, inbound);
+        client.attach();
+        clients.put(session.getId(), client);
+        metrics.sessionOpened();
+        if (heartbeat != null) {
+            heartbeat.register(client);
+        }
+        
+        // Client kết nối lại báo phòng và số thứ tự cuối đã nhận: quay lại đúng phòng đó và
+        // chỉ nhận phần bị lỡ. Kết nối mới tự động vào phòng general
+        ResumeToken resume = ResumeToken.from(session.getUri());
+        String roomName = resume != null ? resume.room() : "general";
+        joinRoom(client, roomName, resume != null ? resume.lastSequence() : 0);
+        System.out.println("New connection: " + session.getId() + " joined room: " + roomName
+            + (resume != null ? " (resuming after " + resume.lastSequence() + ")" : ""));
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        // Xóa session khỏi phòng hiện tại
-        String currentRoom = sessionRooms.get(session);
-        if (currentRoom != null) {
-            leaveRoom(session, currentRoom);
+        ClientSession client = ClientSession.of(session);
+        if (client != null) {
+            disconnect(client, true);
         }
-        
-        // Xóa thông tin session
-        sessionRooms.remove(session);
-        sessionNicknames.remove(session);
-        
         System.out.println("Connection closed: " + session.getId());
     }
     
-    // Phương thức để join phòng
-    private void joinRoom(WebSocketSession session, String roomName) throws IOException {
-        // Rời phòng hiện tại (nếu có)
-        String currentRoom = sessionRooms.get(session);
-        if (currentRoom != null) {
-            leaveRoom(session, currentRoom);
+    // Đường dọn dẹp duy nhất cho một kết nối: rời phòng, đóng hàng đợi, gỡ trạng thái.
+    // Gọi nhiều lần (đóng bình thường và lỗi gửi) chỉ có tác dụng một lần.
+    private void disconnect(ClientSession client, boolean announce) {
+        if (!client.markClosed()) {
+            return;
+        }
+        metrics.sessionClosed();
+        String room;
+        synchronized (client) {
+            room = client.getRoom();
+            client.setRoom(null);
+        }
+        if (room != null) {
+            roomEngine.execute(room, () -> leaveRoom(client, room, announce));
+        }
+        client.getOutbound().close();
+        if (client.getInbound() instanceof FlowControlledInbound flow) {
+            flow.close();
+        }
+        clients.remove(client.getId(), client);
+        client.detach();
+    }
+    
+    // Gửi lỗi: session bị loại bỏ mà không thông báo cho phòng
+    private void onSendFailure(WebSocketSession session) {
+        metrics.sendFailure();
+        ClientSession client = ClientSession.of(session);
+        if (client != null) {
+            disconnect(client, false);
+        }
+    }
+    
+    // Client im lặng quá idle timeout (socket nửa sống nửa chết trên mạng di động):
+    // rời phòng ngay để broadcast không còn ghi vào kết nối chết, rồi đóng socket
+    private void evictIdle(ClientSession client) {
+        System.out.println("Evicting idle session: " + client.getId());
+        disconnect(client, true);
+        WebSocketSession session = client.getSession();
+        outboundExecutor.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Idle timeout"));
+            } catch (Exception e) {
+                System.err.println("Error closing idle session " + session.getId() + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    // Phương thức để join phòng: đổi phòng hiện tại ngay (tin nhắn tiếp theo của client đi vào
+    // phòng mới), việc rời phòng cũ và vào phòng mới chạy trên worker của từng phòng
+    private void joinRoom(ClientSession client, String roomName) {
+        joinRoom(client, roomName, 0);
+    }
+    
+    // lastSeen: số thứ tự cuối client đã nhận trong phòng này (0 = chưa nhận gì)
+    private void joinRoom(ClientSession client, String roomName, long lastSeen) {
+        String previous;
+        synchronized (client) {
+            if (client.isClosed()) {
+                return;
+            }
+            previous = client.getRoom();
+            client.setRoom(roomName);
+        }
+        
+        // Đã ở trong phòng này: chỉ xác nhận, không phát lại lịch sử hay thông báo rời/vào phòng.
+        // Chạy trên worker của phòng để xác nhận tới sau lần vào phòng còn đang chờ (nếu có)
+        if (roomName.equals(previous)) {
+            roomEngine.execute(roomName, () -> confirmJoin(client, roomName));
+            return;
         }
         
-        // Thêm vào phòng mới
-        rooms.computeIfAbsent(roomName, k -> ConcurrentHashMap.newKeySet()).add(session);
-        sessionRooms.put(session, roomName);
+        // Rời phòng hiện tại (nếu có)
+        if (previous != null) {
+            roomEngine.execute(previous, () -> leaveRoom(client, previous, true));
+        }
+        roomEngine.execute(roomName, () -> enterRoom(client, roomName, lastSeen));
+    }
+    
+    // Chạy trên worker sở hữu phòng
+    private void enterRoom(ClientSession client, String roomName, long lastSeen) {
+        // Client đã đóng hoặc đã chuyển tiếp sang phòng khác trước khi tới lượt
+        if (client.isClosed() || !roomName.equals(client.getRoom())) {
+            return;
+        }
+        rooms.computeIfAbsent(roomName, ChatRoom::new).add(client);
+        idleSince.remove(roomName);
         
         // Thông báo cho user
-        String nickname = sessionNicknames.getOrDefault(session, "Anonymous");
-        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(
-            new ChatMessage("System", "Bạn đã tham gia phòng: " + roomName, roomName)
-        )));
+        confirmJoin(client, roomName);
+        
+        // Phát lại thành một frame duy nhất: chỉ phần bị lỡ nếu còn đủ trong vòng đệm,
+        // nếu không thì toàn bộ lịch sử gần đây
+        RoomHistory history = historyFor(roomName);
+        if (history != null) {
+            List<OutboundFrame> replay = history.since(lastSeen);
+            if (replay == null) {
+                replay = history.snapshot();
+            }
+            if (!replay.isEmpty()) {
+                client.send(OutboundFrame.batchOf(replay));
+            }
+        }
         
         // Thông báo cho các user khác trong phòng
-        ChatMessage joinMessage = new ChatMessage("System", nickname + " đã tham gia phòng", roomName);
-        broadcastToRoom(roomName, joinMessage, session);
+        announce(roomName, client.getNickname(), true);
         
-        System.out.println("Session " + session.getId() + " joined room: " + roomName);
+        System.out.println("Session " + client.getId() + " joined room: " + roomName);
     }
     
-    // Phương thức để rời phòng
-    private void leaveRoom(WebSocketSession session, String roomName) throws IOException {
-        Set<WebSocketSession> roomSessions = rooms.get(roomName);
-        if (roomSessions != null) {
-            roomSessions.remove(session);
-            
-            // Xóa phòng nếu không còn ai
-            if (roomSessions.isEmpty()) {
-                rooms.remove(roomName);
-            } else {
-                // Thông báo cho các user khác trong phòng
-                String nickname = sessionNicknames.getOrDefault(session, "Anonymous");
-                ChatMessage leaveMessage = new ChatMessage("System", nickname + " đã rời phòng", roomName);
-                broadcastToRoom(roomName, leaveMessage, session);
+    private void confirmJoin(ClientSession client, String roomName) {
+        if (client.isClosed()) {
+            return;
+        }
+        try {
+            client.send(encode(new ChatMessage("System", "Bạn đã tham gia phòng: " + roomName, roomName)));
+        } catch (IOException e) {
+            System.err.println("Error encoding join confirmation: " + e.getMessage());
+        }
+    }
+    
+    // Phương thức để rời phòng, chạy trên worker sở hữu phòng
+    private void leaveRoom(ClientSession client, String roomName, boolean announce) {
+        ChatRoom room = rooms.get(roomName);
+        if (room == null || !room.remove(client)) {
+            return;
+        }
+        
+        // Xóa phòng nếu không còn ai
+        if (room.isEmpty()) {
+            rooms.remove(roomName, room);
+            historyIdle(roomName);
+        }
+        if (announce) {
+            // Thông báo cho các user khác trong phòng (kể cả ở instance khác)
+            announce(roomName, client.getNickname(), false);
+        }
+    }
+    
+    // Phòng vừa trống (chạy trên worker sở hữu phòng): lịch sử còn giữ cho người kết nối lại trong
+    // idle-ttl-ms, sau đó vòng đệm được trả về ngân sách chung để phòng tạm thời không giữ chỗ mãi
+    private void historyIdle(String roomName) {
+        if (!histories.containsKey(roomName)) {
+            return;
+        }
+        if (historyTimer == null) {
+            releaseHistory(roomName);
+            return;
+        }
+        long ttl = properties.getHistory().getIdleTtlMs();
+        idleSince.put(roomName, System.currentTimeMillis());
+        historyTimer.schedule(() -> roomEngine.execute(roomName, () -> releaseHistoryIfIdle(roomName, ttl)),
+            ttl, TimeUnit.MILLISECONDS);
+    }
+    
+    private void releaseHistoryIfIdle(String roomName, long ttl) {
+        Long since = idleSince.get(roomName);
+        // Phòng đã có người vào lại, hoặc trống lại sau đó (lần hẹn giờ sau sẽ xử lý)
+        if (since == null || rooms.containsKey(roomName) || System.currentTimeMillis() - since < ttl) {
+            return;
+        }
+        idleSince.remove(roomName);
+        releaseHistory(roomName);
+    }
+    
+    private void releaseHistory(String roomName) {
+        RoomHistory history = histories.remove(roomName);
+        if (history != null) {
+            history.release();
+        }
+    }
+    
+    // Thông báo join/leave, chạy trên worker sở hữu phòng. Khi bật cửa sổ gom, các thay đổi
+    // trong cửa sổ được phát thành một tin: bão kết nối lại không còn tạo N² thông báo
+    private void announce(String roomName, String nickname, boolean joined) {
+        if (presenceTimer == null) {
+            String text = nickname + (joined ? " đã tham gia phòng" : " đã rời phòng");
+            broadcastToRoom(roomName, new ChatMessage("System", text, roomName));
+            return;
+        }
+        PresenceNotices notices = presence.get(roomName);
+        if (notices == null) {
+            notices = new PresenceNotices();
+            presence.put(roomName, notices);
+            presenceTimer.schedule(() -> roomEngine.execute(roomName, () -> flushPresence(roomName)),
+                properties.getRooms().getNoticeWindowMs(), TimeUnit.MILLISECONDS);
+        }
+        if (joined) {
+            notices.joined(nickname);
+        } else {
+            notices.left(nickname);
+        }
+    }
+    
+    private void flushPresence(String roomName) {
+        PresenceNotices notices = presence.remove(roomName);
+        if (notices == null) {
+            return;
+        }
+        for (String text : notices.messages()) {
+            broadcastToRoom(roomName, new ChatMessage("System", text, roomName));
+        }
+    }
+    
+    // Phương thức broadcast tin nhắn đến tất cả user trong phòng (trên mọi instance).
+    // Không khóa toàn handler: mỗi phòng tự giữ thứ tự, các phòng chạy song song.
+    private void broadcastToRoom(String roomName, ChatMessage message) {
+        roomEvents.publish(roomName, message);
+    }
+    
+    // Sự kiện phòng từ bus (của instance này hoặc instance khác): gửi cho các session của phòng ở đây
+    private void onRoomEvent(RoomEvent event) {
+        long received = System.nanoTime();
+        String roomName = event.room();
+        if (chatLog != null) {
+            // Chỉ xếp hàng, luồng ghi của log lo phần đĩa; mỗi instance ghi mọi sự kiện của cluster
+            chatLog.append(roomName, event.message());
+        }
+        if (!rooms.containsKey(roomName)) {
+            return; // Không có ai trong phòng này ở instance này
+        }
+        OutboundFrame frame;
+        try {
+            // Serialize một lần (trên thread gọi), cả phòng dùng chung frame
+            frame = encode(event.message());
+        } catch (IOException e) {
+            System.err.println("Error encoding message for room " + roomName + ": " + e.getMessage());
+            return;
+        }
+        if (roomEngine.isOwner(roomName)) {
+            // Phát từ chính worker của phòng (join/leave, bot): gửi ngay cho thành viên hiện tại
+            deliver(roomName, frame, received);
+        } else {
+            roomEngine.execute(roomName, () -> deliver(roomName, frame, received));
+        }
+    }
+    
+    private void deliver(String roomName, OutboundFrame frame, long received) {
+        ChatRoom room = rooms.get(roomName);
+        if (room == null) {
+            return;
+        }
+        // Đánh số trên worker của phòng nên thứ tự số trùng thứ tự gửi
+        RoomHistory history = historyFor(roomName);
+        if (history != null) {
+            frame = frame.sequenced(history.nextSequence());
+            // Thông báo hệ thống (join/leave...) không được giữ lại để lịch sử chỉ chứa hội thoại
+            if (!"System".equals(frame.getMessage().getNickname())) {
+                history.append(frame);
             }
         }
+        room.broadcast(frame);
+        metrics.broadcast(room.size(), System.nanoTime() - received);
     }
     
-    // Phương thức broadcast tin nhắn đến tất cả user trong phòng
-    private synchronized void broadcastToRoom(String roomName, ChatMessage message, WebSocketSession sender) throws IOException {
-        Set<WebSocketSession> roomSessions = rooms.get(roomName);
-        if (roomSessions != null) {
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            
-            // Gửi đến tất cả session trong phòng (bao gồm cả người gửi)
-            // Sử dụng copy để tránh concurrent modification
-            Set<WebSocketSession> sessionsCopy = new HashSet<>(roomSessions);
-            for (WebSocketSession session : sessionsCopy) {
-                try {
-                    if (session.isOpen()) {
-                        synchronized (session) {
-                            session.sendMessage(new TextMessage(jsonMessage));
-                        }
+    // Lịch sử của phòng (chạy trên worker sở hữu phòng). Khi tạo (lần đầu phòng được dùng hoặc sau
+    // khi đã giải phóng), vòng đệm được nạp lại từ phần log trên đĩa. null khi tắt lịch sử hoặc hết ngân sách.
+    // Số thứ tự bắt đầu sau mốc micro giây lúc tạo vòng đệm: số client còn giữ từ lần chạy trước,
+    // từ instance khác hay từ vòng đệm đã giải phóng của phòng này không rơi vào khoảng đang dùng,
+    // server sẽ gửi lịch sử đầy đủ
+    private RoomHistory historyFor(String roomName) {
+        RoomHistory history = histories.get(roomName);
+        int size = properties.getHistory().getSize();
+        if (history != null || size <= 0) {
+            return history;
+        }
+        history = RoomHistory.create(size, historyBudget, System.currentTimeMillis() * 1000);
+        if (history == null) {
+            return null; // Đã chạm trần bộ nhớ chung, phòng mới không có lịch sử
+        }
+        if (chatLog != null) {
+            for (ChatMessage message : chatLog.recoveredMessages(roomName, size)) {
+                if (!"System".equals(message.getNickname())) {
+                    try {
+                        history.append(encode(message).sequenced(history.nextSequence()));
+                    } catch (IOException e) {
+                        System.err.println("Error encoding logged message for room " + roomName + ": " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    System.err.println("Error sending message to session: " + e.getMessage());
-                    // Remove broken session
-                    roomSessions.remove(session);
-                    sessionRooms.remove(session);
-                    sessionNicknames.remove(session);
                 }
             }
         }
+        histories.put(roomName, history);
+        return history;
+    }
+    
+    private OutboundFrame encode(ChatMessage message) throws IOException {
+        return OutboundFrame.encode(message, objectMapper, compressor);
+    }
+    
+    // Thông báo thay cho các tin nhắn bị gộp khi client quá chậm (chính sách COALESCE)
+    private OutboundFrame coalescedNotice(WebSocketSession session, int skipped) {
+        ClientSession client = ClientSession.of(session);
+        String room = client != null ? client.getRoom() : null;
+        try {
+            return encode(new ChatMessage("System",
+                "⚠️ Kết nối chậm: đã bỏ qua " + skipped + " tin nhắn", room));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    // Số liệu hàng đợi gửi của từng session, session chậm nhất đứng đầu
+    public List<OutboundStats> getOutboundStats() {
+        List<OutboundStats> stats = new ArrayList<>();
+        for (ClientSession client : clients.values()) {
+            stats.add(client.stats());
+        }
+        stats.sort(Comparator.comparingInt(OutboundStats::depth).thenComparingLong(OutboundStats::dropped).reversed());
+        return stats;
+    }
+    
+    public int getSessionCount() {
+        return clients.size();
+    }
+    
+    public int getRoomCount() {
+        return rooms.size();
+    }
+    
+    // Số task đang chờ trong hộp thư của các worker phòng
+    public int getPendingRoomTasks() {
+        return roomEngine.getPendingCount();
+    }
+    
+    public long getHistoryBytes() {
+        return historyBudget.getUsedBytes();
+    }
+    
+    // Ảnh chụp số liệu cho endpoint, kèm số đo hiện tại: session/phòng đang mở và số thành viên
+    // (fan-out của mỗi broadcast) từng phòng
+    public Map<String, Object> getMetrics() {
+        long dropped = 0;
+        for (ClientSession client : clients.values()) {
+            dropped += client.getOutbound().getDroppedCount();
+        }
+        Map<String, Object> snapshot = metrics.snapshot(clients.size(), dropped);
+        
+        Map<String, Integer> fanOut = new TreeMap<>();
+        rooms.forEach((name, room) -> fanOut.put(name, room.size()));
+        Map<String, Object> roomStats = new LinkedHashMap<>();
+        roomStats.put("active", rooms.size());
+        roomStats.put("fanOut", fanOut);
+        roomStats.put("historyBytes", historyBudget.getUsedBytes());
+        snapshot.put("rooms", roomStats);
+        return snapshot;
+    }
+    
+    public ChatMetrics getChatMetrics() {
+        return metrics;
+    }
+    
+    private static ChatLog createChatLog(ChatProperties.Log log) {
+        if (!log.isEnabled()) {
+            return null;
+        }
+        try {
+            return new ChatLog(Path.of(log.getDirectory()), log.getSegmentBytes(), log.getIndexInterval(),
+                log.getMaxSegments());
+        } catch (IOException e) {
+            // Không mở được thư mục log: chat vẫn chạy, chỉ là không lưu
+            System.err.println("Chat log disabled, cannot open " + log.getDirectory() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private RoomEventBus createRoomEventBus(ChatProperties.Cluster cluster) {
+        if (cluster.getMode() != ClusterMode.TCP) {
+            RoomEventBus bus = new LocalRoomEventBus(cluster.getNodeId());
+            bus.start(this::onRoomEvent);
+            return bus;
+        }
+        TcpRoomEventBus bus = new TcpRoomEventBus(cluster.getNodeId(), cluster.getBindAddress(), cluster.getPort(),
+            cluster.getSecret());
+        bus.start(this::onRoomEvent);
+        for (String peer : cluster.getPeers()) {
+            int colon = peer.lastIndexOf(':');
+            bus.addPeer(new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim())));
+        }
+        return bus;
+    }
+    
+    // Virtual thread cho mỗi tin nhắn nếu JVM hỗ trợ (Java 21+), nếu không thì dùng pool cố định
+    private Executor createInbound(WebSocketSession session) {
+        ChatProperties.Inbound inbound = properties.getInbound();
+        return switch (inbound.getMode()) {
+            case INLINE -> null;
+            case VIRTUAL_THREADS -> new SerialExecutor(inboundExecutor);
+            case FLOW_CONTROLLED -> new FlowControlledInbound(inboundExecutor, inbound.getWindow(),
+                inbound.getBufferSize(), inbound.getMaxBlockMs(), inboundBlockingPermits,
+                release -> afterRoomWork(session, release),
+                metrics::inboundDropped);
+        };
+    }
+    
+    // Trả demand qua hộp thư của worker sở hữu phòng: chạy sau mọi việc đã xếp trước đó của phòng
+    // (bot, fan-out của tin nhắn vừa xử lý), nên phòng bị dồn việc sẽ làm chậm chính người gửi vào nó
+    private void afterRoomWork(WebSocketSession session, Runnable release) {
+        ClientSession client = ClientSession.of(session);
+        String room = client != null ? client.getRoom() : null;
+        if (room == null) {
+            release.run();
+        } else {
+            roomEngine.execute(room, () -> {
+                // Bot bất đồng bộ: chờ thêm tới khi bot của tin nhắn gần nhất đã trả lời (tối đa
+                // chat.bots.timeout-ms) để trả lời của bot cũng nằm trong giới hạn của người gửi
+                CompletableFuture<Void> botWork = client.getBotWork();
+                if (botWork == null || botWork.isDone()) {
+                    release.run();
+                } else {
+                    botWork.whenComplete((ignored, error) -> release.run());
+                }
+            });
+        }
+    }
+    
+    private static ExecutorService createInboundExecutor(int fallbackThreads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            System.out.println("Inbound messages are processed on virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads unavailable, using " + fallbackThreads + " inbound threads");
+            return Executors.newFixedThreadPool(fallbackThreads, namedDaemonThreads("chat-inbound-"));
+        }
+    }
+    
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @Override
+    public void destroy() {
+        roomEvents.close();
+        roomEngine.shutdown();
+        if (chatLog != null) {
+            chatLog.close();
+        }
+        if (heartbeatTimer != null) {
+            heartbeatTimer.shutdownNow();
+        }
+        if (presenceTimer != null) {
+            presenceTimer.shutdownNow();
+        }
+        if (historyTimer != null) {
+            historyTimer.shutdownNow();
+        }
+        outboundExecutor.shutdownNow();
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        if (inboundExecutor != null) {
+            inboundExecutor.shutdownNow();
+        }
+        botManager.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,348 @@
+package com.example.demo;
+
+import com.example.demo.cluster.ClusterMode;
+import com.example.demo.session.InboundMode;
+import com.example.demo.session.OverflowPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cấu hình cho phần chat realtime (tiền tố "chat." trong application.properties)
+@Component
+@ConfigurationProperties(prefix = "chat")
+public class ChatProperties {
+
+    private final Outbound outbound = new Outbound();
+    private final Inbound inbound = new Inbound();
+    private final Compression compression = new Compression();
+    private final Heartbeat heartbeat = new Heartbeat();
+    private final Cluster cluster = new Cluster();
+    private final Rooms rooms = new Rooms();
+    private final History history = new History();
+    private final Log log = new Log();
+    private final Admission admission = new Admission();
+    private final Bots bots = new Bots();
+    private final Moderation moderation = new Moderation();
+
+    public Outbound getOutbound() {
+        return outbound;
+    }
+
+    public Inbound getInbound() {
+        return inbound;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public Heartbeat getHeartbeat() {
+        return heartbeat;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Rooms getRooms() {
+        return rooms;
+    }
+
+    public History getHistory() {
+        return history;
+    }
+
+    public Log getLog() {
+        return log;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Bots getBots() {
+        return bots;
+    }
+
+    public Moderation getModeration() {
+        return moderation;
+    }
+
+    // Cấu hình hàng đợi gửi của từng session
+    public static class Outbound {
+        // Số frame tối đa chờ gửi cho một session
+        private int capacity = 256;
+        // Xử lý khi hàng đợi đầy: DROP_OLDEST, COALESCE hoặc DISCONNECT
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+        // Số thread dùng chung để xả hàng đợi của tất cả session
+        private int drainThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        // Cửa sổ gộp frame (ms), 0 = tắt; khi bật, tin nhắn trong cửa sổ được gửi chung một mảng JSON
+        private long batchWindowMs = 0;
+        // Thời gian tối đa một lần ghi ra socket được kẹt trước khi session bị ngắt (0 = không giới hạn)
+        private long sendTimeLimitMs = 10_000;
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+
+        public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) { this.overflowPolicy = overflowPolicy; }
+
+        public int getDrainThreads() { return drainThreads; }
+        public void setDrainThreads(int drainThreads) { this.drainThreads = drainThreads; }
+
+        public long getBatchWindowMs() { return batchWindowMs; }
+        public void setBatchWindowMs(long batchWindowMs) { this.batchWindowMs = batchWindowMs; }
+
+        public long getSendTimeLimitMs() { return sendTimeLimitMs; }
+        public void setSendTimeLimitMs(long sendTimeLimitMs) { this.sendTimeLimitMs = sendTimeLimitMs; }
+    }
+
+    // Cấu hình xử lý tin nhắn đến
+    public static class Inbound {
+        // INLINE hoặc VIRTUAL_THREADS
+        private InboundMode mode = InboundMode.INLINE;
+        // Số thread của pool dự phòng khi JVM chưa hỗ trợ virtual thread
+        private int fallbackThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        // FLOW_CONTROLLED: số tin nhắn của một session được xử lý mà phòng chưa xong
+        private int window = 8;
+        // FLOW_CONTROLLED: số tin nhắn chờ thêm trước khi chặn thread của container
+        private int bufferSize = 16;
+        // FLOW_CONTROLLED: thời gian chặn tối đa, quá thì bỏ tin nhắn (không giữ thread mãi)
+        private long maxBlockMs = 1000;
+        // FLOW_CONTROLLED: số thread của container bị chặn cùng lúc tối đa (mọi session cộng lại),
+        // quá thì tin nhắn bị bỏ ngay thay vì chặn thêm thread (0 = không giới hạn)
+        private int maxBlockedThreads = 32;
+
+        public InboundMode getMode() { return mode; }
+        public void setMode(InboundMode mode) { this.mode = mode; }
+
+        public int getFallbackThreads() { return fallbackThreads; }
+        public void setFallbackThreads(int fallbackThreads) { this.fallbackThreads = fallbackThreads; }
+
+        public int getWindow() { return window; }
+        public void setWindow(int window) { this.window = window; }
+
+        public int getBufferSize() { return bufferSize; }
+        public void setBufferSize(int bufferSize) { this.bufferSize = bufferSize; }
+
+        public long getMaxBlockMs() { return maxBlockMs; }
+        public void setMaxBlockMs(long maxBlockMs) { this.maxBlockMs = maxBlockMs; }
+
+        public int getMaxBlockedThreads() { return maxBlockedThreads; }
+        public void setMaxBlockedThreads(int maxBlockedThreads) { this.maxBlockedThreads = maxBlockedThreads; }
+    }
+
+    // Nén deflate (từ điển dùng chung) cho frame của client dùng subprotocol nhị phân
+    public static class Compression {
+        private boolean enabled = true;
+        // Mức nén 1 (nhanh nhất) đến 9 (nhỏ nhất)
+        private int level = 6;
+        // Thân frame nhỏ hơn ngưỡng này (bytes) được gửi nguyên văn
+        private int minSize = 256;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getLevel() { return level; }
+        public void setLevel(int level) { this.level = level; }
+
+        public int getMinSize() { return minSize; }
+        public void setMinSize(int minSize) { this.minSize = minSize; }
+    }
+
+    // Heartbeat do server điều khiển, chạy trên một bánh xe hẹn giờ chung cho mọi session
+    public static class Heartbeat {
+        private boolean enabled = true;
+        // Client im lặng lâu hơn khoảng này thì được gửi ping
+        private long pingIntervalMs = 25_000;
+        // Client im lặng lâu hơn khoảng này thì bị loại khỏi phòng và đóng kết nối
+        private long idleTimeoutMs = 60_000;
+        // Độ phân giải của bánh xe hẹn giờ
+        private long tickMs = 1_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public long getPingIntervalMs() { return pingIntervalMs; }
+        public void setPingIntervalMs(long pingIntervalMs) { this.pingIntervalMs = pingIntervalMs; }
+
+        public long getIdleTimeoutMs() { return idleTimeoutMs; }
+        public void setIdleTimeoutMs(long idleTimeoutMs) { this.idleTimeoutMs = idleTimeoutMs; }
+
+        public long getTickMs() { return tickMs; }
+        public void setTickMs(long tickMs) { this.tickMs = tickMs; }
+    }
+
+    // Phát tin nhắn theo phòng giữa nhiều instance
+    public static class Cluster {
+        // LOCAL (một instance) hoặc TCP
+        private ClusterMode mode = ClusterMode.LOCAL;
+        // Tên của instance này, khác nhau giữa các instance
+        private String nodeId = "node-1";
+        // Địa chỉ nghe sự kiện từ các instance khác, mặc định chỉ loopback
+        private String bindAddress = "127.0.0.1";
+        // Cổng nhận sự kiện từ các instance khác (chế độ TCP)
+        private int port = 7400;
+        // Secret chung của mọi instance, peer không chứng minh được sẽ bị ngắt (bắt buộc ở chế độ TCP)
+        private String secret = "";
+        // Địa chỉ host:port của các instance khác
+        private List<String> peers = new ArrayList<>();
+
+        public ClusterMode getMode() { return mode; }
+        public void setMode(ClusterMode mode) { this.mode = mode; }
+
+        public String getNodeId() { return nodeId; }
+        public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+        public String getBindAddress() { return bindAddress; }
+        public void setBindAddress(String bindAddress) { this.bindAddress = bindAddress; }
+
+        public int getPort() { return port; }
+        public void setPort(int port) { this.port = port; }
+
+        public String getSecret() { return secret; }
+        public void setSecret(String secret) { this.secret = secret; }
+
+        public List<String> getPeers() { return peers; }
+        public void setPeers(List<String> peers) { this.peers = peers; }
+    }
+
+    // Mô hình actor theo phòng
+    public static class Rooms {
+        // Số worker đơn luồng, các phòng được băm theo tên vào các worker
+        private int workers = Runtime.getRuntime().availableProcessors();
+        // Gom thông báo join/leave của mỗi phòng trong cửa sổ N ms (0 = gửi ngay từng thông báo)
+        private long noticeWindowMs = 0;
+
+        public int getWorkers() { return workers; }
+        public void setWorkers(int workers) { this.workers = workers; }
+
+        public long getNoticeWindowMs() { return noticeWindowMs; }
+        public void setNoticeWindowMs(long noticeWindowMs) { this.noticeWindowMs = noticeWindowMs; }
+    }
+
+    // Lịch sử gần đây của từng phòng, phát lại khi join/kết nối lại
+    public static class History {
+        // Số tin nhắn giữ lại mỗi phòng (0 = tắt)
+        private int size = 50;
+        // Trần bộ nhớ chung cho lịch sử của tất cả các phòng
+        private long maxBytes = 16L * 1024 * 1024;
+        // Phòng không còn ai quá lâu thì trả vòng đệm về ngân sách chung (0 = trả ngay khi người cuối rời)
+        private long idleTtlMs = 300_000;
+
+        public int getSize() { return size; }
+        public void setSize(int size) { this.size = size; }
+
+        public long getMaxBytes() { return maxBytes; }
+        public void setMaxBytes(long maxBytes) { this.maxBytes = maxBytes; }
+
+        public long getIdleTtlMs() { return idleTtlMs; }
+        public void setIdleTtlMs(long idleTtlMs) { this.idleTtlMs = idleTtlMs; }
+    }
+
+    // Log chat bền vững trên đĩa (segment file map vào bộ nhớ)
+    public static class Log {
+        private boolean enabled = false;
+        private String directory = "data/chat-log";
+        // Kích thước mỗi segment file
+        private int segmentBytes = 64 * 1024 * 1024;
+        // Chỉ mục thưa: lưu offset của một trên mỗi N tin nhắn của phòng
+        private int indexInterval = 64;
+        // Số segment giữ lại, segment cũ nhất bị xóa khi vượt quá
+        private int maxSegments = 16;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+
+        public int getSegmentBytes() { return segmentBytes; }
+        public void setSegmentBytes(int segmentBytes) { this.segmentBytes = segmentBytes; }
+
+        public int getIndexInterval() { return indexInterval; }
+        public void setIndexInterval(int indexInterval) { this.indexInterval = indexInterval; }
+
+        public int getMaxSegments() { return maxSegments; }
+        public void setMaxSegments(int maxSegments) { this.maxSegments = maxSegments; }
+    }
+
+    // Kiểm soát kết nối mới ở handshake /chat
+    public static class Admission {
+        private boolean enabled = true;
+        // Số kết nối đồng thời tối đa của instance
+        private int maxConnections = 10000;
+        // Số handshake mỗi giây cho một IP, và số handshake dồn một lúc được phép
+        private double perIpRate = 2;
+        private int perIpBurst = 10;
+        // Tốc độ nhận handshake chung, phần vượt phải xếp hàng chờ
+        private double handshakesPerSecond = 100;
+        // Thời gian chờ tối đa trong hàng, quá thì từ chối
+        private long maxQueueMs = 1000;
+        // Số handshake tối đa được chờ khe cùng lúc (mỗi handshake giữ một thread của container);
+        // quá thì trả 503 với Retry-After tới khe của nó
+        private int maxWaiting = 16;
+        // Địa chỉ IP của reverse proxy đứng trước server; chỉ với kết nối từ các địa chỉ này
+        // X-Forwarded-For mới được dùng để lấy IP của client cho bucket theo IP
+        private List<String> trustedProxies = new ArrayList<>();
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+        public double getPerIpRate() { return perIpRate; }
+        public void setPerIpRate(double perIpRate) { this.perIpRate = perIpRate; }
+
+        public int getPerIpBurst() { return perIpBurst; }
+        public void setPerIpBurst(int perIpBurst) { this.perIpBurst = perIpBurst; }
+
+        public double getHandshakesPerSecond() { return handshakesPerSecond; }
+        public void setHandshakesPerSecond(double handshakesPerSecond) { this.handshakesPerSecond = handshakesPerSecond; }
+
+        public long getMaxQueueMs() { return maxQueueMs; }
+        public void setMaxQueueMs(long maxQueueMs) { this.maxQueueMs = maxQueueMs; }
+
+        public int getMaxWaiting() { return maxWaiting; }
+        public void setMaxWaiting(int maxWaiting) { this.maxWaiting = maxWaiting; }
+
+        public List<String> getTrustedProxies() { return trustedProxies; }
+        public void setTrustedProxies(List<String> trustedProxies) { this.trustedProxies = trustedProxies; }
+    }
+
+    // Chạy bot: đồng bộ trước khi phát tin nhắn gốc, hoặc bất đồng bộ trên làn riêng của từng bot
+    public static class Bots {
+        // true: tin nhắn của người dùng được phát ngay, trả lời của bot tới sau khi bot xong
+        private boolean async = true;
+        // Thời gian tối đa cho một lần gọi bot (kể cả lúc chờ trong làn), quá thì bỏ trả lời
+        private long timeoutMs = 2000;
+        // Số lần gọi chờ tối đa của mỗi bot, quá thì từ chối lần gọi mới
+        private int laneCapacity = 64;
+
+        public boolean isAsync() { return async; }
+        public void setAsync(boolean async) { this.async = async; }
+
+        public long getTimeoutMs() { return timeoutMs; }
+        public void setTimeoutMs(long timeoutMs) { this.timeoutMs = timeoutMs; }
+
+        public int getLaneCapacity() { return laneCapacity; }
+        public void setLaneCapacity(int laneCapacity) { this.laneCapacity = laneCapacity; }
+    }
+
+    // Kiểm duyệt trước khi điều phối (ModerationGate): cấm/tắt tiếng luôn bị chặn, thêm giới hạn
+    // tốc độ gửi theo từng người
+    public static class Moderation {
+        // Số tin nhắn mỗi giây của một người gửi (0 = không giới hạn), vượt thì tin nhắn bị hãm
+        private double ratePerSecond = 0;
+        // Số tin nhắn gửi dồn một lúc được phép
+        private int burst = 10;
+
+        public double getRatePerSecond() { return ratePerSecond; }
+        public void setRatePerSecond(double ratePerSecond) { this.ratePerSecond = ratePerSecond; }
+
+        public int getBurst() { return burst; }
+        public void setBurst(int burst) { this.burst = burst; }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.Map;
+
+@RestController
+public class MetricsController {
+
+    private final ChatHandler chatHandler;
+
+    public MetricsController(ChatHandler chatHandler) {
+        this.chatHandler = chatHandler;
+    }
+
+    // Số liệu vận hành của chat theo kiểu endpoint actuator: session, phòng, fan-out,
+    // độ trễ broadcast, lỗi gửi, thời gian từng bot và các hành động kiểm duyệt
+    @GetMapping("/actuator/chat")
+    public Map<String, Object> chatMetrics() {
+        return chatHandler.getMetrics();
+    }
+}
@@ -63,6 +63,8 @@ public class SecurityConfig {
         http
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/login", "/css/**", "/js/**", "/images/**", "/chat").permitAll()
+                // Thống kê phiên (id, nickname, phòng của mọi người) và metrics chỉ dành cho người điều hành
+                .requestMatchers("/api/sessions/**", "/actuator/**").hasAnyRole("ADMIN", "TEACHER")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
@@ -0,0 +1,22 @@
+package com.example.demo;
+
+import com.example.demo.session.OutboundStats;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import java.util.List;
+
+@RestController
+public class SessionStatsController {
+
+    private final ChatHandler chatHandler;
+
+    public SessionStatsController(ChatHandler chatHandler) {
+        this.chatHandler = chatHandler;
+    }
+
+    // Độ sâu hàng đợi và số frame bị bỏ của từng session (client chậm đứng đầu)
+    @GetMapping("/api/sessions/outbound")
+    public List<OutboundStats> outboundStats() {
+        return chatHandler.getOutboundStats();
+    }
+}
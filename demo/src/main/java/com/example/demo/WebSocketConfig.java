@@ -1,16 +1,41 @@
 package com.example.demo;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import com.example.demo.admission.AdmissionControl;
+import com.example.demo.admission.AdmissionInterceptor;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private final ChatHandler chatHandler;
+    private final ChatProperties properties;
+
+    public WebSocketConfig(ChatHandler chatHandler, ChatProperties properties) {
+        this.chatHandler = chatHandler;
+        this.properties = properties;
+    }
+
+    @Bean
+    public AdmissionControl admissionControl() {
+        ChatProperties.Admission admission = properties.getAdmission();
+        return new AdmissionControl(admission.getMaxConnections(), admission.getPerIpRate(), admission.getPerIpBurst(),
+            admission.getHandshakesPerSecond(), admission.getMaxQueueMs(), chatHandler::getSessionCount, System::nanoTime);
+    }
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new ChatHandler(), "/chat").setAllowedOrigins("*");
+        WebSocketHandlerRegistration registration = registry.addHandler(chatHandler, "/chat");
+        if (properties.getAdmission().isEnabled()) {
+            ChatProperties.Admission admission = properties.getAdmission();
+            registration.addInterceptors(new AdmissionInterceptor(admissionControl(), admission.getMaxWaiting(),
+                admission.getTrustedProxies()));
+        }
+        registration.setAllowedOrigins("*");
     }
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package com.example.demo.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+// Kiểm soát kết nối mới ở tầng handshake, không dùng khóa:
+// - trần số kết nối đồng thời của cả server
+// - token bucket theo IP (dạng GCRA: mỗi IP chỉ là một AtomicLong "thời điểm đến lý thuyết")
+// - hàng đợi làm mượt: handshake vượt tốc độ chung được xếp lịch vào các khe cách đều nhau
+//   và chờ tới khe của mình, quá maxQueue thì bị từ chối ngay
+// Nhờ vậy một đợt kết nối lại hàng nghìn phiên sau sự cố Wi-Fi được trải ra theo thời gian
+// thay vì dồn vào cùng một lúc.
+public class AdmissionControl {
+
+    public enum Verdict {
+        ADMITTED,
+        RATE_LIMITED,   // IP này kết nối quá nhanh (429)
+        OVER_CAPACITY,  // Đã đủ số kết nối tối đa (503)
+        QUEUE_FULL,     // Hàng đợi làm mượt đã dài quá maxQueue (503)
+        DEFERRED        // Phải chờ khe nhưng người gọi không giữ thread chờ được (503 + Retry-After)
+    }
+
+    // delayNanos: thời gian handshake phải chờ tới khe của mình (ADMITTED), hoặc tới khe trống
+    // gần nhất khi bị hoãn (DEFERRED)
+    public record Decision(Verdict verdict, long delayNanos) {
+        public boolean admitted() {
+            return verdict == Verdict.ADMITTED;
+        }
+    }
+
+    // Số IP tối đa giữ trong bảng trước khi dọn các bucket đã đầy lại
+    private static final int SWEEP_THRESHOLD = 10_000;
+    private static final long QUEUE_FULL_WAIT = Long.MIN_VALUE;
+
+    private final int maxConnections;
+    private final long ipIntervalNanos;
+    // Số nanos "vay trước" tối đa của một IP = (burst - 1) * interval
+    private final long ipToleranceNanos;
+    private final long slotIntervalNanos;
+    private final long maxQueueNanos;
+    private final IntSupplier activeConnections;
+    private final LongSupplier clock;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // Khe trống tiếp theo của hàng đợi làm mượt
+    private final AtomicLong nextSlot = new AtomicLong(Long.MIN_VALUE);
+    // Handshake đã được nhận nhưng chưa xong (đang chờ khe hoặc đang nâng cấp kết nối)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastSweep = new AtomicLong(Long.MIN_VALUE);
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong overCapacity = new AtomicLong();
+    private final AtomicLong queueFull = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public AdmissionControl(int maxConnections, double perIpRate, int perIpBurst, double handshakesPerSecond,
+                            long maxQueueMillis, IntSupplier activeConnections, LongSupplier nanoClock) {
+        this.maxConnections = maxConnections;
+        this.ipIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perIpRate);
+        this.ipToleranceNanos = ipIntervalNanos * Math.max(0, perIpBurst - 1);
+        this.slotIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / handshakesPerSecond);
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        this.activeConnections = activeConnections;
+        this.clock = nanoClock;
+    }
+
+    // Gọi một lần cho mỗi handshake; nếu ADMITTED thì phải gọi handshakeFinished() khi handshake xong
+    public Decision tryAdmit(String ip) {
+        return tryAdmit(ip, true);
+    }
+
+    // canWait = false: handshake chỉ được nhận nếu không phải chờ khe. Nếu phải chờ thì trả về
+    // DEFERRED mà không giữ khe, không tiêu token của IP và không tính vào inFlight, để các
+    // handshake bị hoãn không đẩy khe của những handshake sau ra xa hơn
+    public Decision tryAdmit(String ip, boolean canWait) {
+        // Trần mềm: kết nối đang mở + handshake đang dở
+        if (activeConnections.getAsInt() + inFlight.get() >= maxConnections) {
+            overCapacity.incrementAndGet();
+            return new Decision(Verdict.OVER_CAPACITY, 0);
+        }
+        long now = clock.getAsLong();
+        if (!allowIp(ip, now)) {
+            rateLimited.incrementAndGet();
+            return new Decision(Verdict.RATE_LIMITED, 0);
+        }
+        long delay = reserveSlot(now, canWait);
+        if (delay == QUEUE_FULL_WAIT) {
+            queueFull.incrementAndGet();
+            return new Decision(Verdict.QUEUE_FULL, 0);
+        }
+        if (delay < 0) {
+            refundIp(ip);
+            deferred.incrementAndGet();
+            return new Decision(Verdict.DEFERRED, -delay);
+        }
+        inFlight.incrementAndGet();
+        admitted.incrementAndGet();
+        return new Decision(Verdict.ADMITTED, delay);
+    }
+
+    public void handshakeFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    private boolean allowIp(String ip, long now) {
+        AtomicLong arrival = buckets.get(ip);
+        if (arrival == null) {
+            sweep(now);
+            arrival = buckets.computeIfAbsent(ip, key -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = arrival.get();
+            long start = Math.max(current, now);
+            if (start - now > ipToleranceNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, start + ipIntervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    // Trả lại token đã tiêu của handshake không được nhận
+    private void refundIp(String ip) {
+        AtomicLong arrival = buckets.get(ip);
+        if (arrival != null) {
+            arrival.addAndGet(-ipIntervalNanos);
+        }
+    }
+
+    // Giữ một khe trong hàng đợi; trả về thời gian phải chờ, QUEUE_FULL_WAIT nếu hàng đợi quá dài,
+    // hoặc -wait (không giữ khe) nếu phải chờ mà !canWait
+    private long reserveSlot(long now, boolean canWait) {
+        while (true) {
+            long next = nextSlot.get();
+            long slot = Math.max(next, now);
+            long wait = slot - now;
+            if (wait > maxQueueNanos) {
+                return QUEUE_FULL_WAIT;
+            }
+            if (wait > 0 && !canWait) {
+                return -wait;
+            }
+            if (nextSlot.compareAndSet(next, slot + slotIntervalNanos)) {
+                return wait;
+            }
+        }
+    }
+
+    // Bucket có thời điểm đến lý thuyết đã qua thì tương đương bucket mới, bỏ đi được.
+    // Chỉ dọn khi bảng lớn và không quá một lần mỗi giây
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (buckets.size() < SWEEP_THRESHOLD || now - last < TimeUnit.SECONDS.toNanos(1)
+            || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(arrival -> arrival.get() <= now);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getTrackedIps() {
+        return buckets.size();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    public long getOverCapacityCount() {
+        return overCapacity.get();
+    }
+
+    public long getQueueFullCount() {
+        return queueFull.get();
+    }
+
+    public long getDeferredCount() {
+        return deferred.get();
+    }
+}
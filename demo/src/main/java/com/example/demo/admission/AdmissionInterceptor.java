@@ -0,0 +1,134 @@
+package com.example.demo.admission;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Chặn handshake /chat trước khi có WebSocketSession: kết nối bị từ chối không tốn
+// ClientSession, hàng đợi gửi hay thông báo join nào
+public class AdmissionInterceptor implements HandshakeInterceptor {
+
+    private final AdmissionControl admission;
+    // Số handshake tối đa được chờ khe trên thread của container cùng lúc; phần còn lại nhận 503
+    // kèm Retry-After theo khe trống gần nhất, để /login, tài nguyên tĩnh và REST vẫn còn thread
+    private final int maxWaiting;
+    // Địa chỉ của reverse proxy được tin: chỉ khi kết nối đến từ đây mới đọc X-Forwarded-For
+    private final Set<String> trustedProxies;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public AdmissionInterceptor(AdmissionControl admission) {
+        this(admission, 16, Set.of());
+    }
+
+    public AdmissionInterceptor(AdmissionControl admission, int maxWaiting, Collection<String> trustedProxies) {
+        this.admission = admission;
+        this.maxWaiting = maxWaiting;
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) throws Exception {
+        // Giữ chỗ chờ trước khi xin khe: khi đã đủ maxWaiting handshake đang chờ, handshake phải chờ
+        // bị hoãn mà không giữ khe (không làm chậm khe của các handshake sau) và không tiêu token IP
+        boolean canWait = waiting.incrementAndGet() <= maxWaiting;
+        AdmissionControl.Decision decision = admission.tryAdmit(clientIp(request), canWait);
+        if (!decision.admitted() || decision.delayNanos() <= 0) {
+            waiting.decrementAndGet();
+        }
+        switch (decision.verdict()) {
+            case RATE_LIMITED -> {
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, 0);
+                return false;
+            }
+            case OVER_CAPACITY, QUEUE_FULL -> {
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, 0);
+                return false;
+            }
+            case DEFERRED -> {
+                // Đã đủ maxWaiting handshake giữ thread: trả client về thử lại lúc khe trống
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, decision.delayNanos());
+                return false;
+            }
+            default -> {
+                if (decision.delayNanos() <= 0) {
+                    return true;
+                }
+                // Chờ tới khe của mình (tối đa chat.admission.max-queue-ms) trên thread của container
+                try {
+                    TimeUnit.NANOSECONDS.sleep(decision.delayNanos());
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    admission.handshakeFinished();
+                    reject(response, HttpStatus.SERVICE_UNAVAILABLE, 0);
+                    return false;
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    // Chỉ được gọi cho handshake đã qua beforeHandshake, thành công hay không
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        admission.handshakeFinished();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getDeferredCount() {
+        return admission.getDeferredCount();
+    }
+
+    // Retry-After tính theo giây, làm tròn lên; không có khe thì chỉ là gợi ý để không thử lại ngay
+    // (client có backoff riêng)
+    private static void reject(ServerHttpResponse response, HttpStatus status, long delayNanos) {
+        response.setStatusCode(status);
+        response.getHeaders().set("Retry-After", Long.toString(retryAfterSeconds(delayNanos)));
+    }
+
+    static long retryAfterSeconds(long delayNanos) {
+        return Math.max(1, (delayNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private String clientIp(ServerHttpRequest request) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        String peer;
+        if (remote == null) {
+            peer = "unknown";
+        } else {
+            peer = remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+        }
+        return resolveClientIp(peer, request.getHeaders().getFirst("X-Forwarded-For"), trustedProxies);
+    }
+
+    // Địa chỉ kết nối trực tiếp, trừ khi nó là proxy được tin: khi đó lấy địa chỉ chưa được tin
+    // gần nhất trong X-Forwarded-For (đọc từ phải sang, các phần bên trái do client tự đặt được)
+    static String resolveClientIp(String peer, String forwardedFor, Set<String> trustedProxies) {
+        if (forwardedFor == null || !trustedProxies.contains(peer)) {
+            return peer;
+        }
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return peer;
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demo.bot;
 
 import com.example.demo.ChatMessage;
 import org.springframework.web.socket.WebSocketSession;
+import java.util.List;
 
 public abstract class Bot {
     protected String botName;
@@ -13,11 +14,31 @@ public abstract class Bot {
         this.description = description;
     }
 
-    // Abstract method mà mỗi bot phải implement
-    public abstract ChatMessage processMessage(ChatMessage message, WebSocketSession session);
+    // Abstract method mà mỗi bot phải implement. Envelope đã được phân tích một lần
+    // và dùng chung cho mọi bot, bot không tự trim/toLowerCase/split lại tin nhắn
+    public abstract ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session);
 
     // Phương thức check xem bot có xử lý message này không
-    public abstract boolean canHandle(ChatMessage message);
+    public abstract boolean canHandle(MessageEnvelope envelope);
+
+    // Cho nơi gọi chỉ có ChatMessage: phân tích rồi dùng API ở trên
+    public final ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
+        return processMessage(MessageEnvelope.of(message), session);
+    }
+
+    public final boolean canHandle(ChatMessage message) {
+        return canHandle(MessageEnvelope.of(message));
+    }
+
+    // Các lệnh (bắt đầu bằng "/") bot sở hữu. BotManager tra bảng tiền tố để chuyển lệnh
+    // thẳng tới bot sở hữu, thay vì hỏi canHandle của mọi bot
+    public List<String> getCommands() { return List.of(); }
+
+    // true nếu bot cần xem tin nhắn thường (không phải lệnh của bot nào)
+    public boolean wantsFreeText() { return false; }
+
+    // true nếu bot cần xem mọi tin nhắn, kể cả lệnh của bot khác
+    public boolean wantsAllMessages() { return false; }
 
     // Getters
     public String getBotName() { return botName; }
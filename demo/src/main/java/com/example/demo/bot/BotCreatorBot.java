@@ -2,6 +2,7 @@ package com.example.demo.bot;
 
 import com.example.demo.ChatMessage;
 import org.springframework.web.socket.WebSocketSession;
+import java.util.List;
 
 public class BotCreatorBot extends Bot {
     
@@ -13,49 +14,54 @@ public class BotCreatorBot extends Bot {
     }
 
     @Override
-    public boolean canHandle(ChatMessage message) {
-        String msg = message.getMessage().toLowerCase();
+    public List<String> getCommands() {
+        return List.of("/create-bot", "/delete-bot", "/list-bots", "/toggle-bot");
+    }
+
+    @Override
+    public boolean canHandle(MessageEnvelope envelope) {
+        String msg = envelope.getNormalized();
         return msg.startsWith("/create-bot") || msg.startsWith("/delete-bot") || 
                msg.startsWith("/list-bots") || msg.startsWith("/toggle-bot");
     }
 
     @Override
-    public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-        String command = message.getMessage().trim();
-        String userRole = getUserRole(message.getNickname());
+    public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+        String command = envelope.getNormalized();
         
         // Chỉ admin và teacher mới có thể quản lý bot
-        if (!hasPermission(userRole)) {
+        if (!envelope.isModerator()) {
             return createBotResponse(
                 "❌ Bạn không có quyền quản lý bot. Chỉ **Admin** và **Giáo viên** mới có thể tạo/quản lý bot.", 
-                message.getRoom()
+                envelope.getRoom()
             );
         }
         
         if (command.startsWith("/create-bot")) {
-            return handleCreateBot(command, message.getNickname(), message.getRoom());
+            return handleCreateBot(envelope);
         } else if (command.startsWith("/delete-bot")) {
-            return handleDeleteBot(command, message.getRoom());
+            return handleDeleteBot(envelope);
         } else if (command.startsWith("/list-bots")) {
-            return handleListBots(message.getRoom());
+            return handleListBots(envelope.getRoom());
         } else if (command.startsWith("/toggle-bot")) {
-            return handleToggleBot(command, message.getRoom());
+            return handleToggleBot(envelope);
         }
         
         return null;
     }
     
-    private ChatMessage handleCreateBot(String command, String creator, String room) {
-        String[] parts = command.split("\\s+", 3);
-        if (parts.length < 3) {
+    private ChatMessage handleCreateBot(MessageEnvelope envelope) {
+        String creator = envelope.getNickname();
+        String room = envelope.getRoom();
+        if (envelope.getArgCount() < 2) {
             return createBotResponse(
                 "❌ Sử dụng: `/create-bot <tên_bot> <mô_tả>`\nVí dụ: `/create-bot StudyHelper Bot hỗ trợ học tập`", 
                 room
             );
         }
         
-        String botName = parts[1];
-        String description = parts[2];
+        String botName = envelope.getArg(0);
+        String description = envelope.getArgsFrom(1);
         
         // Kiểm tra tên bot hợp lệ
         if (!botName.matches("^[a-zA-Z0-9_]+$")) {
@@ -92,13 +98,13 @@ public class BotCreatorBot extends Bot {
         }
     }
     
-    private ChatMessage handleDeleteBot(String command, String room) {
-        String[] parts = command.split("\\s+");
-        if (parts.length < 2) {
+    private ChatMessage handleDeleteBot(MessageEnvelope envelope) {
+        String room = envelope.getRoom();
+        String botName = envelope.getArg(0);
+        if (botName == null) {
             return createBotResponse("❌ Sử dụng: `/delete-bot <tên_bot>`", room);
         }
         
-        String botName = parts[1];
         boolean success = botManager.removeBot(botName);
         
         if (success) {
@@ -152,13 +158,13 @@ public class BotCreatorBot extends Bot {
         return createBotResponse(response.toString(), room);
     }
     
-    private ChatMessage handleToggleBot(String command, String room) {
-        String[] parts = command.split("\\s+");
-        if (parts.length < 2) {
+    private ChatMessage handleToggleBot(MessageEnvelope envelope) {
+        String room = envelope.getRoom();
+        String botName = envelope.getArg(0);
+        if (botName == null) {
             return createBotResponse("❌ Sử dụng: `/toggle-bot <tên_bot>`", room);
         }
         
-        String botName = parts[1];
         boolean success = botManager.toggleBot(botName);
         
         if (success) {
@@ -176,14 +182,4 @@ public class BotCreatorBot extends Bot {
         }
     }
     
-    private String getUserRole(String username) {
-        if (username.equals("admin")) return "ADMIN";
-        if (username.equals("teacher01")) return "TEACHER";
-        if (username.startsWith("sv")) return "STUDENT";
-        return "USER";
-    }
-    
-    private boolean hasPermission(String role) {
-        return "ADMIN".equals(role) || "TEACHER".equals(role);
-    }
 }
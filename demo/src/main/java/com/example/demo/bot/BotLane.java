@@ -0,0 +1,41 @@
+package com.example.demo.bot;
+
+import com.example.demo.session.SerialExecutor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Làn chạy riêng của một bot (bulkhead): các lần gọi của bot chạy lần lượt như trước (trạng thái
+// của bot không cần khóa), nhưng tách khỏi bot khác và khỏi worker của phòng. Bot chậm hoặc treo
+// chỉ làm đầy hàng đợi của chính nó; quá sức chứa thì lần gọi mới bị từ chối ngay.
+final class BotLane implements Executor {
+
+    private final SerialExecutor serial;
+    private final int capacity;
+    // Số lần gọi đang chờ hoặc đang chạy
+    private final AtomicInteger pending = new AtomicInteger();
+
+    BotLane(Executor pool, int capacity) {
+        this.serial = new SerialExecutor(pool);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Hàng đợi của bot đã đầy");
+        }
+        serial.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    int getPendingCount() {
+        return pending.get();
+    }
+}
@@ -1,20 +1,61 @@
 package com.example.demo.bot;
 
 import com.example.demo.ChatMessage;
+import com.example.demo.metrics.BotMetrics;
+import com.example.demo.metrics.ChatMetrics;
 import com.example.demo.moderation.ModerationService;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.WebSocketSession;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
 public class BotManager {
     
     private Map<String, Bot> bots = new ConcurrentHashMap<>();
-    private ModerationService moderationService = new ModerationService();
-    private ModerationBot moderationBot;
+    // Bảng định tuyến dựng lại mỗi khi tập bot thay đổi (hiếm), đọc không khóa với mọi tin nhắn
+    private volatile Routes routes;
+    private final ChatMetrics metrics;
+    private final ModerationService moderationService;
+    
+    // Chạy bất đồng bộ: thời gian tối đa cho một lần gọi bot và số lần gọi chờ tối đa của mỗi bot
+    static final long DEFAULT_TIMEOUT_MS = 2000;
+    static final int DEFAULT_LANE_CAPACITY = 64;
+    private static final AtomicInteger BOT_THREADS = new AtomicInteger();
+    
+    private final long timeoutMs;
+    private final int laneCapacity;
+    // Làn riêng của từng bot theo tên, giữ qua các lần dựng lại bảng định tuyến
+    private final Map<String, BotLane> lanes = new ConcurrentHashMap<>();
+    // Thread cho các làn, tạo khi cần: bot treo chỉ giữ thread của làn nó, không chặn bot khác
+    private final ExecutorService botPool = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "chat-bot-" + BOT_THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
     
     public BotManager() {
+        this(new ChatMetrics());
+    }
+    
+    // Thời gian/số lần khớp của từng bot và các hành động kiểm duyệt được ghi vào metrics
+    public BotManager(ChatMetrics metrics) {
+        this(metrics, DEFAULT_TIMEOUT_MS, DEFAULT_LANE_CAPACITY);
+    }
+    
+    public BotManager(ChatMetrics metrics, long timeoutMs, int laneCapacity) {
+        this.metrics = metrics;
+        this.timeoutMs = timeoutMs;
+        this.laneCapacity = laneCapacity;
+        this.moderationService = new ModerationService(metrics);
         initializeBots();
     }
     
@@ -25,52 +66,224 @@ public class BotManager {
         bots.put("spamdetector", new SpamDetectionBot());
         
         // Moderation bot cần ModerationService
-        moderationBot = new ModerationBot(moderationService);
-        bots.put("moderationbot", moderationBot);
+        bots.put("moderationbot", new ModerationBot(moderationService));
         
         // Bot creator bot
         bots.put("botcreator", new BotCreatorBot(this));
+        rebuildRoutes();
     }
     
-    // Xử lý tin nhắn qua tất cả bot
+    // Một bot cùng bộ đếm và làn chạy của nó, lấy sẵn khi dựng bảng để không tra map trên mỗi tin nhắn
+    private record Route(Bot bot, BotMetrics metrics, BotLane lane) { }
+    
+    // Lệnh -> bot sở hữu; bot xem tin nhắn thường; bot xem mọi tin nhắn; custom bot và
+    // automaton trên tên/từ khóa của chúng
+    private record Routes(CommandTable<Route> commands, Route[] freeText, Route[] observers,
+                          Route[] customBots, TriggerAutomaton<Trigger> triggers) { }
+    
+    // Từ khóa của custom bot thứ bot trong Routes.customBots; trigger null nghĩa là tên bot
+    private record Trigger(int bot, String trigger) { }
+    
+    // Một bot được chọn cho tin nhắn. matched: automaton đã khớp thay cho canHandle,
+    // trigger là từ khóa đã khớp (null nếu chỉ khớp tên bot)
+    private interface Target {
+        void accept(Route route, String trigger, boolean matched);
+    }
+    
+    // Bot hệ thống được đăng ký trước nên giữ lệnh của mình khi custom bot trùng tên lệnh.
+    // Gọi lại khi thêm/xóa bot hoặc custom bot có từ khóa mới
+    private synchronized void rebuildRoutes() {
+        CommandTable<Route> commands = new CommandTable<>();
+        List<Route> freeText = new ArrayList<>();
+        List<Route> observers = new ArrayList<>();
+        List<Route> customBots = new ArrayList<>();
+        TriggerAutomaton<Trigger> triggers = new TriggerAutomaton<>();
+        List<Map.Entry<String, Bot>> ordered = new ArrayList<>(bots.entrySet());
+        ordered.sort(Comparator.comparing((Map.Entry<String, Bot> entry) -> entry.getValue() instanceof CustomBot)
+            .thenComparing(Map.Entry::getKey));
+        for (Map.Entry<String, Bot> entry : ordered) {
+            Bot bot = entry.getValue();
+            Route route = new Route(bot, metrics.bot(entry.getKey()),
+                lanes.computeIfAbsent(entry.getKey(), key -> new BotLane(botPool, laneCapacity)));
+            if (bot.wantsAllMessages()) {
+                observers.add(route);
+                continue;
+            }
+            for (String command : bot.getCommands()) {
+                commands.put(command, route);
+            }
+            if (bot instanceof CustomBot customBot) {
+                // Tin nhắn thường tới custom bot qua automaton thay vì canHandle của từng bot
+                int index = customBots.size();
+                customBots.add(route);
+                triggers.add(customBot.key, new Trigger(index, null));
+                for (String trigger : customBot.responses.keySet()) {
+                    triggers.add(trigger, new Trigger(index, trigger));
+                }
+            } else if (bot.wantsFreeText()) {
+                freeText.add(route);
+            }
+        }
+        triggers.compile();
+        routes = new Routes(commands, freeText.toArray(new Route[0]), observers.toArray(new Route[0]),
+            customBots.toArray(new Route[0]), triggers);
+    }
+    
+    // Tiện cho test/benchmark: phân tích tin nhắn rồi chạy như runBots (không kiểm duyệt người gửi)
     public List<ChatMessage> processMessage(ChatMessage message, WebSocketSession session) {
+        return runBots(MessageEnvelope.of(message), session);
+    }
+    
+    // Các bot chạy lần lượt trên thread gọi và trả lời được trả về cùng lúc; envelope đã phân tích
+    // một lần và dùng chung cho mọi bot. BotManager không kiểm duyệt người gửi: ModerationGate duy
+    // nhất của ChatHandler đã cho tin nhắn qua trước khi tới đây
+    public List<ChatMessage> runBots(MessageEnvelope envelope, WebSocketSession session) {
         List<ChatMessage> responses = new ArrayList<>();
-        
-        // Kiểm tra user có bị mute/ban không
-        String username = message.getNickname();
-        if (!username.startsWith("🤖")) { // Không check bot messages
-            if (!moderationBot.canUserSendMessage(username)) {
-                String status = moderationBot.getUserModerationStatus(username);
-                if ("BANNED".equals(status)) {
-                    responses.add(new ChatMessage("🤖 System", 
-                        String.format("❌ @%s đã bị cấm chat vĩnh viễn và không thể gửi tin nhắn.", username), 
-                        message.getRoom()));
-                    return responses;
-                } else if ("MUTED".equals(status)) {
-                    String timeLeft = moderationService.getRemainingMuteTime(username);
-                    responses.add(new ChatMessage("🤖 System", 
-                        String.format("🔇 @%s đang bị tắt tiếng. Thời gian còn lại: %s", username, timeLeft), 
-                        message.getRoom()));
-                    return responses;
+        route(envelope, (route, trigger, matched) -> {
+            ChatMessage response = invoke(route, envelope, trigger, matched, session);
+            if (response != null) {
+                responses.add(response);
+            }
+        });
+        return responses;
+    }
+    
+    // Chạy các bot nhận tin nhắn này song song, mỗi bot trên làn riêng của nó; onReply được gọi
+    // (trên thread của bot) với từng trả lời khi xong. Trả lời quá thời gian cho phép bị bỏ và
+    // đếm là timeout; làn đầy thì lần gọi bị từ chối và đếm là rejection. Không kiểm duyệt người gửi
+    // (như runBots).
+    // Kết quả xong khi mọi bot đã trả lời (sau onReply), hết hạn hoặc bị từ chối
+    public CompletableFuture<Void> processMessageAsync(MessageEnvelope envelope, WebSocketSession session,
+                                                       Consumer<ChatMessage> onReply) {
+        List<CompletableFuture<?>> calls = new ArrayList<>(4);
+        route(envelope, (route, trigger, matched) -> {
+            if (!route.bot().isActive()) {
+                return;
+            }
+            CompletableFuture<ChatMessage> reply = new CompletableFuture<>();
+            try {
+                route.lane().execute(() -> {
+                    // Đã quá hạn trong lúc chờ sau lần gọi trước của bot: không chạy nữa
+                    if (!reply.isDone()) {
+                        reply.complete(invoke(route, envelope, trigger, matched, session));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                route.metrics().rejected();
+                return;
+            }
+            calls.add(reply.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+                if (error instanceof TimeoutException) {
+                    route.metrics().timeout();
+                } else if (response != null) {
+                    onReply.accept(response);
                 }
+            }));
+        });
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    // Lệnh đi thẳng tới bot sở hữu; tin nhắn thường (và lệnh không bot nào sở hữu)
+    // chỉ tới các bot quan tâm tin nhắn thường và custom bot được automaton khớp;
+    // bot quan sát xem mọi tin nhắn
+    private void route(MessageEnvelope envelope, Target target) {
+        Routes current = routes;
+        Route owner = envelope.isCommand() ? current.commands().match(envelope.getText()) : null;
+        if (owner != null) {
+            target.accept(owner, null, false);
+        } else {
+            for (Route route : current.freeText()) {
+                target.accept(route, null, false);
             }
+            routeTriggered(current, envelope, target);
         }
-        
-        // Xử lý tin nhắn qua các bot
-        for (Bot bot : bots.values()) {
-            if (bot.isActive() && bot.canHandle(message)) {
-                try {
-                    ChatMessage response = bot.processMessage(message, session);
-                    if (response != null) {
-                        responses.add(response);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing message with bot " + bot.getBotName() + ": " + e.getMessage());
+        for (Route route : current.observers()) {
+            target.accept(route, null, false);
+        }
+    }
+    
+    // Một lượt quét automaton cho mọi custom bot; chỉ bot có tên hoặc từ khóa xuất hiện
+    // trong tin nhắn mới được chọn, theo thứ tự của bảng định tuyến
+    private void routeTriggered(Routes current, MessageEnvelope envelope, Target target) {
+        Route[] customBots = current.customBots();
+        if (customBots.length == 0) {
+            return;
+        }
+        TriggerHits hits = new TriggerHits(customBots.length);
+        current.triggers().scan(envelope.getNormalized(), hits);
+        if (hits.matched == null) {
+            return;
+        }
+        for (int i = 0; i < customBots.length; i++) {
+            if (hits.matched[i]) {
+                target.accept(customBots[i], hits.firstTrigger[i], true);
+            }
+        }
+    }
+    
+    // Một lần gọi bot: canHandle (trừ khi automaton đã khớp) rồi processMessage, ghi metrics;
+    // lỗi của bot không lan ra ngoài
+    private ChatMessage invoke(Route route, MessageEnvelope envelope, String trigger, boolean matched,
+                               WebSocketSession session) {
+        Bot bot = route.bot();
+        if (!bot.isActive()) {
+            return null;
+        }
+        BotMetrics botMetrics = route.metrics();
+        long started = System.nanoTime();
+        try {
+            long checked = started;
+            if (matched) {
+                // Automaton đã quyết định thay cho canHandle, chỉ đếm lượt khớp
+                botMetrics.canHandle(0, true);
+            } else {
+                boolean handles = bot.canHandle(envelope);
+                checked = System.nanoTime();
+                botMetrics.canHandle(checked - started, handles);
+                if (!handles) {
+                    return null;
                 }
             }
+            ChatMessage response = matched
+                ? ((CustomBot) bot).respond(envelope, trigger)
+                : bot.processMessage(envelope, session);
+            botMetrics.processed(System.nanoTime() - checked, response != null);
+            return response;
+        } catch (Exception e) {
+            botMetrics.error();
+            System.err.println("Error processing message with bot " + bot.getBotName() + ": " + e.getMessage());
+            return null;
         }
+    }
+    
+    // Custom bot nào khớp và từ khóa đầu tiên (kết thúc sớm nhất) của nó; mảng chỉ được
+    // cấp khi có khớp nên tin nhắn không nhắc tới custom bot nào không tốn thêm gì
+    private static final class TriggerHits implements Consumer<Trigger> {
+        private final int size;
+        private boolean[] matched;
+        private String[] firstTrigger;
         
-        return responses;
+        TriggerHits(int size) {
+            this.size = size;
+        }
+        
+        @Override
+        public void accept(Trigger hit) {
+            if (matched == null) {
+                matched = new boolean[size];
+                firstTrigger = new String[size];
+            }
+            matched[hit.bot()] = true;
+            if (hit.trigger() != null && firstTrigger[hit.bot()] == null) {
+                firstTrigger[hit.bot()] = hit.trigger();
+            }
+        }
+    }
+    
+    // Đăng ký thêm một bot với tên cho trước (dùng trong test)
+    void addBot(String key, Bot bot) {
+        bots.put(key, bot);
+        rebuildRoutes();
     }
     
     // Tạo bot mới (cho admin/teacher)
@@ -80,8 +293,10 @@ public class BotManager {
         }
         
         // Tạo custom bot đơn giản
-        Bot customBot = new CustomBot(botName, description, creator);
+        CustomBot customBot = new CustomBot(botName, description, creator);
         bots.put(botName.toLowerCase(), customBot);
+        customBot.onTriggersChanged(this::rebuildRoutes);
+        rebuildRoutes();
         return true;
     }
     
@@ -89,8 +304,12 @@ public class BotManager {
     public boolean removeBot(String botName) {
         String key = botName.toLowerCase();
         Bot bot = bots.get(key);
-        if (bot instanceof CustomBot) {
+        if (bot instanceof CustomBot customBot) {
+            customBot.onTriggersChanged(null);
             bots.remove(key);
+            lanes.remove(key);
+            metrics.removeBot(key);
+            rebuildRoutes();
             return true;
         }
         return false; // Không thể xóa bot hệ thống
@@ -116,6 +335,11 @@ public class BotManager {
         return bots.get(botName.toLowerCase());
     }
     
+    // Dừng thread của các làn bot (khi tắt ứng dụng)
+    public void shutdown() {
+        botPool.shutdownNow();
+    }
+    
     // Lấy ModerationService để sử dụng bên ngoài
     public ModerationService getModerationService() {
         return moderationService;
@@ -124,11 +348,17 @@ public class BotManager {
     // Custom Bot class cho bot do user tạo
     public static class CustomBot extends Bot {
         private String creator;
-        private Map<String, String> responses = new HashMap<>();
+        // Tên viết thường, tính một lần thay vì trên mỗi tin nhắn
+        private final String key;
+        // Concurrent vì addResponse có thể chạy song song với worker đang trả lời
+        private final Map<String, String> responses = new ConcurrentHashMap<>();
+        // BotManager dựng lại automaton khi bot có từ khóa mới
+        private volatile Runnable onTriggersChanged;
         
         public CustomBot(String botName, String description, String creator) {
             super(botName, description);
             this.creator = creator;
+            this.key = botName.toLowerCase();
             
             // Thêm một số response mặc định
             responses.put("hello", "Xin chào! Tôi là " + botName + " được tạo bởi @" + creator);
@@ -137,34 +367,73 @@ public class BotManager {
         }
         
         @Override
-        public boolean canHandle(ChatMessage message) {
-            String msg = message.getMessage().toLowerCase();
-            return msg.contains(botName.toLowerCase()) || 
-                   msg.startsWith("/" + botName.toLowerCase()) ||
-                   responses.keySet().stream().anyMatch(msg::contains);
+        public List<String> getCommands() {
+            return List.of("/" + key);
         }
         
+        // Trả lời khi tin nhắn nhắc tên bot hoặc chứa một từ khóa
         @Override
-        public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-            String msg = message.getMessage().toLowerCase();
-            
-            // Tìm response phù hợp
-            for (Map.Entry<String, String> entry : responses.entrySet()) {
-                if (msg.contains(entry.getKey())) {
-                    return createBotResponse(entry.getValue(), message.getRoom());
-                }
+        public boolean wantsFreeText() {
+            return true;
+        }
+        
+        // Dùng khi bot được gọi riêng (lệnh /tên); tin nhắn thường đi qua automaton của BotManager
+        @Override
+        public boolean canHandle(MessageEnvelope envelope) {
+            // "/tên" cũng chứa tên nên không cần kiểm tra riêng
+            String msg = envelope.getNormalized();
+            return msg.contains(key) || firstTrigger(msg) != null;
+        }
+        
+        @Override
+        public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+            return respond(envelope, firstTrigger(envelope.getNormalized()));
+        }
+        
+        // Trả lời theo từ khóa đã khớp, hoặc câu mặc định khi chỉ khớp tên (trigger null)
+        ChatMessage respond(MessageEnvelope envelope, String trigger) {
+            String response = trigger != null ? responses.get(trigger) : null;
+            if (response != null) {
+                return createBotResponse(response, envelope.getRoom());
             }
             
             // Response mặc định
             return createBotResponse(
                 "Xin chào! Tôi là " + botName + ". Gõ 'help' để biết thêm thông tin!", 
-                message.getRoom()
+                envelope.getRoom()
             );
         }
         
+        // Từ khóa kết thúc sớm nhất trong tin nhắn (dài hơn thắng khi cùng vị trí), giống thứ tự
+        // automaton báo kết quả
+        private String firstTrigger(String msg) {
+            String first = null;
+            int firstEnd = Integer.MAX_VALUE;
+            for (String trigger : responses.keySet()) {
+                int index = msg.indexOf(trigger);
+                if (index < 0) {
+                    continue;
+                }
+                int end = index + trigger.length();
+                if (end < firstEnd || (end == firstEnd && trigger.length() > first.length())) {
+                    first = trigger;
+                    firstEnd = end;
+                }
+            }
+            return first;
+        }
+        
         // Thêm response mới
         public void addResponse(String trigger, String response) {
-            responses.put(trigger.toLowerCase(), response);
+            boolean added = responses.put(trigger.toLowerCase(), response) == null;
+            Runnable listener = onTriggersChanged;
+            if (added && listener != null) {
+                listener.run();
+            }
+        }
+        
+        void onTriggersChanged(Runnable listener) {
+            this.onTriggersChanged = listener;
         }
         
         // Getters
@@ -0,0 +1,78 @@
+package com.example.demo.bot;
+
+import java.util.Arrays;
+
+// Bảng tiền tố của các lệnh bot: cây trie theo ký tự, không phân biệt hoa thường.
+// Tra một tin nhắn chỉ đi qua vài ký tự đầu của nó, không phụ thuộc số lệnh hay số bot
+// đã đăng ký; kết quả giống startsWith(lệnh) của canHandle cũ, lệnh dài nhất thắng.
+// Chỉ sửa khi dựng bảng (trước khi công bố), sau đó chỉ đọc nên không cần khóa.
+final class CommandTable<T> {
+
+    private final Node<T> root = new Node<>();
+
+    // Lệnh đã có chủ thì giữ chủ cũ và trả về false
+    boolean put(String command, T owner) {
+        Node<T> node = root;
+        for (int i = 0; i < command.length(); i++) {
+            node = node.childOrCreate(Character.toLowerCase(command.charAt(i)));
+        }
+        if (node.owner != null) {
+            return false;
+        }
+        node.owner = owner;
+        return true;
+    }
+
+    // Chủ của lệnh dài nhất là tiền tố của text, null nếu không lệnh nào khớp
+    T match(String text) {
+        Node<T> node = root;
+        T owner = null;
+        for (int i = 0; i < text.length(); i++) {
+            node = node.child(Character.toLowerCase(text.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.owner != null) {
+                owner = node.owner;
+            }
+        }
+        return owner;
+    }
+
+    private static final class Node<T> {
+        // Ký tự con đã sắp xếp, tìm nhị phân
+        private char[] keys = new char[0];
+        private Node<T>[] children = newArray(0);
+        private T owner;
+
+        Node<T> child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node<T> childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insert = -index - 1;
+            char[] nextKeys = new char[keys.length + 1];
+            Node<T>[] nextChildren = newArray(children.length + 1);
+            System.arraycopy(keys, 0, nextKeys, 0, insert);
+            System.arraycopy(children, 0, nextChildren, 0, insert);
+            System.arraycopy(keys, insert, nextKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, nextChildren, insert + 1, children.length - insert);
+            Node<T> created = new Node<>();
+            nextKeys[insert] = key;
+            nextChildren[insert] = created;
+            keys = nextKeys;
+            children = nextChildren;
+            return created;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int length) {
+            return (Node<T>[]) new Node[length];
+        }
+    }
+}
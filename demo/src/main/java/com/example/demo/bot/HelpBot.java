@@ -2,6 +2,7 @@ package com.example.demo.bot;
 
 import com.example.demo.ChatMessage;
 import org.springframework.web.socket.WebSocketSession;
+import java.util.List;
 
 public class HelpBot extends Bot {
     
@@ -10,15 +11,26 @@ public class HelpBot extends Bot {
     }
 
     @Override
-    public boolean canHandle(ChatMessage message) {
-        String msg = message.getMessage().toLowerCase();
+    public List<String> getCommands() {
+        return List.of("/help", "/nội quy", "/hướng dẫn");
+    }
+
+    // Trả lời cả câu hỏi có chữ "help" trong tin nhắn thường
+    @Override
+    public boolean wantsFreeText() {
+        return true;
+    }
+
+    @Override
+    public boolean canHandle(MessageEnvelope envelope) {
+        String msg = envelope.getNormalized();
         return msg.startsWith("/help") || msg.startsWith("/nội quy") || 
                msg.startsWith("/hướng dẫn") || msg.contains("help");
     }
 
     @Override
-    public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-        String command = message.getMessage().toLowerCase().trim();
+    public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+        String command = envelope.getNormalized();
         String response = "";
 
         if (command.startsWith("/help")) {
@@ -27,11 +39,11 @@ public class HelpBot extends Bot {
             response = getRulesMessage();
         } else if (command.startsWith("/hướng dẫn")) {
             response = getGuideMessage();
-        } else if (message.getMessage().toLowerCase().contains("help")) {
+        } else if (command.contains("help")) {
             response = "Bạn cần hỗ trợ? Gõ /help để xem danh sách lệnh! 😊";
         }
 
-        return createBotResponse(response, message.getRoom());
+        return createBotResponse(response, envelope.getRoom());
     }
 
     private String getHelpMessage() {
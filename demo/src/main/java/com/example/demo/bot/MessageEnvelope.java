@@ -0,0 +1,198 @@
+package com.example.demo.bot;
+
+import com.example.demo.ChatMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Tin nhắn đến đã được phân tích đúng một lần: văn bản đã trim và bản viết thường, lệnh và
+// vị trí các tham số, vai trò người gửi. Bất biến nên mọi bot dùng chung một envelope thay vì
+// tự toLowerCase/trim/split/regex lại trên cùng chuỗi. Vai trò lấy từ tài khoản đã đăng nhập
+// của session, không từ nickname client tự khai trong frame. Chỉ lưu vị trí trong text, chuỗi con
+// (tham số, @mention) chỉ được cắt khi bot thật sự cần: phần lớn tin nhắn không cấp phát gì thêm.
+public final class MessageEnvelope {
+
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private final ChatMessage message;
+    // Nội dung đã trim, giữ nguyên hoa thường (lý do, mô tả bot...)
+    private final String text;
+    private final String normalized;
+    // Độ dài của lệnh ("/quiz") ở đầu text, -1 nếu không phải lệnh
+    private final int commandLength;
+    // Cặp [đầu, cuối) của từng tham số sau lệnh trong text
+    private final int[] argBounds;
+    private final String role;
+    // Tính lần đầu được hỏi; List.copyOf bất biến nên hai thread cùng tính cũng an toàn
+    private List<String> mentions;
+
+    private MessageEnvelope(ChatMessage message, String role, String text, int commandLength, int[] argBounds) {
+        this.message = message;
+        this.text = text;
+        this.normalized = text.toLowerCase();
+        this.commandLength = commandLength;
+        this.argBounds = argBounds;
+        this.role = role;
+    }
+
+    // Cho lời gọi nội bộ (test, benchmark, các overload ChatMessage của bot) nơi nickname chính là
+    // tên tài khoản. Tin nhắn từ client phải đi qua of(message, role) với vai trò của session
+    public static MessageEnvelope of(ChatMessage message) {
+        return of(message, roleOf(message.getNickname()));
+    }
+
+    public static MessageEnvelope of(ChatMessage message, String role) {
+        String raw = message.getMessage();
+        String text = raw != null ? raw.trim() : "";
+        if (!text.startsWith("/")) {
+            return new MessageEnvelope(message, role, text, -1, NO_BOUNDS);
+        }
+
+        int commandLength = nextWhitespace(text, 0);
+        // Đếm trước để cấp mảng đúng kích thước một lần
+        int count = 0;
+        for (int i = skipWhitespace(text, commandLength); i < text.length(); i = skipWhitespace(text, nextWhitespace(text, i))) {
+            count++;
+        }
+        int[] bounds = count == 0 ? NO_BOUNDS : new int[count * 2];
+        int arg = 0;
+        for (int i = skipWhitespace(text, commandLength); i < text.length(); i = skipWhitespace(text, bounds[arg * 2 - 1])) {
+            bounds[arg * 2] = i;
+            bounds[arg * 2 + 1] = nextWhitespace(text, i);
+            arg++;
+        }
+        return new MessageEnvelope(message, role, text, commandLength, bounds);
+    }
+
+    // Vai trò của một tên tài khoản (cũng dùng cho tài khoản đích của /mute, /ban)
+    public static String roleOf(String username) {
+        if (username == null) return "USER";
+        if (username.equals("admin")) return "ADMIN";
+        if (username.equals("teacher01")) return "TEACHER";
+        if (username.startsWith("sv")) return "STUDENT";
+        return "USER";
+    }
+
+    private static List<String> parseMentions(String text) {
+        if (text.indexOf('@') < 0) {
+            return List.of();
+        }
+        List<String> mentions = new ArrayList<>(2);
+        for (int at = text.indexOf('@'); at >= 0; at = text.indexOf('@', at + 1)) {
+            if (at > 0 && !Character.isWhitespace(text.charAt(at - 1))) {
+                continue; // Email, hoặc '@' giữa từ
+            }
+            int end = wordEnd(text, at + 1);
+            if (end > at + 1) {
+                mentions.add(text.substring(at + 1, end));
+            }
+        }
+        return List.copyOf(mentions);
+    }
+
+    private static int nextWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Ký tự "từ" như \w của regex: chữ cái/số ASCII và '_'
+    private static int wordEnd(String text, int from) {
+        int i = from;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (!(c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    public ChatMessage getMessage() { return message; }
+    public String getNickname() { return message.getNickname(); }
+    public String getRoom() { return message.getRoom(); }
+    public String getText() { return text; }
+    public String getNormalized() { return normalized; }
+    public String getRole() { return role; }
+
+    public boolean isCommand() {
+        return commandLength >= 0;
+    }
+
+    // Lệnh viết thường ("/quiz"), null nếu không phải lệnh
+    public String getCommand() {
+        return isCommand() ? normalized.substring(0, commandLength) : null;
+    }
+
+    // So lệnh (không phân biệt hoa thường) mà không cắt chuỗi
+    public boolean isCommand(String command) {
+        return commandLength == command.length() && text.regionMatches(true, 0, command, 0, commandLength);
+    }
+
+    // Tin nhắn do bot gửi (nickname "🤖 ...")
+    public boolean isFromBot() {
+        String nickname = message.getNickname();
+        return nickname != null && nickname.startsWith("🤖");
+    }
+
+    public boolean isModerator() {
+        return "ADMIN".equals(role) || "TEACHER".equals(role);
+    }
+
+    // Các tên sau '@' ở đầu từ (chữ, số, '_'), theo thứ tự xuất hiện
+    public List<String> getMentions() {
+        List<String> result = mentions;
+        if (result == null) {
+            result = parseMentions(text);
+            mentions = result;
+        }
+        return result;
+    }
+
+    public int getArgCount() {
+        return argBounds.length / 2;
+    }
+
+    // Các tham số sau lệnh, giữ nguyên hoa thường
+    public List<String> getArgs() {
+        String[] args = new String[getArgCount()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = getArg(i);
+        }
+        return List.of(args);
+    }
+
+    // Tham số thứ index, null nếu không có
+    public String getArg(int index) {
+        return index < getArgCount() ? text.substring(argBounds[index * 2], argBounds[index * 2 + 1]) : null;
+    }
+
+    // Phần còn lại của tin nhắn từ tham số thứ index (giữ khoảng trắng bên trong), null nếu không có
+    public String getArgsFrom(int index) {
+        return index < getArgCount() ? text.substring(argBounds[index * 2]) : null;
+    }
+
+    // Tên người dùng nếu tham số thứ index có dạng @tên (chỉ chữ, số, '_'), ngược lại null
+    public String getMentionArg(int index) {
+        if (index >= getArgCount()) {
+            return null;
+        }
+        int start = argBounds[index * 2];
+        int end = argBounds[index * 2 + 1];
+        if (end - start < 2 || text.charAt(start) != '@' || wordEnd(text, start + 1) != end) {
+            return null;
+        }
+        return text.substring(start + 1, end);
+    }
+}
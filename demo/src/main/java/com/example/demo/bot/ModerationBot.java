@@ -3,15 +3,11 @@ package com.example.demo.bot;
 import com.example.demo.ChatMessage;
 import com.example.demo.moderation.ModerationService;
 import org.springframework.web.socket.WebSocketSession;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 public class ModerationBot extends Bot {
     
     private ModerationService moderationService;
-    private Pattern mutePattern = Pattern.compile("/mute\\s+@(\\w+)\\s+(\\d+)(?:\\s+(.+))?");
-    private Pattern banPattern = Pattern.compile("/ban\\s+@(\\w+)(?:\\s+(.+))?");
-    private Pattern reportPattern = Pattern.compile("/report\\s+@(\\w+)(?:\\s+(.+))?");
     
     public ModerationBot(ModerationService moderationService) {
         super("ModerationBot", "Bot quản lý và điều hành phòng chat");
@@ -19,58 +15,65 @@ public class ModerationBot extends Bot {
     }
 
     @Override
-    public boolean canHandle(ChatMessage message) {
-        String msg = message.getMessage().toLowerCase();
+    public List<String> getCommands() {
+        return List.of("/mute", "/ban", "/unmute", "/unban", "/report", "/check");
+    }
+
+    @Override
+    public boolean canHandle(MessageEnvelope envelope) {
+        String msg = envelope.getNormalized();
         return msg.startsWith("/mute") || msg.startsWith("/ban") || 
                msg.startsWith("/unmute") || msg.startsWith("/unban") ||
                msg.startsWith("/report") || msg.startsWith("/check");
     }
 
     @Override
-    public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-        String command = message.getMessage().trim();
-        String userRole = getUserRole(message.getNickname()); // Lấy role của user
+    public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+        String command = envelope.getNormalized();
         
-        // Kiểm tra quyền hạn
+        // Kiểm tra quyền hạn (role đã có sẵn trong envelope)
         if (command.startsWith("/mute") || command.startsWith("/ban") || 
             command.startsWith("/unmute") || command.startsWith("/unban")) {
-            if (!hasModeratorPermission(userRole)) {
+            if (!envelope.isModerator()) {
                 return createBotResponse(
                     "❌ Bạn không có quyền sử dụng lệnh này. Chỉ **Giáo viên** và **Admin** mới có thể điều hành.", 
-                    message.getRoom()
+                    envelope.getRoom()
                 );
             }
         }
         
         if (command.startsWith("/mute")) {
-            return handleMuteCommand(command, message.getNickname(), message.getRoom());
+            return handleMuteCommand(envelope);
         } else if (command.startsWith("/ban")) {
-            return handleBanCommand(command, message.getNickname(), message.getRoom());
+            return handleBanCommand(envelope);
         } else if (command.startsWith("/unmute")) {
-            return handleUnmuteCommand(command, message.getRoom());
+            return handleUnmuteCommand(envelope);
         } else if (command.startsWith("/unban")) {
-            return handleUnbanCommand(command, message.getRoom());
+            return handleUnbanCommand(envelope);
         } else if (command.startsWith("/report")) {
-            return handleReportCommand(command, message.getNickname(), message.getRoom());
+            return handleReportCommand(envelope);
         } else if (command.startsWith("/check")) {
-            return handleCheckCommand(command, message.getRoom());
+            return handleCheckCommand(envelope);
         }
         
         return null;
     }
     
-    private ChatMessage handleMuteCommand(String command, String moderator, String room) {
-        Matcher matcher = mutePattern.matcher(command);
-        if (!matcher.matches()) {
+    private ChatMessage handleMuteCommand(MessageEnvelope envelope) {
+        String moderator = envelope.getNickname();
+        String room = envelope.getRoom();
+        // Dạng: /mute @username <phút> [lý do]
+        String username = envelope.getMentionArg(0);
+        String minutesArg = envelope.getArg(1);
+        if (!envelope.isCommand("/mute") || username == null || !isDigits(minutesArg)) {
             return createBotResponse(
                 "❌ Sử dụng: `/mute @username <phút> [lý do]`\nVí dụ: `/mute @sv01 5 spam tin nhắn`", 
                 room
             );
         }
         
-        String username = matcher.group(1);
-        int minutes = Integer.parseInt(matcher.group(2));
-        String reason = matcher.group(3) != null ? matcher.group(3) : "Không nêu lý do";
+        int minutes = Integer.parseInt(minutesArg);
+        String reason = envelope.getArgCount() > 2 ? envelope.getArgsFrom(2) : "Không nêu lý do";
         
         // Kiểm tra không tự mute chính mình
         if (username.equals(moderator)) {
@@ -78,7 +81,7 @@ public class ModerationBot extends Bot {
         }
         
         // Kiểm tra không mute admin/teacher khác
-        String targetRole = getUserRole(username);
+        String targetRole = MessageEnvelope.roleOf(username);
         if (hasModeratorPermission(targetRole)) {
             return createBotResponse("❌ Không thể tắt tiếng Giáo viên hoặc Admin khác!", room);
         }
@@ -99,24 +102,26 @@ public class ModerationBot extends Bot {
         return createBotResponse(response, room);
     }
     
-    private ChatMessage handleBanCommand(String command, String moderator, String room) {
-        Matcher matcher = banPattern.matcher(command);
-        if (!matcher.matches()) {
+    private ChatMessage handleBanCommand(MessageEnvelope envelope) {
+        String moderator = envelope.getNickname();
+        String room = envelope.getRoom();
+        // Dạng: /ban @username [lý do]
+        String username = envelope.getMentionArg(0);
+        if (!envelope.isCommand("/ban") || username == null) {
             return createBotResponse(
                 "❌ Sử dụng: `/ban @username [lý do]`\nVí dụ: `/ban @sv01 vi phạm nội quy nghiêm trọng`", 
                 room
             );
         }
         
-        String username = matcher.group(1);
-        String reason = matcher.group(2) != null ? matcher.group(2) : "Không nêu lý do";
+        String reason = envelope.getArgCount() > 1 ? envelope.getArgsFrom(1) : "Không nêu lý do";
         
         // Các kiểm tra tương tự như mute
         if (username.equals(moderator)) {
             return createBotResponse("❌ Bạn không thể cấm chính mình!", room);
         }
         
-        String targetRole = getUserRole(username);
+        String targetRole = MessageEnvelope.roleOf(username);
         if (hasModeratorPermission(targetRole)) {
             return createBotResponse("❌ Không thể cấm Giáo viên hoặc Admin khác!", room);
         }
@@ -136,17 +141,19 @@ public class ModerationBot extends Bot {
         return createBotResponse(response, room);
     }
     
-    private ChatMessage handleReportCommand(String command, String reporter, String room) {
-        Matcher matcher = reportPattern.matcher(command);
-        if (!matcher.matches()) {
+    private ChatMessage handleReportCommand(MessageEnvelope envelope) {
+        String reporter = envelope.getNickname();
+        String room = envelope.getRoom();
+        // Dạng: /report @username [lý do]
+        String reportedUser = envelope.getMentionArg(0);
+        if (!envelope.isCommand("/report") || reportedUser == null) {
             return createBotResponse(
                 "❌ Sử dụng: `/report @username [lý do]`\nVí dụ: `/report @sv01 spam tin nhắn`", 
                 room
             );
         }
         
-        String reportedUser = matcher.group(1);
-        String reason = matcher.group(2) != null ? matcher.group(2) : "Không nêu lý do cụ thể";
+        String reason = envelope.getArgCount() > 1 ? envelope.getArgsFrom(1) : "Không nêu lý do cụ thể";
         
         String response = String.format("""
             📋 **BÁO CÁO VI PHẠM**
@@ -167,13 +174,14 @@ public class ModerationBot extends Bot {
         return createBotResponse(response, room);
     }
     
-    private ChatMessage handleCheckCommand(String command, String room) {
-        String[] parts = command.split("\\s+");
-        if (parts.length < 2 || !parts[1].startsWith("@")) {
+    private ChatMessage handleCheckCommand(MessageEnvelope envelope) {
+        String room = envelope.getRoom();
+        String target = envelope.getArg(0);
+        if (target == null || !target.startsWith("@")) {
             return createBotResponse("❌ Sử dụng: `/check @username`", room);
         }
         
-        String username = parts[1].substring(1);
+        String username = target.substring(1);
         StringBuilder status = new StringBuilder();
         status.append(String.format("📊 **TRẠNG THÁI CỦA @%s:**\n\n", username));
         
@@ -202,13 +210,14 @@ public class ModerationBot extends Bot {
         return createBotResponse(status.toString(), room);
     }
     
-    private ChatMessage handleUnmuteCommand(String command, String room) {
-        String[] parts = command.split("\\s+");
-        if (parts.length < 2 || !parts[1].startsWith("@")) {
+    private ChatMessage handleUnmuteCommand(MessageEnvelope envelope) {
+        String room = envelope.getRoom();
+        String target = envelope.getArg(0);
+        if (target == null || !target.startsWith("@")) {
             return createBotResponse("❌ Sử dụng: `/unmute @username`", room);
         }
         
-        String username = parts[1].substring(1);
+        String username = target.substring(1);
         boolean success = moderationService.unmuteUser(username);
         
         if (success) {
@@ -224,13 +233,14 @@ public class ModerationBot extends Bot {
         }
     }
     
-    private ChatMessage handleUnbanCommand(String command, String room) {
-        String[] parts = command.split("\\s+");
-        if (parts.length < 2 || !parts[1].startsWith("@")) {
+    private ChatMessage handleUnbanCommand(MessageEnvelope envelope) {
+        String room = envelope.getRoom();
+        String target = envelope.getArg(0);
+        if (target == null || !target.startsWith("@")) {
             return createBotResponse("❌ Sử dụng: `/unban @username`", room);
         }
         
-        String username = parts[1].substring(1);
+        String username = target.substring(1);
         boolean success = moderationService.unbanUser(username);
         
         if (success) {
@@ -247,11 +257,13 @@ public class ModerationBot extends Bot {
     }
     
     // Helper methods
-    private String getUserRole(String username) {
-        if (username.equals("admin")) return "ADMIN";
-        if (username.equals("teacher01")) return "TEACHER";
-        if (username.startsWith("sv")) return "STUDENT";
-        return "USER";
+    private static boolean isDigits(String value) {
+        if (value == null || value.isEmpty()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
     }
     
     private boolean hasModeratorPermission(String role) {
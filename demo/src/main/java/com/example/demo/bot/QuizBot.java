@@ -7,6 +7,9 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class QuizBot extends Bot {
     
+    // Game theo phòng: các lần gọi bot chạy lần lượt (trên làn riêng của bot, hoặc trên worker
+    // sở hữu phòng khi chat.bots.async=false) nên mỗi game chỉ bị một thread chạm vào mỗi lúc;
+    // map vẫn là concurrent vì Timer của câu hỏi tiếp theo cũng đọc nó
     private Map<String, QuizGameState> activeGames = new ConcurrentHashMap<>();
     private List<QuizQuestion> questionBank = new ArrayList<>();
     private Timer gameTimer = new Timer();
@@ -17,21 +20,31 @@ public class QuizBot extends Bot {
     }
 
     @Override
-    public boolean canHandle(ChatMessage message) {
-        String msg = message.getMessage().toLowerCase().trim();
-        return msg.startsWith("/quiz") || hasActiveGame(message.getRoom());
+    public List<String> getCommands() {
+        return List.of("/quiz");
     }
 
+    // Khi phòng đang có game, tin nhắn thường có thể là câu trả lời
     @Override
-    public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-        String command = message.getMessage().toLowerCase().trim();
-        String room = message.getRoom();
-        String username = message.getNickname();
+    public boolean wantsFreeText() {
+        return true;
+    }
+
+    @Override
+    public boolean canHandle(MessageEnvelope envelope) {
+        return envelope.getNormalized().startsWith("/quiz") || hasActiveGame(envelope.getRoom());
+    }
+
+    @Override
+    public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+        String command = envelope.getNormalized();
+        String room = envelope.getRoom();
+        String username = envelope.getNickname();
         
         if (command.startsWith("/quiz start")) {
             return startQuizGame(room, username);
         } else if (command.startsWith("/quiz stop")) {
-            return stopQuizGame(room, username);
+            return stopQuizGame(room, username, envelope.isModerator());
         } else if (command.startsWith("/quiz answer ")) {
             String answer = command.substring(13).trim(); // "/quiz answer ".length() = 13
             return handleQuizAnswer(room, username, answer);
@@ -55,14 +68,14 @@ public class QuizBot extends Bot {
         return nextQuestion(room);
     }
     
-    private ChatMessage stopQuizGame(String room, String username) {
+    private ChatMessage stopQuizGame(String room, String username, boolean moderator) {
         QuizGameState game = activeGames.get(room);
         if (game == null) {
             return createBotResponse("❌ Không có quiz nào đang diễn ra!", room);
         }
         
         // Chỉ game master hoặc admin mới có thể stop
-        if (!game.isGameMaster(username) && !isAdmin(username)) {
+        if (!game.isGameMaster(username) && !moderator) {
             return createBotResponse("❌ Chỉ người tạo game hoặc admin mới có thể dừng quiz!", room);
         }
         
@@ -257,10 +270,6 @@ public class QuizBot extends Bot {
         return activeGames.containsKey(room);
     }
     
-    private boolean isAdmin(String username) {
-        return username.equals("admin") || username.equals("teacher01");
-    }
-    
     private QuizQuestion getRandomQuestion() {
         Random random = new Random();
         return questionBank.get(random.nextInt(questionBank.size()));
@@ -20,15 +20,21 @@ public class SpamDetectionBot extends Bot {
         super("SpamDetector", "Bot phát hiện và báo cáo spam");
     }
 
+    // Đếm tần suất gửi trên mọi tin nhắn, kể cả lệnh
     @Override
-    public boolean canHandle(ChatMessage message) {
+    public boolean wantsAllMessages() {
+        return true;
+    }
+
+    @Override
+    public boolean canHandle(MessageEnvelope envelope) {
         // Bot này xử lý tất cả tin nhắn để detect spam
-        return !message.getNickname().startsWith("🤖");
+        return !envelope.isFromBot();
     }
 
     @Override
-    public ChatMessage processMessage(ChatMessage message, WebSocketSession session) {
-        String username = message.getNickname();
+    public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+        String username = envelope.getNickname();
         long currentTime = System.currentTimeMillis();
         
         // Lấy danh sách thời gian tin nhắn của user
@@ -40,12 +46,12 @@ public class SpamDetectionBot extends Bot {
         
         // Kiểm tra spam
         if (messageTimes.size() > MAX_MESSAGES_PER_MINUTE) {
-            return handleSpamDetected(username, message.getRoom());
+            return handleSpamDetected(username, envelope.getRoom());
         }
         
         // Kiểm tra lệnh report spam
-        if (message.getMessage().startsWith("/spam @")) {
-            return handleSpamReport(message);
+        if (envelope.getText().startsWith("/spam @")) {
+            return handleSpamReport(envelope);
         }
         
         return null; // Không có response nếu không phát hiện spam
@@ -74,15 +80,15 @@ public class SpamDetectionBot extends Bot {
         return createBotResponse(response, room);
     }
     
-    private ChatMessage handleSpamReport(ChatMessage message) {
+    private ChatMessage handleSpamReport(MessageEnvelope envelope) {
         // Xử lý lệnh /spam @username
-        String[] parts = message.getMessage().split("\\s+");
-        if (parts.length < 2 || !parts[1].startsWith("@")) {
-            return createBotResponse("❌ Sử dụng: `/spam @username` để báo cáo spam", message.getRoom());
+        String target = envelope.getArg(0);
+        if (target == null || !target.startsWith("@")) {
+            return createBotResponse("❌ Sử dụng: `/spam @username` để báo cáo spam", envelope.getRoom());
         }
         
-        String reportedUser = parts[1].substring(1); // Bỏ ký tự @
-        String reporter = message.getNickname();
+        String reportedUser = target.substring(1); // Bỏ ký tự @
+        String reporter = envelope.getNickname();
         
         String response = String.format("""
             📋 **BÁO CÁO SPAM**
@@ -95,7 +101,7 @@ public class SpamDetectionBot extends Bot {
             💡 Tip: Bạn cũng có thể sử dụng `/report @user lý_do` để báo cáo chi tiết hơn.
             """, reporter, reportedUser);
             
-        return createBotResponse(response, message.getRoom());
+        return createBotResponse(response, envelope.getRoom());
     }
     
     // Phương thức reset spam count (có thể gọi từ bên ngoài)
@@ -0,0 +1,139 @@
+package com.example.demo.bot;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+// Automaton Aho-Corasick trên tên và từ khóa của các custom bot (viết thường): một lượt quét
+// tin nhắn tìm ra mọi từ khóa xuất hiện trong nó, chi phí theo độ dài tin nhắn chứ không theo
+// số bot × số từ khóa như vòng contains cũ. Giống CommandTable: chỉ sửa khi dựng (add rồi
+// compile, trước khi công bố), sau đó chỉ đọc nên không cần khóa.
+final class TriggerAutomaton<T> {
+
+    private final Node<T> root = new Node<>();
+    private boolean compiled;
+
+    void add(String pattern, T value) {
+        if (compiled) {
+            throw new IllegalStateException("Automaton đã được dựng xong");
+        }
+        Node<T> node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.childOrCreate(Character.toLowerCase(pattern.charAt(i)));
+        }
+        node.outputs = append(node.outputs, value);
+    }
+
+    // Tính liên kết thất bại theo chiều rộng; mỗi nút gộp sẵn kết quả của chuỗi liên kết
+    // để lúc quét chỉ cần đọc một mảng
+    void compile() {
+        Deque<Node<T>> queue = new ArrayDeque<>();
+        for (Node<T> child : root.children) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<T> node = queue.poll();
+            for (int i = 0; i < node.keys.length; i++) {
+                char key = node.keys[i];
+                Node<T> child = node.children[i];
+                Node<T> fail = node.fail;
+                while (fail != root && fail.child(key) == null) {
+                    fail = fail.fail;
+                }
+                Node<T> next = fail.child(key);
+                child.fail = next != null ? next : root;
+                child.outputs = concat(child.outputs, child.fail.outputs);
+                queue.add(child);
+            }
+        }
+        compiled = true;
+    }
+
+    // Gọi visitor với mọi giá trị có từ khóa xuất hiện trong text (đã viết thường), theo thứ tự
+    // vị trí kết thúc của từ khóa; từ khóa dài hơn đi trước khi cùng vị trí kết thúc
+    void scan(String text, Consumer<T> visitor) {
+        // Từ khóa rỗng: chuỗi nào cũng "chứa" nó, như String.contains("")
+        emit(root.outputs, visitor);
+        Node<T> node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Node<T> next = node.child(c);
+            while (next == null && node != root) {
+                node = node.fail;
+                next = node.child(c);
+            }
+            node = next != null ? next : root;
+            if (node != root) {
+                emit(node.outputs, visitor);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void emit(Object[] outputs, Consumer<T> visitor) {
+        for (Object output : outputs) {
+            visitor.accept((T) output);
+        }
+    }
+
+    private static Object[] append(Object[] values, Object value) {
+        Object[] next = Arrays.copyOf(values, values.length + 1);
+        next[values.length] = value;
+        return next;
+    }
+
+    private static Object[] concat(Object[] own, Object[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        if (own.length == 0) {
+            return inherited;
+        }
+        Object[] merged = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+        return merged;
+    }
+
+    private static final class Node<T> {
+        private static final Object[] NONE = new Object[0];
+
+        // Ký tự con đã sắp xếp, tìm nhị phân
+        private char[] keys = new char[0];
+        private Node<T>[] children = newArray(0);
+        private Node<T> fail;
+        // Giá trị của các từ khóa kết thúc tại nút này (kể cả qua liên kết thất bại)
+        private Object[] outputs = NONE;
+
+        Node<T> child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node<T> childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insert = -index - 1;
+            char[] nextKeys = new char[keys.length + 1];
+            Node<T>[] nextChildren = newArray(children.length + 1);
+            System.arraycopy(keys, 0, nextKeys, 0, insert);
+            System.arraycopy(children, 0, nextChildren, 0, insert);
+            System.arraycopy(keys, insert, nextKeys, insert + 1, keys.length - insert);
+            System.arraycopy(children, insert, nextChildren, insert + 1, children.length - insert);
+            Node<T> created = new Node<>();
+            nextKeys[insert] = key;
+            nextChildren[insert] = created;
+            keys = nextKeys;
+            children = nextChildren;
+            return created;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int length) {
+            return (Node<T>[]) new Node[length];
+        }
+    }
+}
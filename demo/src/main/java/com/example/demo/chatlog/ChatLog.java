@@ -0,0 +1,331 @@
+package com.example.demo.chatlog;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.wire.BinaryChatCodec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Log chat chỉ ghi thêm trên các segment file map vào bộ nhớ.
+// append() chỉ đưa tin nhắn vào hàng đợi nên không làm chậm broadcast; một luồng ghi
+// gom mọi thứ đang chờ, ghi liền một lượt rồi force xuống đĩa một lần (group commit).
+// Đọc lịch sử trả về các ByteBuffer trỏ thẳng vào vùng nhớ map, không copy.
+public class ChatLog implements AutoCloseable {
+
+    private static final int MAX_BATCH = 1024;
+    private static final int QUEUE_CAPACITY = 65536;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final int maxSegments;
+
+    // Segment theo offset đầu; segment cuối là segment đang ghi
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, RoomIndex> indexes = new ConcurrentHashMap<>();
+    // Phần tử là Pending hoặc CountDownLatch (chờ mọi thứ trước nó được commit)
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private LogSegment active;
+    // Mọi bản ghi trước offset này đã nằm trên đĩa và đọc được
+    private volatile long committedOffset;
+    // Điểm cuối log lúc khởi động (phần có từ lần chạy trước)
+    private final long recoveredOffset;
+    // Số bản ghi của từng phòng lúc khởi động: điểm bắt đầu quét phần phục hồi tính theo số này,
+    // không theo số hiện tại đã gồm cả bản ghi mới
+    private final Map<String, Long> recoveredCounts;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private long recoveredRecords;
+
+    private record Pending(String room, ChatMessage message) {
+    }
+
+    public ChatLog(Path directory, int segmentBytes, int indexInterval, int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+        this.maxSegments = maxSegments;
+        recover();
+        this.recoveredOffset = committedOffset;
+        Map<String, Long> counts = new HashMap<>();
+        indexes.forEach((room, index) -> counts.put(room, index.getRecordCount()));
+        this.recoveredCounts = Map.copyOf(counts);
+        this.writer = new Thread(this::runWriter, "chat-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Dựng lại chỉ mục từ các segment có sẵn. Chỉ đọc header và tên phòng của từng bản ghi;
+    // CRC chỉ kiểm tra trên segment cuối vì chỉ nó có thể bị ghi dở khi tiến trình dừng
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.matches("\\d{20}\\.log"))
+                .forEach(name -> bases.add(Long.parseLong(name.substring(0, 20))));
+        }
+        bases.sort(null);
+        for (int i = 0; i < bases.size(); i++) {
+            LogSegment segment = LogSegment.open(directory, bases.get(i), segmentBytes);
+            segments.put(segment.getBaseOffset(), segment);
+            scan(segment, i == bases.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            LogSegment segment = LogSegment.open(directory, 0, segmentBytes);
+            segments.put(0L, segment);
+        }
+        active = segments.lastEntry().getValue();
+        committedOffset = active.getBaseOffset() + active.getPosition();
+        if (recoveredRecords > 0) {
+            System.out.println("Chat log recovered " + recoveredRecords + " records from " + segments.size()
+                + " segments in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        }
+    }
+
+    private void scan(LogSegment segment, boolean last) {
+        ByteBuffer view = segment.view();
+        int position = 0;
+        boolean torn = false;
+        while (position + LogSegment.RECORD_HEADER <= view.capacity()) {
+            int length = view.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < LogSegment.ROOM_HEADER || position + LogSegment.RECORD_HEADER + length > view.capacity()
+                || (last && view.getInt(position + 4) != LogSegment.crc(view, position, length))) {
+                torn = true;
+                break;
+            }
+            indexFor(roomAt(view, position)).add(segment.getBaseOffset() + position);
+            recoveredRecords++;
+            position += LogSegment.RECORD_HEADER + length;
+        }
+        segment.setPosition(position);
+        if (last && torn) {
+            System.err.println("Chat log: discarding torn record at offset " + (segment.getBaseOffset() + position));
+            segment.clearTail();
+        }
+    }
+
+    private static String roomAt(ByteBuffer view, int position) {
+        int roomLength = view.getShort(position + LogSegment.RECORD_HEADER) & 0xFFFF;
+        byte[] room = new byte[roomLength];
+        view.get(position + LogSegment.RECORD_HEADER + LogSegment.ROOM_HEADER, room);
+        return new String(room, StandardCharsets.UTF_8);
+    }
+
+    private RoomIndex indexFor(String room) {
+        return indexes.computeIfAbsent(room, key -> new RoomIndex(indexInterval));
+    }
+
+    // Đưa tin nhắn vào hàng đợi ghi; false nếu log đang quá tải (tin nhắn không được ghi)
+    public boolean append(String room, ChatMessage message) {
+        if (!running || !pending.offer(new Pending(room, message))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    // Chờ tới khi mọi tin nhắn đã append trước đó nằm trên đĩa
+    public boolean sync(long timeoutMillis) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        pending.put(done);
+        return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !pending.isEmpty()) {
+            try {
+                Object first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, MAX_BATCH - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Chat log write failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Ghi cả nhóm rồi force một lần; chỉ sau đó bản ghi mới hiện ra cho luồng đọc
+    private void commit(List<Object> batch) throws IOException {
+        int from = active.getPosition();
+        List<CountDownLatch> waiting = new ArrayList<>();
+        for (Object item : batch) {
+            if (item instanceof CountDownLatch latch) {
+                waiting.add(latch);
+                continue;
+            }
+            Pending record = (Pending) item;
+            byte[] room = record.room().getBytes(StandardCharsets.UTF_8);
+            byte[] frame = BinaryChatCodec.encode(record.message(), 0);
+            int size = LogSegment.RECORD_HEADER + LogSegment.ROOM_HEADER + room.length + frame.length;
+            if (size > segmentBytes) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            if (!active.hasRoom(size)) {
+                active.force(from);
+                roll();
+                from = 0;
+            }
+            long offset = active.append(room, frame);
+            indexFor(record.room()).add(offset);
+            appended.incrementAndGet();
+        }
+        active.force(from);
+        committedOffset = active.getBaseOffset() + active.getPosition();
+        commits.incrementAndGet();
+        waiting.forEach(CountDownLatch::countDown);
+    }
+
+    // Mở segment mới và xóa segment cũ nhất khi vượt quá maxSegments
+    private void roll() throws IOException {
+        LogSegment next = LogSegment.open(directory, active.getBaseOffset() + active.capacity(), segmentBytes);
+        segments.put(next.getBaseOffset(), next);
+        active = next;
+        while (segments.size() > maxSegments) {
+            LogSegment oldest = segments.pollFirstEntry().getValue();
+            long retainedFrom = segments.firstKey();
+            for (RoomIndex index : indexes.values()) {
+                index.dropBefore(retainedFrom);
+            }
+            oldest.delete();
+        }
+    }
+
+    // Tối đa limit frame gần nhất của phòng (cũ nhất trước), dạng frame BinaryChatCodec.
+    // Mỗi ByteBuffer là một lát cắt chỉ đọc của vùng nhớ map, không copy
+    public List<ByteBuffer> readRecent(String room, int limit) {
+        RoomIndex index = indexes.get(room);
+        if (index == null) {
+            return List.of();
+        }
+        return readRecent(room, limit, index.seek(limit), committedOffset);
+    }
+
+    // Như trên nhưng quét từ offset seek và chỉ tính các bản ghi trước offset end
+    private List<ByteBuffer> readRecent(String room, int limit, long seek, long end) {
+        if (limit <= 0 || segments.isEmpty()) {
+            return List.of();
+        }
+        ByteBuffer roomKey = ByteBuffer.wrap(room.getBytes(StandardCharsets.UTF_8));
+        long from = Math.max(seek, segments.firstKey());
+        // Segment đầu có thể vừa bị xóa bởi luồng ghi
+        Long start = segments.floorKey(from);
+        ArrayDeque<ByteBuffer> recent = new ArrayDeque<>(limit);
+        for (LogSegment segment : segments.tailMap(start != null ? start : from, true).values()) {
+            long base = segment.getBaseOffset();
+            if (base >= end) {
+                break;
+            }
+            ByteBuffer view = segment.view();
+            int position = from > base ? (int) (from - base) : 0;
+            while (base + position < end && position + LogSegment.RECORD_HEADER <= view.capacity()) {
+                int length = view.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                int roomStart = position + LogSegment.RECORD_HEADER + LogSegment.ROOM_HEADER;
+                int roomLength = view.getShort(position + LogSegment.RECORD_HEADER) & 0xFFFF;
+                if (roomLength == roomKey.remaining() && view.slice(roomStart, roomLength).equals(roomKey)) {
+                    if (recent.size() == limit) {
+                        recent.removeFirst();
+                    }
+                    int frameLength = length - LogSegment.ROOM_HEADER - roomLength;
+                    recent.addLast(view.slice(roomStart + roomLength, frameLength));
+                }
+                position += LogSegment.RECORD_HEADER + length;
+            }
+        }
+        return new ArrayList<>(recent);
+    }
+
+    // Tin nhắn gần nhất của phòng đã có trên đĩa từ lần chạy trước (dùng để nạp lại lịch sử)
+    public List<ChatMessage> recoveredMessages(String room, int limit) {
+        RoomIndex index = indexes.get(room);
+        Long count = recoveredCounts.get(room);
+        if (index == null || count == null) {
+            return List.of();
+        }
+        List<ChatMessage> messages = new ArrayList<>();
+        for (ByteBuffer frame : readRecent(room, limit, index.seek(limit, count), recoveredOffset)) {
+            messages.add(BinaryChatCodec.decode(frame).message());
+        }
+        return messages;
+    }
+
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    public long getAppendedCount() {
+        return appended.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Số lần force xuống đĩa; appended / commits = số bản ghi trung bình mỗi lần
+    public long getCommitCount() {
+        return commits.get();
+    }
+
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Ghi nốt những gì còn trong hàng đợi rồi đóng các segment
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                System.err.println("Error closing chat log segment: " + e.getMessage());
+            }
+        }
+    }
+}
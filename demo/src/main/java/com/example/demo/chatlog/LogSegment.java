@@ -0,0 +1,117 @@
+package com.example.demo.chatlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Một file segment của log, cấp phát đủ kích thước và map vào bộ nhớ một lần.
+// Bản ghi: [int length][int crc32][short roomLength][room UTF-8][frame BinaryChatCodec],
+// length tính từ roomLength tới hết frame. length = 0 (vùng chưa ghi) đánh dấu hết segment.
+final class LogSegment {
+
+    static final int RECORD_HEADER = 8;
+    static final int ROOM_HEADER = 2;
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    // Chỉ luồng ghi dùng buffer này; luồng đọc dùng bản duplicate chỉ đọc
+    private final MappedByteBuffer buffer;
+    // Vị trí ghi tiếp theo (chỉ luồng ghi sửa)
+    private int position;
+
+    private LogSegment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Path pathFor(Path directory, long baseOffset) {
+        return directory.resolve(String.format("%020d.log", baseOffset));
+    }
+
+    // Mở segment có sẵn (giữ kích thước file) hoặc tạo mới với kích thước size
+    static LogSegment open(Path directory, long baseOffset, int size) throws IOException {
+        Path path = pathFor(directory, baseOffset);
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size() > 0 ? channel.size() : size;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        return new LogSegment(baseOffset, path, channel, buffer);
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    boolean hasRoom(int recordSize) {
+        return position + recordSize <= buffer.capacity();
+    }
+
+    // Ghi một bản ghi tại vị trí hiện tại, trả về offset toàn cục của nó
+    long append(byte[] room, byte[] frame) {
+        int start = position;
+        int length = ROOM_HEADER + room.length + frame.length;
+        buffer.putShort(start + RECORD_HEADER, (short) room.length);
+        buffer.put(start + RECORD_HEADER + ROOM_HEADER, room);
+        buffer.put(start + RECORD_HEADER + ROOM_HEADER + room.length, frame);
+        buffer.putInt(start + 4, crc(buffer, start, length));
+        // length ghi sau cùng: bản ghi chỉ "tồn tại" khi đã ghi đủ
+        buffer.putInt(start, length);
+        position = start + RECORD_HEADER + length;
+        return baseOffset + start;
+    }
+
+    // Đẩy vùng vừa ghi xuống đĩa (một lần cho cả nhóm bản ghi)
+    void force(int from) {
+        if (position > from) {
+            buffer.force(from, position - from);
+        }
+    }
+
+    // Xóa phần đuôi hỏng sau vị trí ghi (bản ghi ghi dở khi tiến trình dừng đột ngột)
+    void clearTail() {
+        for (int i = position; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.force();
+    }
+
+    // Bản xem chỉ đọc, dùng chung vùng nhớ map (không copy)
+    ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    static int crc(ByteBuffer buffer, int recordStart, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(recordStart + RECORD_HEADER, length));
+        return (int) crc.getValue();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.chatlog;
+
+import java.util.Arrays;
+
+// Chỉ mục thưa của một phòng: cứ interval bản ghi của phòng thì lưu offset của một bản ghi.
+// Đọc N tin gần nhất chỉ cần nhảy tới mốc gần nhất rồi quét tiếp, không phải quét cả log.
+final class RoomIndex {
+
+    private final int interval;
+    private long[] entries = new long[8];
+    // Số mốc đầu đã bị bỏ khi segment cũ bị xóa
+    private long droppedEntries;
+    private int entryCount;
+    private long recordCount;
+
+    RoomIndex(int interval) {
+        this.interval = interval;
+    }
+
+    synchronized void add(long offset) {
+        if (recordCount % interval == 0) {
+            if (entryCount == entries.length) {
+                entries = Arrays.copyOf(entries, entryCount * 2);
+            }
+            entries[entryCount++] = offset;
+        }
+        recordCount++;
+    }
+
+    // Offset để bắt đầu quét khi cần limit bản ghi cuối; -1 = từ đầu log còn giữ
+    synchronized long seek(int limit) {
+        return seek(limit, recordCount);
+    }
+
+    // Như trên nhưng tính trên upTo bản ghi đầu của phòng (số bản ghi tại một thời điểm trước đó),
+    // để bản ghi thêm sau thời điểm ấy không đẩy điểm bắt đầu quá xa
+    synchronized long seek(int limit, long upTo) {
+        long entry = Math.max(0, upTo - limit) / interval - droppedEntries;
+        if (entry < 0 || entryCount == 0) {
+            return -1;
+        }
+        return entries[(int) Math.min(entry, entryCount - 1)];
+    }
+
+    // Bỏ các mốc trỏ vào segment đã xóa
+    synchronized void dropBefore(long offset) {
+        int keep = 0;
+        while (keep < entryCount && entries[keep] < offset) {
+            keep++;
+        }
+        if (keep > 0) {
+            System.arraycopy(entries, keep, entries, 0, entryCount - keep);
+            entryCount -= keep;
+            droppedEntries += keep;
+        }
+    }
+
+    synchronized long getRecordCount() {
+        return recordCount;
+    }
+}
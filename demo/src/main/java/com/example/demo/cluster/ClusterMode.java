@@ -0,0 +1,7 @@
+package com.example.demo.cluster;
+
+// LOCAL: một instance, phát trong JVM; TCP: nhiều instance nối với nhau qua TCP
+public enum ClusterMode {
+    LOCAL,
+    TCP
+}
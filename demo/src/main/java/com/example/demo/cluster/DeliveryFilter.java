@@ -0,0 +1,42 @@
+package com.example.demo.cluster;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Khử trùng lặp theo từng node phát: mỗi node đánh số sự kiện tăng dần và gửi theo thứ tự
+// trên một kết nối, nên chỉ cần nhớ số lớn nhất đã giao; số nhỏ hơn hoặc bằng là bản gửi lại
+public class DeliveryFilter {
+
+    private final Map<String, AtomicLong> highestDelivered = new ConcurrentHashMap<>();
+
+    // true nếu sự kiện chưa từng được giao (và đánh dấu là đã giao)
+    public boolean accept(String origin, long id) {
+        AtomicLong highest = highestDelivered.computeIfAbsent(origin, o -> new AtomicLong());
+        while (true) {
+            long current = highest.get();
+            if (id <= current) {
+                return false;
+            }
+            if (highest.compareAndSet(current, id)) {
+                return true;
+            }
+        }
+    }
+
+    // Gọi khi một node kết nối tới: nếu node đó vừa khởi động lại (origin mới, cùng nodeId)
+    // thì bỏ trạng thái của lần chạy trước
+    public void register(String origin) {
+        String node = nodeOf(origin);
+        highestDelivered.keySet().removeIf(o -> !o.equals(origin) && nodeOf(o).equals(node));
+    }
+
+    private static String nodeOf(String origin) {
+        int at = origin.lastIndexOf('@');
+        return at >= 0 ? origin.substring(0, at) : origin;
+    }
+
+    public int getOriginCount() {
+        return highestDelivered.size();
+    }
+}
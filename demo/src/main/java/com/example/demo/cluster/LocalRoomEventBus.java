@@ -0,0 +1,37 @@
+package com.example.demo.cluster;
+
+import com.example.demo.ChatMessage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Chỉ có một node: giao sự kiện ngay trên thread gọi, giữ nguyên hành vi khi chạy một instance
+public class LocalRoomEventBus implements RoomEventBus {
+
+    private final String origin;
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile Consumer<RoomEvent> listener = event -> { };
+
+    public LocalRoomEventBus(String nodeId) {
+        this.origin = nodeId + "@" + System.currentTimeMillis();
+    }
+
+    @Override
+    public void start(Consumer<RoomEvent> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void publish(String room, ChatMessage message) {
+        listener.accept(new RoomEvent(origin, nextId.incrementAndGet(), room, message));
+    }
+
+    @Override
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void close() {
+        listener = event -> { };
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.cluster;
+
+import com.example.demo.ChatMessage;
+
+// Một tin nhắn broadcast tới phòng, kèm node phát và số thứ tự của node đó để khử trùng lặp
+public record RoomEvent(String origin, long id, String room, ChatMessage message) {
+}
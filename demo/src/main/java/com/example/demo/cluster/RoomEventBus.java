@@ -0,0 +1,20 @@
+package com.example.demo.cluster;
+
+import com.example.demo.ChatMessage;
+import java.util.function.Consumer;
+
+// Kênh phát tin nhắn theo phòng tới mọi node: tin publish ở node nào cũng được giao
+// cho listener của tất cả các node (kể cả chính nó), mỗi node một lần
+public interface RoomEventBus extends AutoCloseable {
+
+    // Bắt đầu nhận sự kiện; listener được gọi với mọi sự kiện của mọi node
+    void start(Consumer<RoomEvent> listener);
+
+    void publish(String room, ChatMessage message);
+
+    // Định danh lần chạy của node này (đổi sau mỗi lần khởi động)
+    String getOrigin();
+
+    @Override
+    void close();
+}
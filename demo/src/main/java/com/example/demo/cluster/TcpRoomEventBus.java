@@ -0,0 +1,388 @@
+package com.example.demo.cluster;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.wire.BinaryChatCodec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Phát sự kiện phòng giữa các instance qua TCP (full mesh, mỗi node chỉ gửi sự kiện của chính nó).
+//
+// - Gộp: mỗi peer có một thread ghi, lấy mọi sự kiện đang chờ (tối đa MAX_BATCH) và ghi thành một lô
+// - Giao ít nhất một lần: khi kết nối lại, gửi lại các sự kiện gần nhất peer đó còn giữ trong bộ nhớ,
+//   trừ sự kiện phát trước khi bên nhận khởi động (bên nhận vừa khởi động lại không cần cả cửa sổ cũ)
+// - Khử trùng lặp: bên nhận bỏ sự kiện có số thứ tự không lớn hơn số đã giao của node phát
+// - Đánh số theo từng peer: thread ghi của peer đánh số khi lấy sự kiện khỏi hàng đợi, nên publish
+//   chỉ xếp hàng (không khóa chung) và nhiều thread phát song song được
+// - Chỉ nghe trên bindAddress (mặc định loopback) và chỉ nhận peer chứng minh được secret chung
+//
+// Khung trên dây: bên nhận gửi nonce ngẫu nhiên (NONCE_BYTES) và thời điểm khởi động (long, ms);
+// bên gửi trả origin (writeUTF) và
+// HMAC-SHA256(secret, nonce + origin), sai thì bị ngắt. Sau đó là các lô
+// [int số sự kiện][mỗi sự kiện: phòng (writeUTF), int độ dài + frame BinaryChatCodec với sequence = số thứ tự].
+// Chỉ xác thực, không mã hóa: mở bindAddress ra mạng LAN thì nội dung tin nhắn vẫn đọc được trên dây.
+// Phòng đi riêng vì trường room trong tin nhắn do client gửi có thể khác phòng đích.
+public class TcpRoomEventBus implements RoomEventBus {
+
+    private static final int MAX_BATCH = 256;
+    // Số sự kiện mỗi peer giữ lại để gửi lại khi kết nối lại
+    private static final int RETAINED_EVENTS = 1024;
+    private static final int NONCE_BYTES = 16;
+    private static final int MAC_BYTES = 32;
+    // Peer phải xác thực xong trong thời gian này, nếu không bị ngắt
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5_000;
+    // Số sự kiện tối đa chờ gửi cho một peer đang mất kết nối
+    private static final int PEER_QUEUE_CAPACITY = 10_000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 2_000;
+
+    private final long startedMillis;
+    private final String origin;
+    private final String bindAddress;
+    private final int port;
+    private final byte[] secret;
+    private final SecureRandom random = new SecureRandom();
+    // Chỉ cho sự kiện giao tại chỗ; số thứ tự trên dây do từng peer cấp
+    private final AtomicLong nextId = new AtomicLong();
+    private final DeliveryFilter filter = new DeliveryFilter();
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+
+    private volatile Consumer<RoomEvent> listener = event -> { };
+    private volatile boolean closed = false;
+    private ServerSocket serverSocket;
+
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong duplicatesDropped = new AtomicLong();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private final AtomicLong peersRejected = new AtomicLong();
+
+    // port = 0: chọn cổng trống (xem getPort()). secret dùng chung giữa mọi node, bắt buộc
+    public TcpRoomEventBus(String nodeId, String bindAddress, int port, String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Cluster secret is required in TCP mode (chat.cluster.secret)");
+        }
+        this.startedMillis = System.currentTimeMillis();
+        this.origin = nodeId + "@" + startedMillis;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void start(Consumer<RoomEvent> listener) {
+        this.listener = listener;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot listen for cluster peers on " + bindAddress + ":" + port, e);
+        }
+        daemon("cluster-accept", this::acceptLoop).start();
+        System.out.println("Cluster node " + origin + " listening on " + bindAddress + ":" + getPort());
+    }
+
+    // Thêm một node khác cần nhận sự kiện của node này
+    public void addPeer(InetSocketAddress address) {
+        Peer peer = new Peer(address);
+        peers.add(peer);
+        daemon("cluster-peer-" + address.getPort(), peer::writeLoop).start();
+    }
+
+    // Không khóa chung: hàng đợi của mỗi peer là FIFO nên sự kiện của cùng một thread phát tới các
+    // node khác đúng thứ tự. Phòng phát từ worker của nó (tin nhắn, join/leave, bot đồng bộ), nhưng
+    // trả lời của bot bất đồng bộ được phát từ làn của bot: thứ tự giữa chúng và các tin nhắn khác
+    // của phòng là thứ tự xếp vào hàng đợi, giống như khi giao tại chỗ.
+    // Số thứ tự trên dây được cấp sau, bởi thread ghi của peer
+    @Override
+    public void publish(String room, ChatMessage message) {
+        RoomEvent event = new RoomEvent(origin, nextId.incrementAndGet(), room, message);
+        Outgoing outgoing = new Outgoing(event, System.currentTimeMillis());
+        for (Peer peer : peers) {
+            if (!peer.queue.offer(outgoing)) {
+                eventsDropped.incrementAndGet();
+            }
+        }
+        // Node phát tự giao cho các session của mình, không đi vòng qua mạng
+        listener.accept(event);
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                daemon("cluster-read-" + socket.getPort(), () -> readLoop(socket)).start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Cluster accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            String peerOrigin = authenticate(socket, in);
+            if (peerOrigin == null) {
+                peersRejected.incrementAndGet();
+                System.err.println("Cluster peer " + socket.getRemoteSocketAddress() + " rejected: bad secret");
+                return;
+            }
+            filter.register(peerOrigin);
+            while (!closed) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String room = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    BinaryChatCodec.Frame frame = BinaryChatCodec.decode(ByteBuffer.wrap(bytes));
+                    eventsReceived.incrementAndGet();
+                    if (!filter.accept(peerOrigin, frame.sequence())) {
+                        duplicatesDropped.incrementAndGet();
+                        continue;
+                    }
+                    deliver(new RoomEvent(peerOrigin, frame.sequence(), room, frame.message()));
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Peer đóng kết nối
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cluster read failed: " + e.getMessage());
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    // Gửi nonce, đọc origin và HMAC của peer; trả về origin nếu đúng secret, null nếu sai
+    private String authenticate(Socket socket, DataInputStream in) throws IOException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.write(nonce);
+        out.writeLong(startedMillis);
+        out.flush();
+        String peerOrigin = in.readUTF();
+        byte[] proof = new byte[MAC_BYTES];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, mac(nonce, peerOrigin))) {
+            return null;
+        }
+        socket.setSoTimeout(0);
+        return peerOrigin;
+    }
+
+    private byte[] mac(byte[] nonce, String peerOrigin) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update(nonce);
+            return mac.doFinal(peerOrigin.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private void deliver(RoomEvent event) {
+        try {
+            listener.accept(event);
+        } catch (Exception e) {
+            System.err.println("Error delivering cluster event to room " + event.room() + ": " + e.getMessage());
+        }
+    }
+
+    // Sự kiện chờ gửi cho một peer, kèm thời điểm phát để bỏ qua khi gửi lại cho peer khởi động sau đó
+    private record Outgoing(RoomEvent event, long publishedMillis) {
+    }
+
+    // Mỗi peer: một kết nối ra, một hàng đợi và một thread ghi theo lô. Số thứ tự và danh sách
+    // giữ lại chỉ thread ghi chạm tới nên không cần khóa
+    private final class Peer {
+        private final InetSocketAddress address;
+        private final LinkedBlockingQueue<Outgoing> queue = new LinkedBlockingQueue<>(PEER_QUEUE_CAPACITY);
+        private final ArrayDeque<Outgoing> retained = new ArrayDeque<>();
+        private long sequence = 0;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void writeLoop() {
+            List<Outgoing> batch = new ArrayList<>(MAX_BATCH);
+            boolean reconnecting = false;
+            long delay = 50;
+            while (!closed) {
+                try (Socket socket = new Socket()) {
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address, 1_000);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    byte[] nonce = new byte[NONCE_BYTES];
+                    socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    in.readFully(nonce);
+                    long peerStartedMillis = in.readLong();
+                    socket.setSoTimeout(0);
+                    out.writeUTF(origin);
+                    out.write(mac(nonce, origin));
+                    if (reconnecting) {
+                        // Có thể peer đã nhận một phần: gửi lại, bên nhận tự bỏ bản trùng. Peer đã
+                        // khởi động lại thì chỉ gửi phần phát sau khi nó khởi động
+                        writeBatch(out, retainedSince(peerStartedMillis));
+                    }
+                    out.flush();
+                    delay = 50;
+                    while (!closed) {
+                        Outgoing first = queue.poll(1, TimeUnit.SECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_BATCH - 1);
+                        writeBatch(out, number(batch));
+                        out.flush();
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    if (closed) {
+                        return;
+                    }
+                    if (!reconnecting) {
+                        System.err.println("Cluster peer " + address + " unreachable: " + e.getMessage());
+                    }
+                    reconnecting = true;
+                    batch.clear(); // Đã đánh số nên vẫn còn trong danh sách giữ lại
+                    sleep(delay);
+                    delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+                }
+            }
+        }
+
+        // Cấp số thứ tự của peer này và giữ lại trước khi ghi, để lô ghi dở được gửi lại khi kết nối lại
+        private List<RoomEvent> number(List<Outgoing> batch) {
+            List<RoomEvent> numbered = new ArrayList<>(batch.size());
+            for (Outgoing outgoing : batch) {
+                RoomEvent event = outgoing.event();
+                RoomEvent withSequence = new RoomEvent(origin, ++sequence, event.room(), event.message());
+                numbered.add(withSequence);
+                if (retained.size() == RETAINED_EVENTS) {
+                    retained.pollFirst();
+                }
+                retained.addLast(new Outgoing(withSequence, outgoing.publishedMillis()));
+            }
+            return numbered;
+        }
+
+        private List<RoomEvent> retainedSince(long peerStartedMillis) {
+            List<RoomEvent> events = new ArrayList<>(retained.size());
+            for (Outgoing outgoing : retained) {
+                if (outgoing.publishedMillis() >= peerStartedMillis) {
+                    events.add(outgoing.event());
+                }
+            }
+            return events;
+        }
+
+        private void writeBatch(DataOutputStream out, List<RoomEvent> events) throws IOException {
+            if (events.isEmpty()) {
+                return;
+            }
+            out.writeInt(events.size());
+            for (RoomEvent event : events) {
+                out.writeUTF(event.room());
+                byte[] bytes = BinaryChatCodec.encode(event.message(), event.id());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            eventsSent.addAndGet(events.size());
+            batchesSent.incrementAndGet();
+        }
+    }
+
+    @Override
+    public String getOrigin() {
+        return origin;
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public long getEventsSent() { return eventsSent.get(); }
+    public long getBatchesSent() { return batchesSent.get(); }
+    public long getEventsReceived() { return eventsReceived.get(); }
+    public long getDuplicatesDropped() { return duplicatesDropped.get(); }
+    public long getEventsDropped() { return eventsDropped.get(); }
+    public long getPeersRejected() { return peersRejected.get(); }
+
+    // Cắt mọi kết nối vào (mô phỏng mạng chập chờn); các peer sẽ tự kết nối lại
+    public void dropInboundConnections() {
+        for (Socket socket : inbound) {
+            closeQuietly(socket);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        listener = event -> { };
+        closeQuietly(serverSocket);
+        dropInboundConnections();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Bỏ qua khi đóng
+        }
+    }
+
+    private static Thread daemon(String name, Runnable body) {
+        Thread thread = new Thread(body, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
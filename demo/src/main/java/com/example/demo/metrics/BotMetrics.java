@@ -0,0 +1,78 @@
+package com.example.demo.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Số liệu của một bot: canHandle chạy với mọi tin nhắn nên chỉ đếm tổng thời gian,
+// processMessage (khi bot nhận tin) có histogram riêng để thấy bot chậm. Khi bot chạy
+// bất đồng bộ: số lần quá thời gian cho phép và số lần bị từ chối vì hàng đợi của bot đầy
+public class BotMetrics {
+
+    private final LongAdder canHandleCalls = new LongAdder();
+    private final LongAdder canHandleNanos = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    // Micro giây
+    private final Histogram processTime = new Histogram();
+
+    public void canHandle(long nanos, boolean hit) {
+        canHandleCalls.increment();
+        canHandleNanos.add(nanos);
+        if (hit) {
+            hits.increment();
+        }
+    }
+
+    public void processed(long nanos, boolean responded) {
+        processTime.record(nanos / 1000);
+        if (responded) {
+            responses.increment();
+        }
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public void timeout() {
+        timeouts.increment();
+    }
+
+    public void rejected() {
+        rejections.increment();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getCanHandleCalls() {
+        return canHandleCalls.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        long calls = canHandleCalls.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("canHandleCalls", calls);
+        snapshot.put("canHandleMeanNanos", calls == 0 ? 0 : canHandleNanos.sum() / calls);
+        snapshot.put("hits", hits.sum());
+        snapshot.put("responses", responses.sum());
+        snapshot.put("errors", errors.sum());
+        snapshot.put("timeouts", timeouts.sum());
+        snapshot.put("rejections", rejections.sum());
+        snapshot.put("processMessageMicros", processTime.snapshot());
+        return snapshot;
+    }
+}
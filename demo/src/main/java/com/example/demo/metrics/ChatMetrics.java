@@ -0,0 +1,117 @@
+package com.example.demo.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Số liệu vận hành của chat. Đường nóng (mỗi tin nhắn, mỗi lần fan-out) chỉ cộng LongAdder,
+// không khóa và không cấp phát; phần tổng hợp chỉ chạy khi endpoint được gọi.
+// Số đo hiện tại (session, phòng đang mở) do ChatHandler cung cấp lúc chụp.
+public class ChatMetrics {
+
+    private final LongAdder sessionsOpened = new LongAdder();
+    private final LongAdder sessionsClosed = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    // Tin nhắn bị bỏ vì người gửi vượt quá demand quá lâu (chế độ FLOW_CONTROLLED)
+    private final LongAdder inboundDropped = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder framesFannedOut = new LongAdder();
+    // Số thành viên nhận mỗi lần broadcast
+    private final Histogram fanOut = new Histogram();
+    // Từ lúc sự kiện phòng tới instance đến khi frame đã vào hàng đợi của mọi thành viên (micro giây)
+    private final Histogram broadcastLatency = new Histogram();
+    private final Map<String, BotMetrics> bots = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> moderationActions = new ConcurrentHashMap<>();
+
+    public void sessionOpened() {
+        sessionsOpened.increment();
+    }
+
+    public void sessionClosed() {
+        sessionsClosed.increment();
+    }
+
+    public void messageReceived() {
+        messagesReceived.increment();
+    }
+
+    public void inboundDropped() {
+        inboundDropped.increment();
+    }
+
+    public void sendFailure() {
+        sendFailures.increment();
+    }
+
+    public void broadcast(int members, long latencyNanos) {
+        broadcasts.increment();
+        framesFannedOut.add(members);
+        fanOut.record(members);
+        broadcastLatency.record(latencyNanos / 1000);
+    }
+
+    // Tạo khi bot được dùng lần đầu
+    public BotMetrics bot(String botName) {
+        return bots.computeIfAbsent(botName, name -> new BotMetrics());
+    }
+
+    public void removeBot(String botName) {
+        bots.remove(botName);
+    }
+
+    // Ví dụ: mute, ban, unmute, unban, blocked_muted, blocked_banned
+    public void moderationAction(String action) {
+        moderationActions.computeIfAbsent(action, name -> new LongAdder()).increment();
+    }
+
+    public long getModerationActions(String action) {
+        LongAdder counter = moderationActions.get(action);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public long getSendFailures() {
+        return sendFailures.sum();
+    }
+
+    public Histogram getFanOut() {
+        return fanOut;
+    }
+
+    public Histogram getBroadcastLatency() {
+        return broadcastLatency;
+    }
+
+    // activeSessions/outboundDropped là số đo hiện tại do nơi giữ session cung cấp
+    public Map<String, Object> snapshot(int activeSessions, long outboundDropped) {
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        sessions.put("active", activeSessions);
+        sessions.put("opened", sessionsOpened.sum());
+        sessions.put("closed", sessionsClosed.sum());
+        sessions.put("sendFailures", sendFailures.sum());
+        sessions.put("outboundDropped", outboundDropped);
+
+        Map<String, Object> messages = new LinkedHashMap<>();
+        messages.put("received", messagesReceived.sum());
+        messages.put("inboundDropped", inboundDropped.sum());
+        messages.put("broadcasts", broadcasts.sum());
+        messages.put("framesFannedOut", framesFannedOut.sum());
+        messages.put("fanOut", fanOut.snapshot());
+        messages.put("broadcastLatencyMicros", broadcastLatency.snapshot());
+
+        Map<String, Object> botSnapshots = new TreeMap<>();
+        bots.forEach((name, metrics) -> botSnapshots.put(name, metrics.snapshot()));
+
+        Map<String, Object> moderation = new TreeMap<>();
+        moderationActions.forEach((action, counter) -> moderation.put(action, counter.sum()));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("sessions", sessions);
+        snapshot.put("messages", messages);
+        snapshot.put("bots", botSnapshots);
+        snapshot.put("moderation", moderation);
+        return snapshot;
+    }
+}
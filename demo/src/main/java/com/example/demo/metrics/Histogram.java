@@ -0,0 +1,76 @@
+package com.example.demo.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogram không tranh chấp: mỗi ô là một LongAdder nên nhiều thread ghi cùng lúc
+// không tranh nhau một biến. Ô theo lũy thừa 2 (ô i chứa giá trị < 2^i), đủ để thấy
+// p99 nhảy từ 1 ms lên 100 ms mà không tốn bộ nhớ cho độ chính xác không cần thiết.
+public class Histogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(clamped))].increment();
+        count.increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Cận trên của ô chứa phân vị (0..1); 0 khi chưa có mẫu
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : (1L << bucket) - 1;
+    }
+
+    // Ảnh chụp để xuất ra endpoint; giá trị theo đơn vị lúc ghi
+    public Map<String, Object> snapshot() {
+        long samples = count.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", samples);
+        snapshot.put("mean", samples == 0 ? 0 : sum.sum() / samples);
+        snapshot.put("p50", percentile(0.50));
+        snapshot.put("p99", percentile(0.99));
+        snapshot.put("p999", percentile(0.999));
+        snapshot.put("max", max.get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.moderation;
+
+import com.example.demo.metrics.ChatMetrics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Kiểm duyệt trước khi điều phối: quyết định tin nhắn của một người gửi được đi tiếp, bị bỏ
+// (bị cấm/tắt tiếng) hay bị hãm (gửi quá nhanh) trước khi bot nào chạy và trước khi tin nhắn
+// được phát tới ai. Chỉ tra map và một CAS theo danh tính người gửi, không đọc nội dung tin nhắn.
+// Danh tính là tài khoản đã đăng nhập của session (ClientSession.getIdentity), không phải nickname
+// client tự khai trong frame: đổi nickname không thoát được cấm/tắt tiếng hay giới hạn tốc độ.
+public class ModerationGate {
+
+    public enum Action {
+        ALLOW,
+        DROP,       // Bỏ tin nhắn: người gửi bị cấm hoặc đang bị tắt tiếng
+        THROTTLE    // Bỏ tin nhắn này: người gửi vượt tốc độ cho phép, gửi lại sau được
+    }
+
+    public enum Reason {
+        NONE,
+        BANNED,
+        MUTED,
+        RATE_LIMITED
+    }
+
+    // notice: thông báo cho người gửi, null khi ALLOW
+    public record Verdict(Action action, Reason reason, String notice) {
+        public static final Verdict ALLOW = new Verdict(Action.ALLOW, Reason.NONE, null);
+
+        public boolean allowed() {
+            return action == Action.ALLOW;
+        }
+    }
+
+    // Số người gửi tối đa giữ trong bảng trước khi dọn các bucket đã đầy lại
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final ModerationService moderationService;
+    private final ChatMetrics metrics;
+    // 0 khi tắt giới hạn tốc độ
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier clock;
+
+    // Token bucket dạng GCRA theo danh tính người gửi, như AdmissionControl làm theo IP
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(Long.MIN_VALUE);
+
+    // Chỉ kiểm tra cấm/tắt tiếng
+    public ModerationGate(ModerationService moderationService, ChatMetrics metrics) {
+        this(moderationService, metrics, 0, 0, System::nanoTime);
+    }
+
+    // ratePerSecond <= 0: không giới hạn tốc độ
+    public ModerationGate(ModerationService moderationService, ChatMetrics metrics, double ratePerSecond, int burst,
+                          LongSupplier nanoClock) {
+        this.moderationService = moderationService;
+        this.metrics = metrics;
+        this.intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.clock = nanoClock;
+    }
+
+    // Chỉ cho tin nhắn từ client: trả lời của bot không đi qua đây nên không có ngoại lệ cho bot
+    public Verdict check(String identity) {
+        if (moderationService.isBanned(identity)) {
+            metrics.moderationAction("blocked_banned");
+            return new Verdict(Action.DROP, Reason.BANNED,
+                String.format("❌ @%s đã bị cấm chat vĩnh viễn và không thể gửi tin nhắn.", identity));
+        }
+        if (moderationService.isMuted(identity)) {
+            metrics.moderationAction("blocked_muted");
+            return new Verdict(Action.DROP, Reason.MUTED,
+                String.format("🔇 @%s đang bị tắt tiếng. Thời gian còn lại: %s", identity,
+                    moderationService.getRemainingMuteTime(identity)));
+        }
+        if (intervalNanos > 0 && !allow(identity, clock.getAsLong())) {
+            metrics.moderationAction("throttled");
+            return new Verdict(Action.THROTTLE, Reason.RATE_LIMITED,
+                "🐌 Bạn gửi tin nhắn quá nhanh, tin nhắn vừa rồi chưa được gửi. Vui lòng chậm lại!");
+        }
+        return Verdict.ALLOW;
+    }
+
+    private boolean allow(String identity, long now) {
+        AtomicLong arrival = buckets.get(identity);
+        if (arrival == null) {
+            sweep(now);
+            arrival = buckets.computeIfAbsent(identity, key -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = arrival.get();
+            long start = Math.max(current, now);
+            if (start - now > toleranceNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    // Bucket có thời điểm đến lý thuyết đã qua thì tương đương bucket mới, bỏ đi được.
+    // Chỉ dọn khi bảng lớn và không quá một lần mỗi giây
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (buckets.size() < SWEEP_THRESHOLD || now - last < TimeUnit.SECONDS.toNanos(1)
+            || !lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(arrival -> arrival.get() <= now);
+    }
+}
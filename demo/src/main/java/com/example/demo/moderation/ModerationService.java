@@ -1,5 +1,6 @@
 package com.example.demo.moderation;
 
+import com.example.demo.metrics.ChatMetrics;
 import java.time.LocalDateTime;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
@@ -10,6 +11,15 @@ public class ModerationService {
     private Map<String, MuteInfo> mutedUsers = new ConcurrentHashMap<>();
     // Lưu trữ user bị ban vĩnh viễn
     private Map<String, BanInfo> bannedUsers = new ConcurrentHashMap<>();
+    private final ChatMetrics metrics;
+    
+    public ModerationService() {
+        this(new ChatMetrics());
+    }
+    
+    public ModerationService(ChatMetrics metrics) {
+        this.metrics = metrics;
+    }
     
     // Kiểm tra user có bị mute không
     public boolean isMuted(String username) {
@@ -37,6 +47,7 @@ public class ModerationService {
         LocalDateTime expiryTime = LocalDateTime.now().plusMinutes(minutes);
         MuteInfo muteInfo = new MuteInfo(username, reason, moderator, expiryTime);
         mutedUsers.put(username, muteInfo);
+        metrics.moderationAction("mute");
         
         return new MuteResult(true, String.format("User @%s đã bị tắt tiếng %d phút", username, minutes));
     }
@@ -48,18 +59,27 @@ public class ModerationService {
         
         // Remove từ mute list nếu có
         mutedUsers.remove(username);
+        metrics.moderationAction("ban");
         
         return new BanResult(true, String.format("User @%s đã bị cấm chat vĩnh viễn", username));
     }
     
     // Unmute user
     public boolean unmuteUser(String username) {
-        return mutedUsers.remove(username) != null;
+        boolean removed = mutedUsers.remove(username) != null;
+        if (removed) {
+            metrics.moderationAction("unmute");
+        }
+        return removed;
     }
     
     // Unban user
     public boolean unbanUser(String username) {
-        return bannedUsers.remove(username) != null;
+        boolean removed = bannedUsers.remove(username) != null;
+        if (removed) {
+            metrics.moderationAction("unban");
+        }
+        return removed;
     }
     
     // Lấy thông tin mute
@@ -0,0 +1,87 @@
+package com.example.demo.room;
+
+import com.example.demo.session.ClientSession;
+import com.example.demo.wire.OutboundFrame;
+import java.util.Arrays;
+import java.util.List;
+
+// Một phòng chat thuộc về một worker của RoomEngine: add/remove/broadcast chỉ được gọi
+// trên worker đó nên không cần khóa. Thread khác chỉ đọc ảnh chụp thành viên (size, getMembers).
+public class ChatRoom {
+
+    private static final ClientSession[] NO_MEMBERS = new ClientSession[0];
+
+    private final String name;
+
+    // Ảnh chụp thành viên bất biến: join/leave (hiếm) tạo mảng mới,
+    // broadcast (liên tục) đọc mảng hiện tại mà không copy
+    private volatile ClientSession[] members = NO_MEMBERS;
+
+    public ChatRoom(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void add(ClientSession client) {
+        ClientSession[] current = members;
+        if (indexOf(current, client) >= 0) {
+            return;
+        }
+        ClientSession[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = client;
+        members = next;
+    }
+
+    // Trả về false nếu client không có trong phòng
+    public boolean remove(ClientSession client) {
+        ClientSession[] current = members;
+        int index = indexOf(current, client);
+        if (index < 0) {
+            return false;
+        }
+        if (current.length == 1) {
+            members = NO_MEMBERS;
+            return true;
+        }
+        ClientSession[] next = new ClientSession[current.length - 1];
+        System.arraycopy(current, 0, next, 0, index);
+        System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+        members = next;
+        return true;
+    }
+
+    private static int indexOf(ClientSession[] clients, ClientSession client) {
+        for (int i = 0; i < clients.length; i++) {
+            if (clients[i] == client) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    // Danh sách thành viên tại thời điểm gọi
+    public List<ClientSession> getMembers() {
+        return List.of(members);
+    }
+
+    // Gửi tin nhắn đến tất cả session trong phòng (bao gồm cả người gửi).
+    // Mọi session nhận chung một frame đã encode sẵn; frame chỉ được đưa vào
+    // hàng đợi gửi của từng session, lỗi ghi socket được xử lý ở đó.
+    public void broadcast(OutboundFrame frame) {
+        // Duyệt ảnh chụp hiện tại: join/leave trong lúc gửi không ảnh hưởng vòng lặp
+        for (ClientSession member : members) {
+            member.send(frame);
+        }
+    }
+}
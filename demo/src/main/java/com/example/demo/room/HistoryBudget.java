@@ -0,0 +1,41 @@
+package com.example.demo.room;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ngân sách bộ nhớ dùng chung cho lịch sử của tất cả các phòng.
+// Mỗi RoomHistory đặt trước bytes trước khi giữ một frame và trả lại khi bỏ frame đó,
+// nên tổng bộ nhớ lịch sử không vượt quá maxBytes dù có bao nhiêu phòng.
+public class HistoryBudget {
+
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public HistoryBudget(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Trả về false nếu không còn đủ chỗ (không đặt trước gì cả)
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long used = usedBytes.get();
+            if (used + bytes > maxBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        usedBytes.addAndGet(-bytes);
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
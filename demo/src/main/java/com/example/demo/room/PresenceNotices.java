@@ -0,0 +1,55 @@
+package com.example.demo.room;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Gom thông báo join/leave của một phòng trong một cửa sổ thời gian thành tối đa hai tin.
+// Khi hàng nghìn phiên kết nối lại cùng lúc, mỗi phòng chỉ phát một thông báo thay vì
+// N thông báo gửi tới N thành viên (N²). Ai rời rồi vào lại trong cùng cửa sổ (mạng chập chờn)
+// thì không thông báo gì. Chỉ worker sở hữu phòng dùng nên không cần khóa.
+public class PresenceNotices {
+
+    // Số tên liệt kê tối đa trong một thông báo, phần còn lại chỉ đếm
+    static final int MAX_NAMES = 5;
+
+    // Nickname -> số lần vào trừ số lần rời trong cửa sổ (giữ thứ tự xuất hiện)
+    private final Map<String, Integer> changes = new LinkedHashMap<>();
+
+    public void joined(String nickname) {
+        changes.merge(String.valueOf(nickname), 1, Integer::sum);
+    }
+
+    public void left(String nickname) {
+        changes.merge(String.valueOf(nickname), -1, Integer::sum);
+    }
+
+    // Nội dung các thông báo cần phát (có thể rỗng nếu mọi thay đổi triệt tiêu nhau)
+    public List<String> messages() {
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (Map.Entry<String, Integer> change : changes.entrySet()) {
+            if (change.getValue() > 0) {
+                joined.add(change.getKey());
+            } else if (change.getValue() < 0) {
+                left.add(change.getKey());
+            }
+        }
+        List<String> messages = new ArrayList<>(2);
+        if (!joined.isEmpty()) {
+            messages.add(names(joined) + " đã tham gia phòng");
+        }
+        if (!left.isEmpty()) {
+            messages.add(names(left) + " đã rời phòng");
+        }
+        return messages;
+    }
+
+    private static String names(List<String> names) {
+        if (names.size() <= MAX_NAMES) {
+            return String.join(", ", names);
+        }
+        return String.join(", ", names.subList(0, MAX_NAMES)) + " và " + (names.size() - MAX_NAMES) + " người khác";
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.room;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Mô hình actor theo phòng: mỗi phòng thuộc về đúng một worker (băm theo tên phòng),
+// mỗi worker là một thread với hộp thư FIFO riêng. Mọi thao tác của một phòng
+// (join, leave, broadcast, trạng thái game của bot) chạy tuần tự trên worker đó nên
+// không cần khóa; các phòng thuộc worker khác nhau chạy song song theo số core.
+public class RoomEngine {
+
+    private final Worker[] workers;
+
+    public RoomEngine(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker("chat-room-" + i);
+            workers[i].start();
+        }
+    }
+
+    // Xếp task vào hộp thư của worker sở hữu phòng; các task của cùng một phòng chạy theo thứ tự gửi
+    public void execute(String room, Runnable task) {
+        workers[workerIndex(room)].mailbox.add(task);
+    }
+
+    // true nếu thread hiện tại là worker sở hữu phòng
+    public boolean isOwner(String room) {
+        return Thread.currentThread() == workers[workerIndex(room)];
+    }
+
+    public int workerIndex(String room) {
+        int h = room.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), workers.length);
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    // Tổng số task đang chờ trong các hộp thư
+    public int getPendingCount() {
+        int pending = 0;
+        for (Worker worker : workers) {
+            pending += worker.mailbox.size();
+        }
+        return pending;
+    }
+
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private static final class Worker extends Thread {
+        private final BlockingQueue<Runnable> mailbox = new LinkedBlockingQueue<>();
+
+        Worker(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                Runnable task;
+                try {
+                    task = mailbox.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    // Một task lỗi không được làm dừng cả worker (và mọi phòng của nó)
+                    System.err.println("Error in room task on " + getName() + ": " + e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.room;
+
+import com.example.demo.wire.OutboundFrame;
+import java.util.ArrayList;
+import java.util.List;
+
+// Vòng đệm N frame gần nhất của một phòng, cấp phát sẵn một lần khi tạo.
+// Giữ frame đã encode nên phát lại khi join không phải serialize lại.
+// Cũng là nơi cấp số thứ tự tăng dần cho tin nhắn của phòng: client kết nối lại báo số cuối
+// đã thấy và nhận lại đúng phần bị lỡ nếu phần đó còn trong vòng đệm.
+// Chỉ worker sở hữu phòng gọi các phương thức nên không cần khóa.
+public class RoomHistory {
+
+    // Ước lượng chi phí của mảng tham chiếu, tính vào ngân sách chung khi tạo vòng đệm
+    static final int SLOT_OVERHEAD = 8;
+
+    private final OutboundFrame[] ring;
+    private final HistoryBudget budget;
+    // Vị trí frame cũ nhất và số frame đang giữ
+    private int head;
+    private int count;
+    private long bytes;
+    // Số thứ tự đã cấp gần nhất, và số nhỏ nhất mà vòng đệm vẫn còn đầy đủ phần sau nó
+    private long lastSequence;
+    private long retainedFrom;
+
+    private RoomHistory(int capacity, HistoryBudget budget, long sequenceBase) {
+        this.ring = new OutboundFrame[capacity];
+        this.budget = budget;
+        this.lastSequence = sequenceBase;
+        this.retainedFrom = sequenceBase + 1;
+    }
+
+    // Số thứ tự bắt đầu sau sequenceBase. null nếu ngân sách chung không còn chỗ cho cả vòng đệm
+    public static RoomHistory create(int capacity, HistoryBudget budget, long sequenceBase) {
+        if (capacity <= 0 || !budget.tryReserve((long) capacity * SLOT_OVERHEAD)) {
+            return null;
+        }
+        return new RoomHistory(capacity, budget, sequenceBase);
+    }
+
+    public long nextSequence() {
+        return ++lastSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void append(OutboundFrame frame) {
+        int size = frame.size();
+        if (count == ring.length) {
+            evictOldest();
+        }
+        // Hết ngân sách chung: phòng này nhường chỗ bằng frame cũ nhất của chính nó
+        while (!budget.tryReserve(size)) {
+            if (count == 0) {
+                // Frame lớn hơn phần ngân sách còn lại, bỏ qua: không thể nối tiếp qua nó nữa
+                retainedFrom = Math.max(retainedFrom, frame.getSequence() + 1);
+                return;
+            }
+            evictOldest();
+        }
+        ring[(head + count) % ring.length] = frame;
+        count++;
+        bytes += size;
+    }
+
+    private void evictOldest() {
+        OutboundFrame oldest = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        count--;
+        bytes -= oldest.size();
+        budget.release(oldest.size());
+        retainedFrom = Math.max(retainedFrom, oldest.getSequence() + 1);
+    }
+
+    // Trả toàn bộ vòng đệm về ngân sách chung; không dùng lại đối tượng này sau đó
+    public void release() {
+        while (count > 0) {
+            evictOldest();
+        }
+        budget.release((long) ring.length * SLOT_OVERHEAD);
+    }
+
+    // Các frame đang giữ, cũ nhất trước
+    public List<OutboundFrame> snapshot() {
+        List<OutboundFrame> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            frames.add(ring[(head + i) % ring.length]);
+        }
+        return frames;
+    }
+
+    // Các frame sau lastSeen, hoặc null nếu một phần khoảng bị lỡ đã rời vòng đệm
+    // (hoặc lastSeen không thuộc chuỗi số của phòng này) và client cần lịch sử đầy đủ.
+    // Frame không được giữ lại (thông báo hệ thống) cũng không được gửi lại
+    public List<OutboundFrame> since(long lastSeen) {
+        if (lastSeen + 1 < retainedFrom || lastSeen > lastSequence) {
+            return null;
+        }
+        List<OutboundFrame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OutboundFrame frame = ring[(head + i) % ring.length];
+            if (frame.getSequence() > lastSeen) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo.session;
+
+import com.example.demo.bot.MessageEnvelope;
+import com.example.demo.wire.OutboundFrame;
+import org.springframework.web.socket.WebSocketSession;
+import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Toàn bộ trạng thái của một kết nối, lưu trong WebSocketSession.getAttributes()
+// thay cho nhiều map song song khóa bằng session
+public class ClientSession {
+
+    public static final String ATTRIBUTE = "chat.client";
+
+    private static final String DEFAULT_NICKNAME = "Anonymous";
+
+    private final WebSocketSession session;
+    // Tên tài khoản đã đăng nhập của handshake, null nếu chưa đăng nhập
+    private final String username;
+    private final String role;
+    private final OutboundQueue outbound;
+    // null khi xử lý tin nhắn đến ở chế độ INLINE (SerialExecutor hoặc FlowControlledInbound)
+    private final Executor inbound;
+    private final long connectedAt = System.currentTimeMillis();
+
+    private volatile String nickname;
+    // Tên phòng hiện tại (đối tượng ChatRoom thuộc về worker của phòng)
+    private volatile String room;
+    private volatile boolean closed = false;
+    // Lần cuối nhận được bất kỳ thứ gì từ client (tin nhắn, pong), dùng cho heartbeat
+    private volatile long lastActivity = connectedAt;
+    // Việc của bot cho tin nhắn gần nhất (bot bất đồng bộ), xong khi mọi bot đã trả lời hoặc hết hạn
+    private volatile CompletableFuture<Void> botWork;
+
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    public ClientSession(WebSocketSession session, OutboundQueue outbound, Executor inbound) {
+        this.session = session;
+        Principal principal = session.getPrincipal();
+        this.username = principal != null ? principal.getName() : null;
+        this.role = resolveRole(principal);
+        this.outbound = outbound;
+        this.inbound = inbound;
+    }
+
+    // Lấy trạng thái đã gắn vào session, null nếu session chưa (hoặc không còn) được quản lý
+    public static ClientSession of(WebSocketSession session) {
+        return (ClientSession) session.getAttributes().get(ATTRIBUTE);
+    }
+
+    public void attach() {
+        session.getAttributes().put(ATTRIBUTE, this);
+    }
+
+    public void detach() {
+        session.getAttributes().remove(ATTRIBUTE, this);
+    }
+
+    // Đưa frame vào hàng đợi gửi, không chặn thread gọi
+    public boolean send(OutboundFrame frame) {
+        return outbound.offer(frame);
+    }
+
+    // Đánh dấu đã đóng; chỉ lần gọi đầu tiên trả về true
+    public synchronized boolean markClosed() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public CompletableFuture<Void> getBotWork() {
+        return botWork;
+    }
+
+    public void setBotWork(CompletableFuture<Void> botWork) {
+        this.botWork = botWork;
+    }
+
+    public void recordReceived() {
+        messagesReceived.incrementAndGet();
+        touch();
+    }
+
+    // Client vẫn còn sống (ví dụ vừa trả lời ping)
+    public void touch() {
+        touch(System.currentTimeMillis());
+    }
+
+    void touch(long now) {
+        lastActivity = now;
+    }
+
+    public OutboundStats stats() {
+        return new OutboundStats(session.getId(), getNickname(), room,
+            outbound.getDepth(), outbound.getCapacity(), outbound.getSentCount(), outbound.getWriteCount(),
+            outbound.getDroppedCount(),
+            outbound.getPolicy());
+    }
+
+    // Vai trò theo tài khoản đã đăng nhập, gắn vào MessageEnvelope của mọi tin nhắn từ session này
+    // (quyền của lệnh kiểm duyệt). Chưa đăng nhập thì là USER dù nickname là gì
+    private static String resolveRole(Principal principal) {
+        return principal != null ? MessageEnvelope.roleOf(principal.getName()) : "USER";
+    }
+
+    // Danh tính để kiểm duyệt (cấm, tắt tiếng, giới hạn tốc độ): tài khoản đã đăng nhập, hoặc chính
+    // kết nối nếu chưa đăng nhập. Không bao giờ là nickname client tự khai trong frame
+    public String getIdentity() {
+        return username != null ? username : "session:" + session.getId();
+    }
+
+    // Getters & Setters
+    public WebSocketSession getSession() { return session; }
+    public String getId() { return session.getId(); }
+    public String getUsername() { return username; }
+    public String getRole() { return role; }
+    public OutboundQueue getOutbound() { return outbound; }
+    public Executor getInbound() { return inbound; }
+    public long getConnectedAt() { return connectedAt; }
+    public long getMessagesReceived() { return messagesReceived.get(); }
+    public long getLastActivity() { return lastActivity; }
+
+    public String getNickname() {
+        String current = nickname;
+        return current != null ? current : DEFAULT_NICKNAME;
+    }
+
+    public void setNickname(String nickname) { this.nickname = nickname; }
+
+    public String getRoom() { return room; }
+    public void setRoom(String room) { this.room = room; }
+}
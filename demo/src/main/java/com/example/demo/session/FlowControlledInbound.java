@@ -0,0 +1,110 @@
+package com.example.demo.session;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Hàng đợi tin nhắn đến của một session theo Reactive Streams (java.util.concurrent.Flow):
+// mỗi tin nhắn chỉ được xử lý khi còn demand, và demand chỉ được trả lại khi phần việc
+// phía sau (bot, fan-out trên worker của phòng) đã xong. Khi hết demand và bộ đệm nhỏ
+// đã đầy, execute() chặn thread của container, container ngừng đọc socket đó và TCP
+// đẩy áp lực ngược về client gửi quá nhanh. Bộ nhớ cho mỗi session vì vậy bị chặn ở
+// window + bufferSize tin nhắn thay vì tăng theo tốc độ gửi.
+// Mỗi session bị nghẽn giữ một thread của container tới maxBlockMillis, nên số thread đang bị
+// chặn của mọi session cùng lúc được giới hạn chung (blockingPermits): hết chỗ thì tin nhắn bị bỏ
+// ngay như khi quá maxBlockMillis, để nhiều người gửi quá nhanh không chiếm hết pool của container.
+public class FlowControlledInbound implements Executor, Flow.Subscriber<Runnable> {
+
+    private final SubmissionPublisher<Runnable> publisher;
+    private final int window;
+    private final long maxBlockMillis;
+    // Dùng chung cho mọi session (null = không giới hạn)
+    private final Semaphore blockingPermits;
+    // Nhận hàm trả demand và gọi nó khi phần việc phía sau của tin nhắn vừa xử lý đã xong
+    private final Consumer<Runnable> afterDownstream;
+    private final Runnable onDrop;
+    private volatile Flow.Subscription subscription;
+
+    public FlowControlledInbound(Executor executor, int window, int bufferSize, long maxBlockMillis,
+                                 Consumer<Runnable> afterDownstream, Runnable onDrop) {
+        this(executor, window, bufferSize, maxBlockMillis, null, afterDownstream, onDrop);
+    }
+
+    public FlowControlledInbound(Executor executor, int window, int bufferSize, long maxBlockMillis,
+                                 Semaphore blockingPermits, Consumer<Runnable> afterDownstream, Runnable onDrop) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+        this.window = window;
+        this.maxBlockMillis = maxBlockMillis;
+        this.blockingPermits = blockingPermits;
+        this.afterDownstream = afterDownstream;
+        this.onDrop = onDrop;
+        publisher.subscribe(this);
+    }
+
+    // Chặn thread gọi tối đa maxBlockMillis khi không còn demand; quá thời gian, hoặc đã đủ số
+    // thread bị chặn cho phép, thì bỏ tin nhắn
+    @Override
+    public void execute(Runnable task) {
+        try {
+            int lag = publisher.offer(task, (subscriber, dropped) -> false);
+            if (lag < 0) {
+                lag = blockingOffer(task);
+            }
+            if (lag < 0) {
+                onDrop.run();
+            }
+        } catch (IllegalStateException e) {
+            // Đã đóng: session đang ngắt kết nối, tin nhắn không còn ai xử lý
+        }
+    }
+
+    private int blockingOffer(Runnable task) {
+        if (blockingPermits == null) {
+            return publisher.offer(task, maxBlockMillis, TimeUnit.MILLISECONDS, (subscriber, dropped) -> false);
+        }
+        if (!blockingPermits.tryAcquire()) {
+            return -1;
+        }
+        try {
+            return publisher.offer(task, maxBlockMillis, TimeUnit.MILLISECONDS, (subscriber, dropped) -> false);
+        } finally {
+            blockingPermits.release();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(window);
+    }
+
+    @Override
+    public void onNext(Runnable task) {
+        try {
+            task.run();
+        } finally {
+            afterDownstream.accept(() -> subscription.request(1));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        System.err.println("Inbound stream failed: " + throwable.getMessage());
+    }
+
+    @Override
+    public void onComplete() {
+    }
+
+    // Số tin nhắn đã nhận nhưng chưa được xử lý
+    public int getPendingCount() {
+        return publisher.estimateMaximumLag();
+    }
+
+    public void close() {
+        publisher.close();
+    }
+}
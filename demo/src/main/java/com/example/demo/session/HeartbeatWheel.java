@@ -0,0 +1,106 @@
+package com.example.demo.session;
+
+import com.example.demo.wire.OutboundFrame;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+// Heartbeat cho mọi session trên một bánh xe hẹn giờ (hashed timer wheel) duy nhất:
+// mỗi session nằm trong ô ứng với lần kiểm tra kế tiếp, một thread quay bánh xe mỗi tick.
+// Hoạt động của client chỉ ghi lastActivity, không di chuyển session giữa các ô;
+// khi tới lượt, session được đánh giá lại rồi đặt vào ô mới (hoặc bị loại).
+public class HeartbeatWheel {
+
+    private final long tickMillis;
+    private final long pingAfterMillis;
+    private final long evictAfterMillis;
+    private final LongSupplier clock;
+    private final Consumer<ClientSession> onIdle;
+    private final Queue<ClientSession>[] buckets;
+
+    // Ô sẽ được xử lý ở tick kế tiếp; chỉ thread của bánh xe ghi
+    private volatile int cursor = 0;
+    private ScheduledFuture<?> ticker;
+
+    @SuppressWarnings("unchecked")
+    public HeartbeatWheel(long tickMillis, long pingAfterMillis, long evictAfterMillis,
+                          LongSupplier clock, Consumer<ClientSession> onIdle) {
+        if (tickMillis <= 0 || pingAfterMillis <= 0 || evictAfterMillis <= pingAfterMillis) {
+            throw new IllegalArgumentException("Require 0 < tick, 0 < ping interval < idle timeout");
+        }
+        this.tickMillis = tickMillis;
+        this.pingAfterMillis = pingAfterMillis;
+        this.evictAfterMillis = evictAfterMillis;
+        this.clock = clock;
+        this.onIdle = onIdle;
+        // Đủ ô để hạn xa nhất (idle timeout) vẫn nằm trong một vòng quay
+        int size = (int) (evictAfterMillis / tickMillis) + 2;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public void start(ScheduledExecutorService timer) {
+        ticker = timer.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+    }
+
+    // Theo dõi session mới; session đã đóng tự rời bánh xe ở lần kiểm tra kế tiếp
+    public void register(ClientSession client) {
+        schedule(client, pingAfterMillis);
+    }
+
+    // Xử lý một ô: ping session im lặng quá lâu, loại session quá idle timeout
+    public void tick() {
+        int current = cursor;
+        cursor = (current + 1) % buckets.length;
+        Queue<ClientSession> bucket = buckets[current];
+        long now = clock.getAsLong();
+
+        ClientSession client;
+        while ((client = bucket.poll()) != null) {
+            if (client.isClosed()) {
+                continue;
+            }
+            long idle = now - client.getLastActivity();
+            if (idle >= evictAfterMillis) {
+                try {
+                    onIdle.accept(client);
+                } catch (Exception e) {
+                    System.err.println("Error evicting idle session " + client.getId() + ": " + e.getMessage());
+                }
+            } else if (idle >= pingAfterMillis) {
+                // Ping ở tầng WebSocket: trình duyệt tự trả lời pong, không cần code phía client
+                client.send(OutboundFrame.PING);
+                schedule(client, Math.min(pingAfterMillis, evictAfterMillis - idle));
+            } else {
+                schedule(client, pingAfterMillis - idle);
+            }
+        }
+    }
+
+    private void schedule(ClientSession client, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        ticks = Math.min(ticks, buckets.length - 1);
+        // Có thể lệch một tick nếu cursor vừa quay, chấp nhận được với heartbeat
+        buckets[(int) ((cursor + ticks - 1) % buckets.length)].add(client);
+    }
+
+    public int getTrackedCount() {
+        int count = 0;
+        for (Queue<ClientSession> bucket : buckets) {
+            count += bucket.size();
+        }
+        return count;
+    }
+}
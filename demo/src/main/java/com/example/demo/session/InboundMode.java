@@ -0,0 +1,12 @@
+package com.example.demo.session;
+
+// Cách xử lý tin nhắn đến từ client
+public enum InboundMode {
+    // Xử lý ngay trên thread WebSocket của container (parse, bot, broadcast)
+    INLINE,
+    // Chuyển sang virtual thread (hoặc pool dự phòng trên JDK < 21), giữ thứ tự theo từng session
+    VIRTUAL_THREADS,
+    // Như VIRTUAL_THREADS nhưng có kiểm soát luồng: mỗi session chỉ có một số tin nhắn đang xử lý,
+    // vượt quá thì thread của container bị chặn (ngừng đọc socket) cho tới khi phòng xử lý kịp
+    FLOW_CONTROLLED
+}
@@ -0,0 +1,290 @@
+package com.example.demo.session;
+
+import com.example.demo.wire.BinaryChatCodec;
+import com.example.demo.wire.OutboundFrame;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// Hàng đợi gửi có giới hạn cho từng session, được xả bất đồng bộ trên executor dùng chung.
+// Mỗi lúc chỉ có một task xả cho một session nên các frame được ghi tuần tự, đúng thứ tự.
+public class OutboundQueue {
+
+    // Số frame tối đa gửi trong một lượt xả trước khi nhường thread cho session khác
+    private static final int MAX_FRAMES_PER_DRAIN = 32;
+    private static final long NOT_WRITING = Long.MIN_VALUE;
+
+    private final WebSocketSession session;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final IntFunction<OutboundFrame> coalescedNotice;
+    private final Consumer<WebSocketSession> onFailure;
+    // Gộp frame theo cửa sổ thời gian (null = tắt): frame đầu tiên mở cửa sổ,
+    // hết cửa sổ thì mọi ChatMessage đang chờ được gửi chung trong một mảng JSON
+    private final ScheduledExecutorService batchScheduler;
+    private final long batchWindowMillis;
+    // Session đã thỏa thuận subprotocol nhị phân lúc handshake thì nhận BinaryMessage thay vì JSON
+    private final boolean binary;
+    // Thời gian tối đa cho một lần ghi ra socket (0 = không giới hạn). sendMessage chặn thread xả
+    // khi client không đọc; lần offer tiếp theo (tin của phòng hoặc ping heartbeat) thấy lần ghi
+    // đang kẹt quá giới hạn thì ngắt session như khi tràn hàng đợi với DISCONNECT, để vài client
+    // treo không giữ hết thread xả dùng chung
+    private final long sendTimeLimitNanos;
+    private volatile long writeStarted = NOT_WRITING;
+
+    private final ArrayDeque<OutboundFrame> frames = new ArrayDeque<>();
+    private boolean draining = false;
+    private boolean closed = false;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    // Số lần ghi thực sự ra socket (nhỏ hơn sentCount khi có gộp frame)
+    private final AtomicLong writeCount = new AtomicLong();
+
+    public OutboundQueue(WebSocketSession session, int capacity, OverflowPolicy policy, Executor executor,
+                         IntFunction<OutboundFrame> coalescedNotice, Consumer<WebSocketSession> onFailure) {
+        this(session, capacity, policy, executor, coalescedNotice, onFailure, null, 0);
+    }
+
+    public OutboundQueue(WebSocketSession session, int capacity, OverflowPolicy policy, Executor executor,
+                         IntFunction<OutboundFrame> coalescedNotice, Consumer<WebSocketSession> onFailure,
+                         ScheduledExecutorService batchScheduler, long batchWindowMillis) {
+        this(session, capacity, policy, executor, coalescedNotice, onFailure, batchScheduler, batchWindowMillis, 0);
+    }
+
+    public OutboundQueue(WebSocketSession session, int capacity, OverflowPolicy policy, Executor executor,
+                         IntFunction<OutboundFrame> coalescedNotice, Consumer<WebSocketSession> onFailure,
+                         ScheduledExecutorService batchScheduler, long batchWindowMillis, long sendTimeLimitMillis) {
+        this.session = session;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.executor = executor;
+        this.coalescedNotice = coalescedNotice;
+        this.onFailure = onFailure;
+        this.batchScheduler = batchWindowMillis > 0 ? batchScheduler : null;
+        this.batchWindowMillis = batchWindowMillis;
+        this.binary = BinaryChatCodec.PROTOCOL.equals(session.getAcceptedProtocol());
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+    }
+
+    // Đưa frame vào hàng đợi, không bao giờ chặn thread gọi.
+    // Trả về false nếu frame bị bỏ hoặc hàng đợi đã đóng.
+    public boolean offer(OutboundFrame frame) {
+        boolean accepted = true;
+        boolean disconnect = false;
+        boolean startDrain = false;
+        boolean timedOut = false;
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            if (sendTimedOut()) {
+                droppedCount.addAndGet(frames.size() + 1);
+                frames.clear();
+                closed = true;
+                disconnect = true;
+                accepted = false;
+                timedOut = true;
+            } else if (frames.size() >= capacity) {
+                switch (policy) {
+                    case DROP_OLDEST -> {
+                        frames.pollFirst();
+                        droppedCount.incrementAndGet();
+                    }
+                    case COALESCE -> {
+                        int skipped = frames.size();
+                        frames.clear();
+                        droppedCount.addAndGet(skipped);
+                        OutboundFrame notice = coalescedNotice != null ? coalescedNotice.apply(skipped) : null;
+                        if (notice != null) {
+                            frames.addLast(notice);
+                        }
+                    }
+                    case DISCONNECT -> {
+                        droppedCount.addAndGet(frames.size() + 1);
+                        frames.clear();
+                        closed = true;
+                        disconnect = true;
+                        accepted = false;
+                    }
+                }
+            }
+            if (accepted) {
+                frames.addLast(frame);
+                if (!draining) {
+                    draining = true;
+                    startDrain = true;
+                }
+            }
+        }
+
+        if (disconnect) {
+            System.err.println((timedOut ? "Send timed out" : "Outbound queue overflow")
+                + ", disconnecting slow session: " + session.getId());
+            executor.execute(() -> closeSession(CloseStatus.SESSION_NOT_RELIABLE));
+        } else if (startDrain) {
+            if (batchScheduler != null) {
+                batchScheduler.schedule(() -> executor.execute(this::drain), batchWindowMillis, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(this::drain);
+            }
+        }
+        return accepted;
+    }
+
+    private void drain() {
+        List<OutboundFrame> pending = new ArrayList<>(Math.min(MAX_FRAMES_PER_DRAIN, capacity));
+        boolean more;
+        synchronized (this) {
+            while (!closed && pending.size() < MAX_FRAMES_PER_DRAIN && !frames.isEmpty()) {
+                pending.add(frames.pollFirst());
+            }
+            if (pending.isEmpty()) {
+                draining = false;
+                return;
+            }
+            more = !frames.isEmpty();
+        }
+        try {
+            if (!session.isOpen()) {
+                throw new IllegalStateException("session is closed");
+            }
+            if (batchScheduler != null) {
+                sendBatched(pending);
+            } else {
+                for (OutboundFrame frame : pending) {
+                    write(encoded(frame), 1);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error sending message to session: " + e.getMessage());
+            close();
+            onFailure.accept(session);
+            return;
+        }
+        if (more) {
+            // Còn frame: nhường lượt rồi xả tiếp để các session khác không bị chờ
+            executor.execute(this::drain);
+        } else {
+            // Hàng đợi trống: frame tiếp theo sẽ mở lượt xả (và cửa sổ gộp) mới
+            boolean restart;
+            synchronized (this) {
+                restart = !closed && !frames.isEmpty();
+                draining = restart;
+            }
+            if (restart) {
+                executor.execute(this::drain);
+            }
+        }
+    }
+
+    // Gửi các ChatMessage liên tiếp trong một frame mảng JSON; frame thô (ví dụ "pong") gửi riêng
+    private void sendBatched(List<OutboundFrame> pending) throws Exception {
+        List<OutboundFrame> group = new ArrayList<>(pending.size());
+        for (OutboundFrame frame : pending) {
+            if (frame.isBatchable()) {
+                group.add(frame);
+                continue;
+            }
+            flushGroup(group);
+            write(encoded(frame), 1);
+        }
+        flushGroup(group);
+    }
+
+    private void flushGroup(List<OutboundFrame> group) throws Exception {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (group.size() == 1) {
+            write(encoded(group.get(0)), 1);
+        } else {
+            write(binary ? OutboundFrame.binaryBatch(group) : OutboundFrame.batch(group), group.size());
+        }
+        group.clear();
+    }
+
+    private WebSocketMessage<?> encoded(OutboundFrame frame) {
+        return frame.encodedFor(binary);
+    }
+
+    private boolean sendTimedOut() {
+        long started = writeStarted;
+        return sendTimeLimitNanos > 0 && started != NOT_WRITING && System.nanoTime() - started > sendTimeLimitNanos;
+    }
+
+    private void write(WebSocketMessage<?> message, int frameCount) throws Exception {
+        writeStarted = System.nanoTime();
+        try {
+            session.sendMessage(message);
+        } finally {
+            writeStarted = NOT_WRITING;
+        }
+        writeCount.incrementAndGet();
+        sentCount.addAndGet(frameCount);
+    }
+
+    // Đóng hàng đợi, bỏ các frame chưa gửi
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            frames.clear();
+            draining = false;
+        }
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            System.err.println("Error closing session " + session.getId() + ": " + e.getMessage());
+        }
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public synchronized int getDepth() {
+        return frames.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
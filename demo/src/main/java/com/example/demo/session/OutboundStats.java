@@ -0,0 +1,15 @@
+package com.example.demo.session;
+
+// Ảnh chụp số liệu hàng đợi gửi của một session (để tìm client chậm)
+public record OutboundStats(
+    String sessionId,
+    String nickname,
+    String room,
+    int depth,
+    int capacity,
+    long sent,
+    long writes,
+    long dropped,
+    OverflowPolicy policy
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.demo.session;
+
+// Cách xử lý khi hàng đợi gửi của một session bị đầy (client chậm)
+public enum OverflowPolicy {
+    // Bỏ frame cũ nhất để nhận frame mới
+    DROP_OLDEST,
+    // Gộp toàn bộ backlog thành một thông báo "đã bỏ qua N tin nhắn"
+    COALESCE,
+    // Đóng kết nối của client quá chậm
+    DISCONNECT
+}
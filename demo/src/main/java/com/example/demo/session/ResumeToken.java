@@ -0,0 +1,38 @@
+package com.example.demo.session;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+// Vị trí client đã đọc tới trước khi mất kết nối, gửi lên trong query của URL:
+// /chat?room=<phòng>&seq=<số thứ tự cuối cùng đã nhận trong phòng đó>
+public record ResumeToken(String room, long lastSequence) {
+
+    // null nếu URL không mang thông tin nối lại (kết nối mới)
+    public static ResumeToken from(URI uri) {
+        String query = uri != null ? uri.getRawQuery() : null;
+        if (query == null) {
+            return null;
+        }
+        String room = null;
+        long lastSequence = 0;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            String name = parameter.substring(0, equals);
+            String value = URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8).trim();
+            if ("room".equals(name) && !value.isEmpty()) {
+                room = value;
+            } else if ("seq".equals(name)) {
+                try {
+                    lastSequence = Math.max(0, Long.parseLong(value));
+                } catch (NumberFormatException e) {
+                    lastSequence = 0; // Số hỏng: coi như không có, client nhận lịch sử đầy đủ
+                }
+            }
+        }
+        return room != null ? new ResumeToken(room, lastSequence) : null;
+    }
+}
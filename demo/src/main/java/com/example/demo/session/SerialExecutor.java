@@ -0,0 +1,52 @@
+package com.example.demo.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Chạy các task của một session lần lượt theo đúng thứ tự gửi vào,
+// trên executor dùng chung (mỗi lúc tối đa một task của session đang chạy)
+public class SerialExecutor implements Executor {
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+            delegate.execute(this::runTasks);
+        }
+    }
+
+    private void runTasks() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error in serial task: " + e.getMessage());
+                }
+            }
+        } finally {
+            running.set(false);
+            // Task được thêm vào sau lần poll cuối nhưng trước khi running = false
+            schedule();
+        }
+    }
+
+    public int getPendingCount() {
+        return tasks.size();
+    }
+}
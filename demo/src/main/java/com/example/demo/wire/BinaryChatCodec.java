@@ -0,0 +1,182 @@
+package com.example.demo.wire;
+
+import com.example.demo.ChatMessage;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Định dạng nhị phân gọn cho subprotocol "chat.bin.v1" (JSON vẫn là mặc định).
+//
+// Frame: [type u8][flags u8][sequence varint][thân theo type]
+//   CHAT : nickname, message, room — mỗi chuỗi là varint (độ dài + 1, 0 = null) + bytes UTF-8.
+//          Có cờ FLAG_DEFLATE thì thân là varint độ dài gốc + deflate thô với từ điển dùng chung
+//   PING / PONG : không có thân
+//   BATCH: varint số frame, mỗi frame con là varint độ dài + bytes của frame đó
+public final class BinaryChatCodec {
+
+    public static final String PROTOCOL = "chat.bin.v1";
+
+    public static final byte TYPE_CHAT = 1;
+    public static final byte TYPE_PING = 2;
+    public static final byte TYPE_PONG = 3;
+    public static final byte TYPE_BATCH = 4;
+
+    public static final int FLAG_DEFLATE = 0x01;
+
+    private BinaryChatCodec() {
+    }
+
+    // Một frame đã giải mã; message chỉ có với TYPE_CHAT
+    public record Frame(byte type, int flags, long sequence, ChatMessage message) {
+    }
+
+    public static byte[] encode(ChatMessage message, long sequence) {
+        return encode(message, sequence, null);
+    }
+
+    // compressor null = không nén
+    public static byte[] encode(ChatMessage message, long sequence, FrameCompressor compressor) {
+        byte[] nickname = utf8(message.getNickname());
+        byte[] text = utf8(message.getMessage());
+        byte[] room = utf8(message.getRoom());
+        int bodySize = stringSize(nickname) + stringSize(text) + stringSize(room);
+        int headerSize = 2 + varintSize(sequence);
+
+        if (compressor != null && bodySize >= compressor.getMinSize()) {
+            ByteBuffer body = ByteBuffer.allocate(bodySize);
+            putString(body, nickname);
+            putString(body, text);
+            putString(body, room);
+            byte[] compressed = compressor.compress(body.array());
+            if (compressed != null) {
+                ByteBuffer out = ByteBuffer.allocate(headerSize + varintSize(bodySize) + compressed.length);
+                out.put(TYPE_CHAT).put((byte) FLAG_DEFLATE);
+                putVarint(out, sequence);
+                putVarint(out, bodySize);
+                out.put(compressed);
+                return out.array();
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(headerSize + bodySize);
+        out.put(TYPE_CHAT).put((byte) 0);
+        putVarint(out, sequence);
+        putString(out, nickname);
+        putString(out, text);
+        putString(out, room);
+        return out.array();
+    }
+
+    public static byte[] encodeControl(byte type) {
+        return new byte[] { type, 0, 0 };
+    }
+
+    public static byte[] encodeBatch(List<byte[]> frames) {
+        int size = 3 + varintSize(frames.size());
+        for (byte[] frame : frames) {
+            size += varintSize(frame.length) + frame.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(TYPE_BATCH).put((byte) 0);
+        putVarint(out, 0);
+        putVarint(out, frames.size());
+        for (byte[] frame : frames) {
+            putVarint(out, frame.length);
+            out.put(frame);
+        }
+        return out.array();
+    }
+
+    // Giải mã một frame; frame sai định dạng ném IllegalArgumentException
+    public static Frame decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            byte type = in.get();
+            int flags = in.get() & 0xFF;
+            long sequence = getVarint(in);
+            if (type == TYPE_CHAT && (flags & FLAG_DEFLATE) != 0) {
+                long bodySize = getVarint(in);
+                if (bodySize > FrameCompressor.MAX_INFLATED_SIZE) {
+                    throw new IllegalArgumentException("Compressed body too large: " + bodySize);
+                }
+                in = ByteBuffer.wrap(FrameCompressor.inflate(in, (int) bodySize));
+            }
+            return switch (type) {
+                case TYPE_CHAT -> new Frame(type, flags, sequence,
+                    new ChatMessage(getString(in), getString(in), getString(in)));
+                case TYPE_PING, TYPE_PONG -> new Frame(type, flags, sequence, null);
+                default -> throw new IllegalArgumentException("Unsupported frame type: " + type);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return bytes == null ? 1 : varintSize(bytes.length + 1L) + bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.put((byte) 0);
+            return;
+        }
+        putVarint(out, bytes.length + 1L);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        long length = getVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        int size = (int) (length - 1);
+        if (size < 0 || size > in.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + size);
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), size, StandardCharsets.UTF_8);
+            in.position(in.position() + size);
+        } else {
+            byte[] bytes = new byte[size];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demo.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Nén thân frame nhị phân bằng deflate với từ điển dùng chung (các mẫu trả lời của bot,
+// thông báo hệ thống). Mỗi frame chỉ nén một lần rồi gửi cho cả phòng, khác với
+// permessage-deflate của container phải nén lại cho từng kết nối.
+public final class FrameCompressor {
+
+    // Từ điển là một phần của giao thức chat.bin.v1: client tải cùng file này qua /chat-dictionary.txt
+    public static final String DICTIONARY_RESOURCE = "static/chat-dictionary.txt";
+
+    // Giới hạn kích thước sau khi giải nén để chặn frame "bom nén"
+    public static final int MAX_INFLATED_SIZE = 64 * 1024;
+
+    private static final byte[] DICTIONARY = loadDictionary();
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final int level;
+    private final int minSize;
+    private final ThreadLocal<Deflater> deflaters;
+
+    private final AtomicLong compressedFrames = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    public FrameCompressor(int level, int minSize) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9: " + level);
+        }
+        this.level = level;
+        this.minSize = minSize;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    // Trả về bytes đã nén, hoặc null nếu thân frame nhỏ hơn ngưỡng hay nén không có lợi
+    public byte[] compress(byte[] body) {
+        if (body.length < minSize) {
+            return null;
+        }
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] out = new byte[body.length];
+            int length = 0;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished()) {
+                return null; // Không nhỏ hơn bản gốc
+            }
+            compressedFrames.incrementAndGet();
+            bytesIn.addAndGet(body.length);
+            bytesOut.addAndGet(length);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    // Giải nén phần còn lại của buffer thành đúng inflatedSize bytes
+    public static byte[] inflate(ByteBuffer in, int inflatedSize) {
+        if (inflatedSize < 0 || inflatedSize > MAX_INFLATED_SIZE) {
+            throw new IllegalArgumentException("Invalid inflated size: " + inflatedSize);
+        }
+        byte[] compressed = new byte[in.remaining()];
+        in.get(compressed);
+
+        Inflater inflater = INFLATERS.get();
+        try {
+            // Deflate thô không có header nên phải đặt từ điển trước khi giải nén
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(compressed);
+            byte[] out = new byte[inflatedSize];
+            int length = 0;
+            while (length < out.length) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != inflatedSize) {
+                throw new IllegalArgumentException("Inflated " + length + " bytes, expected " + inflatedSize);
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed frame", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public long getCompressedFrames() {
+        return compressedFrames.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    private static byte[] loadDictionary() {
+        try (InputStream in = FrameCompressor.class.getClassLoader().getResourceAsStream(DICTIONARY_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing compression dictionary: " + DICTIONARY_RESOURCE);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.demo.wire;
+
+import com.example.demo.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Frame gửi đi đã được mã hóa sẵn: ChatMessage chỉ serialize một lần thành bytes,
+// cùng một TextMessage bất biến được ghi cho mọi session trong phòng.
+// Dạng nhị phân (subprotocol chat.bin.v1) chỉ được encode khi có session nhị phân đầu tiên cần tới
+public final class OutboundFrame {
+
+    // Trả lời ping: "pong" với JSON, frame PONG với nhị phân
+    public static final OutboundFrame PONG = new OutboundFrame(null,
+        "pong".getBytes(StandardCharsets.UTF_8), BinaryChatCodec.encodeControl(BinaryChatCodec.TYPE_PONG));
+
+    // Ping tầng WebSocket do server chủ động gửi (payload rỗng nên dùng chung được)
+    public static final OutboundFrame PING = new OutboundFrame(new PingMessage());
+
+    private final ChatMessage message;
+    private final TextMessage textMessage;
+    // Frame điều khiển gửi nguyên như nhau cho cả client JSON và nhị phân
+    private final WebSocketMessage<?> control;
+    // Nén dạng nhị phân khi đủ lớn (null = không nén)
+    private final FrameCompressor compressor;
+    // Các frame con khi đây là frame gộp (ví dụ lịch sử phòng), null với frame thường
+    private final List<OutboundFrame> parts;
+    // Số thứ tự trong phòng (0 = chưa đánh số), nằm trong JSON ("seq") và header nhị phân
+    private final long sequence;
+    private volatile byte[] binaryPayload;
+
+    private OutboundFrame(ChatMessage message, byte[] payload, byte[] binaryPayload) {
+        this(message, payload, binaryPayload, null);
+    }
+
+    private OutboundFrame(ChatMessage message, byte[] payload, byte[] binaryPayload, FrameCompressor compressor) {
+        this(message, payload, binaryPayload, compressor, 0);
+    }
+
+    private OutboundFrame(ChatMessage message, byte[] payload, byte[] binaryPayload, FrameCompressor compressor,
+                          long sequence) {
+        this.message = message;
+        this.textMessage = new TextMessage(payload);
+        this.binaryPayload = binaryPayload;
+        this.compressor = compressor;
+        this.parts = null;
+        this.sequence = sequence;
+        this.control = null;
+    }
+
+    private OutboundFrame(TextMessage batch, List<OutboundFrame> parts) {
+        this.message = null;
+        this.textMessage = batch;
+        this.compressor = null;
+        this.parts = parts;
+        this.sequence = 0;
+        this.control = null;
+    }
+
+    private OutboundFrame(WebSocketMessage<?> control) {
+        this.message = null;
+        this.textMessage = null;
+        this.compressor = null;
+        this.parts = null;
+        this.sequence = 0;
+        this.control = control;
+    }
+
+    public static OutboundFrame encode(ChatMessage message, ObjectMapper objectMapper) throws JsonProcessingException {
+        return encode(message, objectMapper, null);
+    }
+
+    public static OutboundFrame encode(ChatMessage message, ObjectMapper objectMapper,
+                                       FrameCompressor compressor) throws JsonProcessingException {
+        return new OutboundFrame(message, objectMapper.writeValueAsBytes(message), null, compressor);
+    }
+
+    // Frame văn bản thô không phải ChatMessage (ví dụ "pong")
+    public static OutboundFrame raw(String text) {
+        return new OutboundFrame(null, text.getBytes(StandardCharsets.UTF_8),
+            BinaryChatCodec.encode(new ChatMessage(null, text, null), 0));
+    }
+
+    // Bản sao mang số thứ tự trong phòng. JSON không serialize lại: chỉ chèn "seq" vào đầu
+    // object đã encode; dạng nhị phân vẫn encode lười với số thứ tự trong header
+    public OutboundFrame sequenced(long sequence) {
+        byte[] json = textMessage.asBytes();
+        byte[] prefix = ("{\"seq\":" + sequence + (json.length > 2 ? "," : "")).getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[prefix.length + json.length - 1];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        System.arraycopy(json, 1, payload, prefix.length, json.length - 1);
+        return new OutboundFrame(message, payload, null, compressor, sequence);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Tin nhắn gốc, null với frame thô (chỉ để đọc, không sửa sau khi đã encode)
+    public ChatMessage getMessage() {
+        return message;
+    }
+
+    // Message cần ghi ra socket theo định dạng session đã thỏa thuận
+    public WebSocketMessage<?> encodedFor(boolean binary) {
+        if (control != null) {
+            return control;
+        }
+        return binary ? asBinaryMessage() : textMessage;
+    }
+
+    public TextMessage asTextMessage() {
+        return textMessage;
+    }
+
+    // BinaryMessage mới mỗi lần gọi vì container đọc tiến position của ByteBuffer,
+    // nhưng mảng bytes bên dưới vẫn dùng chung cho mọi session
+    public BinaryMessage asBinaryMessage() {
+        return new BinaryMessage(binaryPayload());
+    }
+
+    private byte[] binaryPayload() {
+        byte[] payload = binaryPayload;
+        if (payload == null) {
+            // Hai luồng có thể cùng encode lần đầu; kết quả như nhau nên không cần khóa
+            payload = parts != null
+                ? batchPayload(parts)
+                : BinaryChatCodec.encode(message, sequence, compressor);
+            binaryPayload = payload;
+        }
+        return payload;
+    }
+
+    // Kích thước payload JSON (bytes UTF-8)
+    public int size() {
+        return textMessage != null ? textMessage.getPayloadLength() : 0;
+    }
+
+    // Chỉ frame mang ChatMessage mới gộp được vào mảng JSON
+    public boolean isBatchable() {
+        return message != null;
+    }
+
+    // Gộp nhiều frame thành một frame duy nhất chứa mảng JSON, nối trực tiếp
+    // các payload đã encode sẵn mà không serialize lại
+    public static TextMessage batch(List<OutboundFrame> frames) {
+        int size = frames.size() + 1;
+        for (OutboundFrame frame : frames) {
+            size += frame.size();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(frames.get(i).textMessage.asBytes());
+        }
+        out.write(']');
+        return new TextMessage(out.toByteArray());
+    }
+
+    // Một frame duy nhất chứa nhiều frame: mảng JSON cho client văn bản,
+    // frame BATCH cho client nhị phân (chỉ encode khi có session nhị phân cần)
+    public static OutboundFrame batchOf(List<OutboundFrame> frames) {
+        List<OutboundFrame> parts = List.copyOf(frames);
+        return new OutboundFrame(batch(parts), parts);
+    }
+
+    // Gộp nhiều frame thành một frame BATCH nhị phân, dùng lại bytes đã encode của từng frame
+    public static BinaryMessage binaryBatch(List<OutboundFrame> frames) {
+        return new BinaryMessage(batchPayload(frames));
+    }
+
+    private static byte[] batchPayload(List<OutboundFrame> frames) {
+        List<byte[]> payloads = new ArrayList<>(frames.size());
+        for (OutboundFrame frame : frames) {
+            payloads.add(frame.binaryPayload());
+        }
+        return BinaryChatCodec.encodeBatch(payloads);
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.demo;
+
+import com.example.demo.session.ClientSession;
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.wire.BinaryChatCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHandlerTest {
+
+    private final ChatHandler handler = new ChatHandler(new ChatProperties());
+
+    @AfterEach
+    void shutdown() {
+        handler.destroy();
+    }
+
+    @Test
+    void disconnectLeavesNoState() throws Exception {
+        List<StubWebSocketSession> closedNormally = new ArrayList<>();
+        List<FlakySession> failing = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("ok-" + i);
+            handler.afterConnectionEstablished(session);
+            closedNormally.add(session);
+
+            FlakySession flaky = new FlakySession("flaky-" + i);
+            handler.afterConnectionEstablished(flaky);
+            failing.add(flaky);
+        }
+        handler.handleTextMessage(closedNormally.get(0), chat("sv01", "/join study"));
+        assertEquals(40, handler.getSessionCount());
+        // Join/leave chạy trên worker của phòng nên phòng xuất hiện/biến mất sau một nhịp
+        awaitRoomCount(2);
+
+        // Một nửa mất kết nối: lần gửi tiếp theo bị lỗi
+        failing.forEach(FlakySession::breakConnection);
+        handler.handleTextMessage(closedNormally.get(1), chat("sv02", "xin chào"));
+        awaitSessionCount(20);
+
+        // Nửa còn lại đóng bình thường
+        for (StubWebSocketSession session : closedNormally) {
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+
+        assertEquals(0, handler.getSessionCount());
+        awaitRoomCount(0);
+        for (StubWebSocketSession session : closedNormally) {
+            assertNull(ClientSession.of(session));
+        }
+        for (FlakySession session : failing) {
+            assertNull(ClientSession.of(session));
+            // Container vẫn gọi afterConnectionClosed sau lỗi gửi: không được lỗi hay đếm trùng
+            handler.afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        assertEquals(0, handler.getSessionCount());
+    }
+
+    @Test
+    void binaryAndJsonClientsShareARoom() throws Exception {
+        StubWebSocketSession json = new StubWebSocketSession("json");
+        StubWebSocketSession binary = new StubWebSocketSession("binary");
+        binary.setAcceptedProtocol(BinaryChatCodec.PROTOCOL);
+        handler.afterConnectionEstablished(json);
+        handler.afterConnectionEstablished(binary);
+
+        byte[] frame = BinaryChatCodec.encode(new ChatMessage("sv02", "gửi bằng nhị phân", "general"), 0);
+        handler.handleBinaryMessage(binary, new BinaryMessage(frame));
+        handler.handleTextMessage(json, chat("sv01", "gửi bằng JSON"));
+
+        awaitSent(json, 5);
+        awaitSent(binary, 4);
+        assertTrue(json.getSentPayloads().stream().anyMatch(payload -> payload.endsWith(
+            "\"nickname\":\"sv02\",\"message\":\"gửi bằng nhị phân\",\"room\":\"general\"}")));
+        List<String> received = new ArrayList<>();
+        for (WebSocketMessage<?> message : binary.getSentMessages()) {
+            BinaryChatCodec.Frame decoded = BinaryChatCodec.decode(((BinaryMessage) message).getPayload());
+            received.add(decoded.message().getMessage());
+        }
+        assertTrue(received.contains("gửi bằng JSON"));
+        assertTrue(received.contains("gửi bằng nhị phân"));
+
+        // Frame hỏng thì đóng session với BAD_DATA
+        handler.handleBinaryMessage(binary, new BinaryMessage(new byte[] { 1, 0 }));
+        assertEquals(CloseStatus.BAD_DATA.getCode(), binary.getCloseStatus().getCode());
+    }
+
+    @Test
+    void joiningReplaysRecentHistoryAsOneFrame() throws Exception {
+        StubWebSocketSession first = new StubWebSocketSession("first");
+        handler.afterConnectionEstablished(first);
+        handler.handleTextMessage(first, chat("sv01", "tin 1"));
+        handler.handleTextMessage(first, chat("sv01", "tin 2"));
+        awaitSent(first, 4);
+
+        StubWebSocketSession late = new StubWebSocketSession("late");
+        handler.afterConnectionEstablished(late);
+
+        // Xác nhận join, một frame mảng chứa lịch sử (không kèm thông báo hệ thống), rồi thông báo join
+        awaitSent(late, 3);
+        JsonNode replay = new ObjectMapper().readTree(late.getSentPayloads().get(1));
+        assertEquals(2, replay.size());
+        assertEquals("tin 1", replay.get(0).get("message").asText());
+        assertEquals("tin 2", replay.get(1).get("message").asText());
+        assertTrue(handler.getHistoryBytes() > 0);
+    }
+
+    @Test
+    void rejoiningTheCurrentRoomOnlyConfirms() throws Exception {
+        StubWebSocketSession first = new StubWebSocketSession("first");
+        handler.afterConnectionEstablished(first);
+        handler.handleTextMessage(first, chat("sv01", "tin 1"));
+        awaitSent(first, 3);
+        StubWebSocketSession second = new StubWebSocketSession("second");
+        handler.afterConnectionEstablished(second);
+        awaitSent(second, 3);
+        awaitSent(first, 4);
+
+        // Đã ở general: chỉ nhận xác nhận, không phát lại lịch sử, không thông báo rời/vào phòng
+        handler.handleTextMessage(second, chat("sv02", "/join general"));
+        awaitSent(second, 4);
+        Thread.sleep(100);
+
+        assertEquals(4, second.getSentCount());
+        assertTrue(second.getSentPayloads().get(3).contains("Bạn đã tham gia phòng: general"));
+        assertEquals(4, first.getSentCount());
+    }
+
+    @Test
+    void emptyRoomsReleaseTheirHistoryAfterTheIdleTtl() throws Exception {
+        ChatProperties properties = new ChatProperties();
+        properties.getHistory().setIdleTtlMs(50);
+        ChatHandler idle = new ChatHandler(properties);
+        try {
+            StubWebSocketSession visitor = new StubWebSocketSession("visitor");
+            idle.afterConnectionEstablished(visitor);
+            awaitPayload(visitor, "Bạn đã tham gia phòng: general");
+            long baseline = idle.getHistoryBytes();
+
+            // Phòng dùng một lần: mỗi phòng giữ một vòng đệm và một tin cho tới khi trống đủ lâu
+            for (int i = 0; i < 30; i++) {
+                idle.handleTextMessage(visitor, chat("sv01", "/join tmp-" + i));
+                idle.handleTextMessage(visitor, chat("sv01", "tin tmp-" + i));
+                awaitPayload(visitor, "tin tmp-" + i);
+            }
+            assertTrue(idle.getHistoryBytes() > baseline);
+            idle.handleTextMessage(visitor, chat("sv01", "/join general"));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (idle.getHistoryBytes() != baseline && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(baseline, idle.getHistoryBytes());
+        } finally {
+            idle.destroy();
+        }
+    }
+
+    @Test
+    void historySurvivesRestartThroughTheChatLog() throws Exception {
+        ChatProperties properties = new ChatProperties();
+        properties.getLog().setEnabled(true);
+        properties.getLog().setDirectory(Files.createTempDirectory("chat-log").toString());
+        properties.getLog().setSegmentBytes(1024 * 1024);
+
+        ChatHandler before = new ChatHandler(properties);
+        StubWebSocketSession first = new StubWebSocketSession("first");
+        before.afterConnectionEstablished(first);
+        before.handleTextMessage(first, chat("sv01", "trước khi khởi động lại"));
+        awaitSent(first, 3);
+        before.destroy();
+
+        ChatHandler after = new ChatHandler(properties);
+        try {
+            StubWebSocketSession late = new StubWebSocketSession("late");
+            after.afterConnectionEstablished(late);
+            awaitSent(late, 3);
+            JsonNode replay = new ObjectMapper().readTree(late.getSentPayloads().get(1));
+            assertEquals(1, replay.size());
+            assertEquals("trước khi khởi động lại", replay.get(0).get("message").asText());
+        } finally {
+            after.destroy();
+        }
+    }
+
+    @Test
+    void reconnectResumesInTheSameRoomWithOnlyMissedMessages() throws Exception {
+        StubWebSocketSession sender = new StubWebSocketSession("sender");
+        StubWebSocketSession phone = new StubWebSocketSession("phone");
+        handler.afterConnectionEstablished(sender);
+        handler.afterConnectionEstablished(phone);
+        handler.handleTextMessage(sender, chat("sv01", "/join study"));
+        handler.handleTextMessage(phone, chat("sv02", "/join study"));
+        awaitPayload(phone, "sv02 đã tham gia phòng");
+        handler.handleTextMessage(sender, chat("sv01", "tin 1"));
+        long lastSeen = new ObjectMapper().readTree(awaitPayload(phone, "tin 1")).get("seq").asLong();
+        assertTrue(lastSeen > 0);
+
+        // Điện thoại mất sóng, phòng tiếp tục nói chuyện
+        handler.afterConnectionClosed(phone, CloseStatus.GOING_AWAY);
+        handler.handleTextMessage(sender, chat("sv01", "tin 2"));
+        handler.handleTextMessage(sender, chat("sv01", "tin 3"));
+
+        StubWebSocketSession resumed = new StubWebSocketSession("phone-2");
+        resumed.setUri(URI.create("ws://localhost/chat?room=study&seq=" + lastSeen));
+        awaitPayload(sender, "tin 3");
+        handler.afterConnectionEstablished(resumed);
+
+        // Xác nhận vào lại phòng study, một frame chỉ chứa phần bị lỡ, rồi thông báo join
+        awaitSent(resumed, 3);
+        assertTrue(resumed.getSentPayloads().get(0).contains("Bạn đã tham gia phòng: study"));
+        JsonNode missed = new ObjectMapper().readTree(resumed.getSentPayloads().get(1));
+        assertEquals(2, missed.size());
+        assertEquals("tin 2", missed.get(0).get("message").asText());
+        assertEquals("tin 3", missed.get(1).get("message").asText());
+        // Giữa tin 1 và tin 2 còn thông báo rời phòng (được đánh số nhưng không giữ lại)
+        assertTrue(missed.get(0).get("seq").asLong() > lastSeen);
+    }
+
+    @Test
+    void reconnectStormSendsCoalescedJoinNotices() throws Exception {
+        ChatProperties properties = new ChatProperties();
+        properties.getRooms().setNoticeWindowMs(200);
+        ChatHandler coalescing = new ChatHandler(properties);
+        try {
+            StubWebSocketSession watcher = new StubWebSocketSession("watcher");
+            coalescing.afterConnectionEstablished(watcher);
+            for (int i = 0; i < 200; i++) {
+                coalescing.afterConnectionEstablished(new StubWebSocketSession("storm-" + i));
+            }
+            awaitPayload(watcher, "đã tham gia phòng\"");
+            Thread.sleep(300);
+
+            // Xác nhận join + tối đa vài thông báo gộp, thay vì 200 thông báo riêng lẻ
+            assertTrue(watcher.getSentCount() <= 4, "watcher received " + watcher.getSentCount() + " frames");
+        } finally {
+            coalescing.destroy();
+        }
+    }
+
+    @Test
+    void moderationRightsComeFromTheLoggedInAccount() throws Exception {
+        StubWebSocketSession spoofer = new StubWebSocketSession("spoofer");
+        StubWebSocketSession teacher = new StubWebSocketSession("teacher");
+        teacher.setPrincipal(() -> "teacher01");
+        handler.afterConnectionEstablished(spoofer);
+        handler.afterConnectionEstablished(teacher);
+
+        // Tự khai nickname "admin" không đem lại quyền điều hành
+        handler.handleTextMessage(spoofer, chat("admin", "/mute @sv02 5 spam"));
+        awaitPayload(spoofer, "không có quyền");
+
+        handler.handleTextMessage(teacher, chat("cô giáo", "/mute @sv02 5 spam"));
+        awaitPayload(spoofer, "USER ĐÃ BỊ TẮT TIẾNG");
+    }
+
+    @Test
+    void mutedAccountCannotEscapeByChangingNickname() throws Exception {
+        StubWebSocketSession teacher = new StubWebSocketSession("teacher");
+        StubWebSocketSession student = new StubWebSocketSession("student");
+        teacher.setPrincipal(() -> "teacher01");
+        student.setPrincipal(() -> "sv02");
+        handler.afterConnectionEstablished(teacher);
+        handler.afterConnectionEstablished(student);
+        handler.handleTextMessage(teacher, chat("teacher01", "/mute @sv02 5 spam"));
+        awaitPayload(student, "USER ĐÃ BỊ TẮT TIẾNG");
+
+        // Nickname giả dạng bot hoặc nickname mới vẫn là tài khoản sv02
+        handler.handleTextMessage(student, chat("🤖 x", "lách 1"));
+        handler.handleTextMessage(student, chat("sv99", "lách 2"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mutedNotices(student) < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, mutedNotices(student));
+        // Thông báo chỉ tới người gửi, tin nhắn không tới ai khác
+        assertTrue(teacher.getSentPayloads().stream().noneMatch(payload -> payload.contains("lách") || payload.contains("đang bị tắt tiếng")));
+    }
+
+    @Test
+    void metricsCoverSessionsFanOutAndSendFailures() throws Exception {
+        StubWebSocketSession first = new StubWebSocketSession("first");
+        FlakySession second = new FlakySession("second");
+        handler.afterConnectionEstablished(first);
+        handler.afterConnectionEstablished(second);
+        handler.handleTextMessage(first, chat("sv01", "xin chào"));
+        awaitPayload(first, "xin chào");
+
+        second.breakConnection();
+        handler.handleTextMessage(first, chat("sv01", "còn ai không"));
+        awaitSessionCount(1);
+
+        Map<String, Object> metrics = handler.getMetrics();
+        Map<?, ?> sessions = (Map<?, ?>) metrics.get("sessions");
+        assertEquals(2L, sessions.get("opened"));
+        assertEquals(1, sessions.get("active"));
+        assertEquals(1L, sessions.get("sendFailures"));
+        assertEquals(2L, ((Map<?, ?>) metrics.get("messages")).get("received"));
+        assertEquals(Map.of("general", 1), ((Map<?, ?>) metrics.get("rooms")).get("fanOut"));
+        assertTrue(handler.getChatMetrics().getBroadcastLatency().getCount() > 0);
+    }
+
+    private void awaitSent(StubWebSocketSession session, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (session.getSentCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, session.getSentCount());
+    }
+
+    private String awaitPayload(StubWebSocketSession session, String text) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            for (String payload : session.getSentPayloads()) {
+                if (payload.contains(text)) {
+                    return payload;
+                }
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("No frame containing \"" + text + "\" sent to " + session.getId());
+    }
+
+    private long mutedNotices(StubWebSocketSession session) {
+        return session.getSentPayloads().stream().filter(payload -> payload.contains("@sv02 đang bị tắt tiếng")).count();
+    }
+
+    private void awaitRoomCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (handler.getRoomCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, handler.getRoomCount());
+    }
+
+    private void awaitSessionCount(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (handler.getSessionCount() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, handler.getSessionCount());
+    }
+
+    private TextMessage chat(String nickname, String text) {
+        return new TextMessage("{\"nickname\":\"" + nickname + "\",\"message\":\"" + text + "\",\"room\":\"general\"}");
+    }
+
+    private static class FlakySession extends StubWebSocketSession {
+        private volatile boolean broken = false;
+
+        FlakySession(String id) {
+            super(id);
+        }
+
+        void breakConnection() {
+            broken = true;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (broken) {
+                throw new IOException("broken pipe");
+            }
+            super.sendMessage(message);
+        }
+    }
+}
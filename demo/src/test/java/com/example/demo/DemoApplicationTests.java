@@ -3,7 +3,8 @@ package com.example.demo;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// Không tạo segment chat log trong thư mục làm việc khi chạy test
+@SpringBootTest(properties = "chat.log.enabled=false")
 class DemoApplicationTests {
 
 	@Test
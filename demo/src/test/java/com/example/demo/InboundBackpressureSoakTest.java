@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import com.example.demo.session.InboundMode;
+import com.example.demo.support.StubWebSocketSession;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Soak nhiều giây, đo heap qua System.gc() và đỉnh hộp thư phụ thuộc tốc độ máy: không chạy cùng
+// `gradle test`, chạy riêng bằng `./gradlew loadTest --tests '*InboundBackpressureSoakTest'`
+@Tag("load")
+class InboundBackpressureSoakTest {
+
+    private static final int SENDERS = 8;
+    private static final int RECEIVERS = 200;
+    private static final int WINDOW = 8;
+    // Chạy lâu hơn khi cần: -Dload.soakSeconds=60 (loadTest chỉ chuyển các thuộc tính load.*)
+    private static final long SECONDS = Long.getLong("load.soakSeconds", 5);
+
+    // Người gửi bơm tin nhắn nhanh hết mức, phòng có nhiều người nhận chậm: ở chế độ
+    // FLOW_CONTROLLED hộp thư của worker phòng và heap phải đứng yên thay vì tăng theo thời gian
+    @Test
+    void heapStaysFlatWhenSendersOutpaceReceivers() throws Exception {
+        ChatProperties properties = new ChatProperties();
+        properties.getInbound().setMode(InboundMode.FLOW_CONTROLLED);
+        properties.getInbound().setWindow(WINDOW);
+        properties.getRooms().setWorkers(1);
+        properties.getHeartbeat().setEnabled(false);
+        ChatHandler handler = new ChatHandler(properties);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong sent = new AtomicLong();
+        List<Thread> containerThreads = new ArrayList<>();
+        try {
+            for (int i = 0; i < RECEIVERS; i++) {
+                handler.afterConnectionEstablished(new SlowSession("receiver-" + i));
+            }
+            // Mỗi người gửi có một thread riêng như thread đọc socket của container
+            for (int s = 0; s < SENDERS; s++) {
+                StubWebSocketSession sender = new SlowSession("sender-" + s);
+                handler.afterConnectionEstablished(sender);
+                TextMessage message = new TextMessage(
+                    "{\"nickname\":\"sender" + s + "\",\"message\":\"tin nhắn dồn dập\",\"room\":\"general\"}");
+                Thread thread = new Thread(() -> {
+                    while (running.get()) {
+                        try {
+                            handler.handleTextMessage(sender, message);
+                            sent.incrementAndGet();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+                containerThreads.add(thread);
+                thread.start();
+            }
+
+            // Bỏ qua giây đầu (JIT, hàng đợi gửi của người nhận đầy dần tới capacity)
+            Thread.sleep(1000);
+            long baseline = usedHeap();
+            long peak = baseline;
+            int maxPending = 0;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(500);
+                maxPending = Math.max(maxPending, handler.getPendingRoomTasks());
+                peak = Math.max(peak, usedHeap());
+            }
+
+            System.out.printf("FLOW_CONTROLLED soak: %d messages in %d s, max room mailbox %d tasks, heap %d KB -> peak %d KB%n",
+                sent.get(), SECONDS + 1, maxPending, baseline / 1024, peak / 1024);
+            // Mỗi người gửi có tối đa WINDOW tin nhắn trong hộp thư, mỗi tin kèm một task trả demand và
+            // một trả lời của bot (SpamDetector cảnh báo từng tin; bot bất đồng bộ trả lời qua hộp thư)
+            assertTrue(maxPending <= SENDERS * WINDOW * 3, "room mailbox grew to " + maxPending + " tasks");
+            // Chỉ còn trạng thái có giới hạn theo thời gian (SpamDetector giữ mốc thời gian trong một phút)
+            assertTrue(peak - baseline < 32L * 1024 * 1024,
+                "heap grew by " + (peak - baseline) / 1024 + " KB during the soak");
+        } finally {
+            running.set(false);
+            for (Thread thread : containerThreads) {
+                thread.join(5000);
+            }
+            handler.destroy();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Người nhận trên mạng chậm, không giữ lại frame (StubWebSocketSession ghi lại mọi frame)
+    private static class SlowSession extends StubWebSocketSession {
+
+        SlowSession(String id) {
+            super(id);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            LockSupport.parkNanos(200_000);
+        }
+    }
+}
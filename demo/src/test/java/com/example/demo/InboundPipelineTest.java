@@ -0,0 +1,151 @@
+package com.example.demo;
+
+import com.example.demo.session.InboundMode;
+import com.example.demo.support.StubWebSocketSession;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboundPipelineTest {
+
+    private static final int CONTAINER_THREADS = 4;
+    private static final int SENDERS = 20;
+    private static final int MESSAGES_PER_SENDER = 100;
+
+    @Test
+    void virtualModeKeepsPerSessionOrder() throws Exception {
+        ChatHandler handler = new ChatHandler(properties(InboundMode.VIRTUAL_THREADS));
+        try {
+            StubWebSocketSession sender = connect(handler, "sender");
+            StubWebSocketSession observer = connect(handler, "observer");
+
+            for (int i = 0; i < MESSAGES_PER_SENDER; i++) {
+                handler.handleTextMessage(sender, chat("sender" + i, "m-" + i));
+            }
+            awaitChatMessages(observer, MESSAGES_PER_SENDER);
+
+            List<Integer> order = new ArrayList<>();
+            for (String payload : observer.getSentPayloads()) {
+                int start = payload.indexOf("\"m-");
+                if (start >= 0) {
+                    order.add(Integer.parseInt(payload.substring(start + 3, payload.indexOf('"', start + 3))));
+                }
+            }
+            for (int i = 0; i < order.size(); i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        } finally {
+            handler.destroy();
+        }
+    }
+
+    // So sánh thời gian đo được giữa hai lượt chạy, dễ sai trên máy CI bận: chỉ chạy với `gradle loadTest`
+    @Tag("load")
+    @Test
+    void compareInlineAndVirtualThreadModes() throws Exception {
+        // Lượt chạy đầu để JIT khởi động
+        run(InboundMode.INLINE);
+        run(InboundMode.VIRTUAL_THREADS);
+
+        Result inline = run(InboundMode.INLINE);
+        Result virtual = run(InboundMode.VIRTUAL_THREADS);
+        System.out.printf("INLINE:          %.0f msg/s end-to-end, container thread busy %.1f us/msg%n",
+            inline.messagesPerSecond(), inline.containerMicrosPerMessage());
+        System.out.printf("VIRTUAL_THREADS: %.0f msg/s end-to-end, container thread busy %.1f us/msg%n",
+            virtual.messagesPerSecond(), virtual.containerMicrosPerMessage());
+
+        assertTrue(virtual.containerMicrosPerMessage() < inline.containerMicrosPerMessage(),
+            "Container threads should return sooner when processing is handed off");
+    }
+
+    private Result run(InboundMode mode) throws Exception {
+        ChatHandler handler = new ChatHandler(properties(mode));
+        ExecutorService container = Executors.newFixedThreadPool(CONTAINER_THREADS);
+        try {
+            StubWebSocketSession observer = connect(handler, "observer");
+            List<StubWebSocketSession> senders = new ArrayList<>();
+            for (int i = 0; i < SENDERS; i++) {
+                senders.add(connect(handler, "sender-" + i));
+            }
+
+            AtomicLong containerNanos = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(CONTAINER_THREADS);
+            long start = System.nanoTime();
+            for (int t = 0; t < CONTAINER_THREADS; t++) {
+                int thread = t;
+                container.execute(() -> {
+                    try {
+                        for (int m = 0; m < MESSAGES_PER_SENDER; m++) {
+                            for (int s = thread; s < SENDERS; s += CONTAINER_THREADS) {
+                                long begin = System.nanoTime();
+                                handler.handleTextMessage(senders.get(s), chat("user" + s + "-" + m, "m-" + m));
+                                containerNanos.addAndGet(System.nanoTime() - begin);
+                            }
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            int total = SENDERS * MESSAGES_PER_SENDER;
+            awaitChatMessages(observer, total);
+            long elapsed = System.nanoTime() - start;
+
+            return new Result(total / (elapsed / 1_000_000_000.0), containerNanos.get() / 1000.0 / total);
+        } finally {
+            container.shutdownNow();
+            handler.destroy();
+        }
+    }
+
+    private ChatProperties properties(InboundMode mode) {
+        ChatProperties properties = new ChatProperties();
+        properties.getInbound().setMode(mode);
+        properties.getOutbound().setCapacity(100_000);
+        return properties;
+    }
+
+    private StubWebSocketSession connect(ChatHandler handler, String id) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id);
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private TextMessage chat(String nickname, String text) {
+        return new TextMessage("{\"nickname\":\"" + nickname + "\",\"message\":\"" + text + "\",\"room\":\"general\"}");
+    }
+
+    private void awaitChatMessages(StubWebSocketSession observer, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        int received = 0;
+        while (System.currentTimeMillis() < deadline) {
+            received = 0;
+            for (String payload : observer.getSentPayloads()) {
+                if (payload.contains("\"message\":\"m-")) {
+                    received++;
+                }
+            }
+            if (received >= expected) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        assertEquals(expected, received, "chat messages delivered to observer");
+    }
+
+    private record Result(double messagesPerSecond, double containerMicrosPerMessage) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.admission;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(System.nanoTime());
+    private final AtomicInteger connections = new AtomicInteger();
+
+    @Test
+    void perIpBucketAllowsBurstThenRefills() {
+        // 2 handshake/s mỗi IP, dồn tối đa 3; tốc độ chung rất cao để không ảnh hưởng
+        AdmissionControl admission = new AdmissionControl(1000, 2, 3, 1_000_000, 1000, connections::get, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(admission.tryAdmit("10.0.0.1").admitted());
+        }
+        assertEquals(AdmissionControl.Verdict.RATE_LIMITED, admission.tryAdmit("10.0.0.1").verdict());
+        // IP khác không bị ảnh hưởng
+        assertTrue(admission.tryAdmit("10.0.0.2").admitted());
+
+        now.addAndGet(500 * MS);
+        assertTrue(admission.tryAdmit("10.0.0.1").admitted());
+        assertEquals(AdmissionControl.Verdict.RATE_LIMITED, admission.tryAdmit("10.0.0.1").verdict());
+        assertEquals(2, admission.getRateLimitedCount());
+    }
+
+    @Test
+    void stormIsSmoothedIntoEvenSlotsThenShed() {
+        // 100 handshake/s chung => khe cách nhau 10 ms, chờ tối đa 200 ms
+        AdmissionControl admission = new AdmissionControl(1000, 100, 100, 100, 200, connections::get, now::get);
+
+        List<Long> delays = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < 50; i++) {
+            AdmissionControl.Decision decision = admission.tryAdmit("10.0.1." + i);
+            if (decision.admitted()) {
+                delays.add(decision.delayNanos() / MS);
+            } else {
+                assertEquals(AdmissionControl.Verdict.QUEUE_FULL, decision.verdict());
+                rejected++;
+            }
+        }
+        // 21 khe trong 200 ms (0, 10, ..., 200), phần còn lại bị từ chối ngay thay vì dồn vào server
+        assertEquals(21, delays.size());
+        assertEquals(29, rejected);
+        for (int i = 0; i < delays.size(); i++) {
+            assertEquals(i * 10L, (long) delays.get(i));
+        }
+
+        // Hàng đợi trôi theo thời gian
+        now.addAndGet(100 * MS);
+        assertEquals(110 * MS, admission.tryAdmit("10.0.2.1").delayNanos());
+    }
+
+    @Test
+    void deferredHandshakesKeepNeitherSlotNorIpToken() {
+        // Khe cách nhau 10 ms; mỗi IP 1 handshake/s, không dồn
+        AdmissionControl admission = new AdmissionControl(1000, 1, 1, 100, 1000, connections::get, now::get);
+        assertEquals(0, admission.tryAdmit("10.0.3.1", true).delayNanos());
+        assertEquals(10 * MS, admission.tryAdmit("10.0.3.2", true).delayNanos());
+
+        // Không còn chỗ chờ: bị hoãn tới khe trống gần nhất, khe đó vẫn còn nguyên
+        for (int i = 0; i < 50; i++) {
+            AdmissionControl.Decision decision = admission.tryAdmit("10.0.3.3", false);
+            assertEquals(AdmissionControl.Verdict.DEFERRED, decision.verdict());
+            assertEquals(20 * MS, decision.delayNanos());
+        }
+        assertEquals(50, admission.getDeferredCount());
+        assertEquals(2, admission.getInFlight());
+
+        // Tới khe: IP bị hoãn 50 lần vẫn còn token, và nhận ngay chứ không bị đẩy ra sau 50 khe
+        now.addAndGet(20 * MS);
+        AdmissionControl.Decision retry = admission.tryAdmit("10.0.3.3", false);
+        assertTrue(retry.admitted());
+        assertEquals(0, retry.delayNanos());
+        assertEquals(0, admission.getRateLimitedCount());
+    }
+
+    @Test
+    void globalCapCountsOpenAndInFlightConnections() {
+        AdmissionControl admission = new AdmissionControl(3, 100, 100, 1_000_000, 1000, connections::get, now::get);
+        connections.set(2);
+
+        assertTrue(admission.tryAdmit("10.0.0.1").admitted());
+        assertEquals(AdmissionControl.Verdict.OVER_CAPACITY, admission.tryAdmit("10.0.0.2").verdict());
+
+        // Handshake xong và thành kết nối mở: vẫn đủ trần
+        admission.handshakeFinished();
+        connections.set(3);
+        assertEquals(AdmissionControl.Verdict.OVER_CAPACITY, admission.tryAdmit("10.0.0.2").verdict());
+
+        connections.set(1);
+        assertTrue(admission.tryAdmit("10.0.0.2").admitted());
+        assertEquals(0, admission.getQueueFullCount());
+        assertEquals(2, admission.getOverCapacityCount());
+    }
+
+    @Test
+    void concurrentHandshakesNeverExceedTheBucket() throws Exception {
+        AdmissionControl admission = new AdmissionControl(100_000, 1, 50, 1_000_000, 1000, connections::get, now::get);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    if (admission.tryAdmit("10.9.9.9").admitted()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Đồng hồ đứng yên: đúng bằng burst, không hơn
+        assertEquals(50, admitted.get());
+    }
+}
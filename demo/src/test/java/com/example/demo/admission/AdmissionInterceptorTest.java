@@ -0,0 +1,30 @@
+package com.example.demo.admission;
+
+import org.junit.jupiter.api.Test;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdmissionInterceptorTest {
+
+    private static final Set<String> PROXIES = Set.of("10.0.0.10", "10.0.0.11");
+
+    @Test
+    void forwardedForIsOnlyReadFromTrustedProxies() {
+        // Kết nối thẳng: header do client tự đặt, bỏ qua
+        assertEquals("203.0.113.5", AdmissionInterceptor.resolveClientIp("203.0.113.5", "1.2.3.4", PROXIES));
+        // Sau proxy: địa chỉ chưa được tin gần nhất, phần bên trái client giả được
+        assertEquals("192.168.1.20",
+            AdmissionInterceptor.resolveClientIp("10.0.0.10", "1.2.3.4, 192.168.1.20, 10.0.0.11", PROXIES));
+        assertEquals("10.0.0.10", AdmissionInterceptor.resolveClientIp("10.0.0.10", null, PROXIES));
+        assertEquals("10.0.0.10", AdmissionInterceptor.resolveClientIp("10.0.0.10", "10.0.0.11", PROXIES));
+    }
+
+    @Test
+    void retryAfterRoundsTheSlotUpToWholeSeconds() {
+        assertEquals(1, AdmissionInterceptor.retryAfterSeconds(0));
+        assertEquals(1, AdmissionInterceptor.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(300)));
+        assertEquals(2, AdmissionInterceptor.retryAfterSeconds(TimeUnit.MILLISECONDS.toNanos(1001)));
+    }
+}
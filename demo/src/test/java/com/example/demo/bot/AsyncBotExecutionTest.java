@@ -0,0 +1,101 @@
+package com.example.demo.bot;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.metrics.ChatMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncBotExecutionTest {
+
+    private final ChatMetrics metrics = new ChatMetrics();
+    // Hạn 100ms, mỗi bot chờ tối đa 4 lần gọi
+    private final BotManager botManager = new BotManager(metrics, 100, 4);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        botManager.shutdown();
+    }
+
+    // Bot xem mọi tin nhắn thường và treo tới khi test thả ra
+    private class StuckBot extends Bot {
+        StuckBot() {
+            super("StuckBot", "treo");
+        }
+
+        @Override
+        public boolean wantsFreeText() {
+            return true;
+        }
+
+        @Override
+        public boolean canHandle(MessageEnvelope envelope) {
+            return true;
+        }
+
+        @Override
+        public ChatMessage processMessage(MessageEnvelope envelope, WebSocketSession session) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return createBotResponse("muộn", envelope.getRoom());
+        }
+    }
+
+    private static MessageEnvelope envelope(String nickname, String text) {
+        return MessageEnvelope.of(new ChatMessage(nickname, text, "general"));
+    }
+
+    @Test
+    void stuckBotTimesOutWithoutDelayingOtherBots() throws Exception {
+        botManager.addBot("stuck", new StuckBot());
+        List<ChatMessage> replies = new CopyOnWriteArrayList<>();
+        CountDownLatch helpReplied = new CountDownLatch(1);
+
+        long started = System.nanoTime();
+        botManager.processMessageAsync(envelope("sv01", "có ai help không"), null, reply -> {
+            replies.add(reply);
+            helpReplied.countDown();
+        });
+        // Trả về ngay, không chờ bot nào
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertTrue(helpReplied.await(1, TimeUnit.SECONDS));
+        assertEquals("🤖 HelpBot", replies.get(0).getNickname());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (metrics.bot("stuck").getTimeouts() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, metrics.bot("stuck").getTimeouts());
+
+        // Thả bot ra: trả lời quá hạn bị bỏ, không tới phòng
+        release.countDown();
+        Thread.sleep(100);
+        assertEquals(1, replies.size());
+    }
+
+    @Test
+    void fullLaneRejectsNewCalls() {
+        botManager.addBot("stuck", new StuckBot());
+
+        // Một lần gọi đang chạy + 3 lần chờ lấp đầy làn (sức chứa 4), hai lần sau bị từ chối
+        for (int i = 0; i < 6; i++) {
+            botManager.processMessageAsync(envelope("sv0" + i, "tin nhắn " + i), null, reply -> { });
+        }
+
+        assertEquals(2, metrics.bot("stuck").getRejections());
+    }
+
+}
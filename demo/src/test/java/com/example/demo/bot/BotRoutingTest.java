@@ -0,0 +1,82 @@
+package com.example.demo.bot;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.metrics.ChatMetrics;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BotRoutingTest {
+
+    private final ChatMetrics metrics = new ChatMetrics();
+    private final BotManager botManager = new BotManager(metrics);
+
+    @Test
+    void commandTableMatchesLongestPrefixIgnoringCase() {
+        CommandTable<String> table = new CommandTable<>();
+        table.put("/ban", "ban");
+        table.put("/unban", "unban");
+        table.put("/nội quy", "rules");
+        assertFalse(table.put("/BAN", "other"));
+
+        assertEquals("ban", table.match("/ban @sv02 spam"));
+        assertEquals("unban", table.match("/UNBAN @sv02"));
+        assertEquals("rules", table.match("/Nội Quy"));
+        assertNull(table.match("/bo"));
+        assertNull(table.match("/nội"));
+    }
+
+    @Test
+    void commandsReachOnlyTheOwningBotAndObservers() {
+        List<ChatMessage> responses = botManager.processMessage(new ChatMessage("sv01", "/mute @sv02 5 help", "general"), null);
+
+        assertEquals(1, responses.size());
+        assertEquals("🤖 ModerationBot", responses.get(0).getNickname());
+        assertEquals(1, metrics.bot("moderationbot").getCanHandleCalls());
+        // HelpBot từng trả lời mọi tin nhắn có chữ "help", kể cả lệnh của bot khác
+        assertEquals(0, metrics.bot("helpbot").getCanHandleCalls());
+        assertEquals(0, metrics.bot("quizbot").getCanHandleCalls());
+        assertEquals(1, metrics.bot("spamdetector").getCanHandleCalls());
+    }
+
+    @Test
+    void freeTextSkipsCommandOnlyBots() {
+        botManager.processMessage(new ChatMessage("sv01", "có ai help bài 3 không", "general"), null);
+
+        assertEquals(1, metrics.bot("helpbot").getHits());
+        assertEquals(1, metrics.bot("quizbot").getCanHandleCalls());
+        assertEquals(0, metrics.bot("moderationbot").getCanHandleCalls());
+        assertEquals(0, metrics.bot("botcreator").getCanHandleCalls());
+    }
+
+    @Test
+    void commandDispatchStaysFlatAsCustomBotsPileUp() {
+        for (int i = 0; i < 500; i++) {
+            assertTrue(botManager.createCustomBot("lopbot" + i, "bot lớp " + i, "teacher01"));
+        }
+
+        List<ChatMessage> responses = botManager.processMessage(new ChatMessage("sv01", "/Quiz", "general"), null);
+        assertEquals("🤖 QuizBot", responses.get(0).getNickname());
+        assertEquals(0, metrics.bot("lopbot7").getCanHandleCalls());
+
+        responses = botManager.processMessage(new ChatMessage("sv01", "/lopbot42 info", "general"), null);
+        assertEquals(1, responses.size());
+        assertTrue(responses.get(0).getMessage().contains("lopbot42"));
+        assertEquals(1, metrics.bot("lopbot42").getHits());
+        assertEquals(0, metrics.bot("lopbot41").getCanHandleCalls());
+
+        // Bot hệ thống giữ lệnh của mình khi custom bot trùng tên lệnh
+        assertTrue(botManager.createCustomBot("ban", "trùng lệnh", "teacher01"));
+        botManager.processMessage(new ChatMessage("sv01", "/ban @sv02", "general"), null);
+        assertEquals(1, metrics.bot("moderationbot").getCanHandleCalls());
+        assertEquals(0, metrics.bot("ban").getCanHandleCalls());
+
+        assertTrue(botManager.removeBot("lopbot42"));
+        botManager.processMessage(new ChatMessage("sv01", "/lopbot42 info", "general"), null);
+        assertEquals(0, metrics.bot("lopbot42").getCanHandleCalls());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.bot;
+
+import com.example.demo.ChatMessage;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageEnvelopeTest {
+
+    private static MessageEnvelope envelope(String nickname, String text) {
+        return MessageEnvelope.of(new ChatMessage(nickname, text, "general"));
+    }
+
+    @Test
+    void parsesCommandArgsAndRemainderOnce() {
+        MessageEnvelope envelope = envelope("teacher01", "  /MUTE  @sv02 5   Spam  liên tục ");
+
+        assertTrue(envelope.isCommand());
+        assertEquals("/mute", envelope.getCommand());
+        assertEquals("/MUTE  @sv02 5   Spam  liên tục", envelope.getText());
+        assertEquals("/mute  @sv02 5   spam  liên tục", envelope.getNormalized());
+        assertEquals(List.of("@sv02", "5", "Spam", "liên", "tục"), envelope.getArgs());
+        assertEquals("sv02", envelope.getMentionArg(0));
+        assertNull(envelope.getMentionArg(1));
+        assertEquals("Spam  liên tục", envelope.getArgsFrom(2));
+        assertNull(envelope.getArg(5));
+        assertNull(envelope.getArgsFrom(5));
+        assertEquals("TEACHER", envelope.getRole());
+        assertTrue(envelope.isModerator());
+    }
+
+    @Test
+    void plainTextHasNoArgsAndKeepsMentions() {
+        MessageEnvelope envelope = envelope("sv01", "chào @sv02 và @teacher01, mail a@b.com @");
+
+        assertFalse(envelope.isCommand());
+        assertNull(envelope.getCommand());
+        assertTrue(envelope.getArgs().isEmpty());
+        assertEquals(List.of("sv02", "teacher01"), envelope.getMentions());
+        assertEquals("STUDENT", envelope.getRole());
+        assertFalse(envelope.isFromBot());
+        assertTrue(envelope("🤖 HelpBot", "xin chào").isFromBot());
+    }
+
+    @Test
+    void lowercaseTextIsNotCopied() {
+        MessageEnvelope envelope = envelope("guest", "xin chào cả lớp");
+
+        assertSame(envelope.getText(), envelope.getNormalized());
+        assertEquals("USER", envelope.getRole());
+        assertTrue(envelope.getMentions().isEmpty());
+    }
+
+    @Test
+    void roleComesFromTheSessionNotTheNickname() {
+        MessageEnvelope spoofed = MessageEnvelope.of(new ChatMessage("admin", "/ban @sv03", "general"), "USER");
+
+        assertEquals("USER", spoofed.getRole());
+        assertFalse(spoofed.isModerator());
+        List<ChatMessage> denied = new BotManager().runBots(spoofed, null);
+        assertTrue(denied.get(0).getMessage().contains("không có quyền"));
+    }
+
+    @Test
+    void moderationCommandsUseParsedArgs() {
+        BotManager botManager = new BotManager();
+
+        List<ChatMessage> usage = botManager.runBots(envelope("admin", "/mute sv02 5"), null);
+        assertTrue(usage.get(0).getMessage().contains("Sử dụng: `/mute @username"));
+
+        List<ChatMessage> muted = botManager.runBots(envelope("admin", "/mute @sv02 5 spam  tin nhắn"), null);
+        assertTrue(muted.get(0).getMessage().contains("Lý do: spam  tin nhắn"));
+        assertTrue(botManager.getModerationService().isMuted("sv02"));
+
+        List<ChatMessage> denied = botManager.runBots(envelope("sv01", "/ban @sv03"), null);
+        assertTrue(denied.get(0).getMessage().contains("không có quyền"));
+    }
+}
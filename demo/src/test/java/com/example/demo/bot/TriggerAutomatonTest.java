@@ -0,0 +1,62 @@
+package com.example.demo.bot;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.metrics.ChatMetrics;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriggerAutomatonTest {
+
+    private final ChatMetrics metrics = new ChatMetrics();
+    private final BotManager botManager = new BotManager(metrics);
+
+    @Test
+    void reportsOverlappingPatternsInOneScan() {
+        TriggerAutomaton<String> automaton = new TriggerAutomaton<>();
+        for (String pattern : List.of("he", "she", "his", "hers", "bài tập")) {
+            automaton.add(pattern, pattern);
+        }
+        automaton.compile();
+
+        List<String> found = new ArrayList<>();
+        automaton.scan("ushers làm bài tập", found::add);
+
+        // Theo vị trí kết thúc, từ khóa dài hơn trước khi cùng vị trí
+        assertEquals(List.of("she", "he", "hers", "bài tập"), found);
+    }
+
+    @Test
+    void freeTextReachesOnlyCustomBotsItMentions() {
+        for (int i = 0; i < 200; i++) {
+            assertTrue(botManager.createCustomBot("lop" + i + "x", "bot lớp " + i, "teacher01"));
+        }
+
+        List<ChatMessage> responses = botManager.processMessage(new ChatMessage("sv01", "Lop42x ơi, bài này làm sao", "general"), null);
+
+        assertEquals(1, responses.size());
+        assertEquals("🤖 lop42x", responses.get(0).getNickname());
+        assertEquals("Xin chào! Tôi là lop42x. Gõ 'help' để biết thêm thông tin!", responses.get(0).getMessage());
+        assertEquals(1, metrics.bot("lop42x").getHits());
+        assertEquals(0, metrics.bot("lop41x").getCanHandleCalls());
+    }
+
+    @Test
+    void automatonFollowsAddResponseAndRemoveBot() {
+        assertTrue(botManager.createCustomBot("Toan", "bot toán", "teacher01"));
+        BotManager.CustomBot bot = (BotManager.CustomBot) botManager.getBot("toan");
+
+        assertTrue(botManager.processMessage(new ChatMessage("sv01", "đạo hàm là gì", "general"), null).isEmpty());
+
+        bot.addResponse("Đạo Hàm", "Đạo hàm là tốc độ thay đổi tức thời.");
+        List<ChatMessage> responses = botManager.processMessage(new ChatMessage("sv01", "đạo hàm là gì", "general"), null);
+        assertEquals(1, responses.size());
+        assertEquals("Đạo hàm là tốc độ thay đổi tức thời.", responses.get(0).getMessage());
+
+        assertTrue(botManager.removeBot("toan"));
+        assertTrue(botManager.processMessage(new ChatMessage("sv01", "đạo hàm là gì", "general"), null).isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.chatlog;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.wire.BinaryChatCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsRecentMessagesOfOneRoom() throws Exception {
+        try (ChatLog log = new ChatLog(directory, 1024 * 1024, 4, 4)) {
+            for (int i = 0; i < 100; i++) {
+                String room = i % 3 == 0 ? "study" : "general";
+                log.append(room, new ChatMessage("sv01", "tin " + i, room));
+            }
+            assertTrue(log.sync(5000));
+
+            List<String> recent = texts(log.readRecent("study", 3));
+            assertEquals(List.of("tin 93", "tin 96", "tin 99"), recent);
+            assertEquals(34, texts(log.readRecent("study", 1000)).size());
+            assertTrue(log.readRecent("quiz", 10).isEmpty());
+        }
+    }
+
+    @Test
+    void groupCommitBatchesConcurrentAppends() throws Exception {
+        try (ChatLog log = new ChatLog(directory, 4 * 1024 * 1024, 64, 4)) {
+            List<Thread> senders = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String room = "room-" + t;
+                Thread sender = new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        log.append(room, new ChatMessage("sv", "tin " + i, room));
+                    }
+                });
+                senders.add(sender);
+                sender.start();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertTrue(log.sync(10000));
+
+            assertEquals(20000, log.getAppendedCount());
+            System.out.printf("Chat log: %d records in %d commits (%.1f records/force)%n",
+                log.getAppendedCount(), log.getCommitCount(), (double) log.getAppendedCount() / log.getCommitCount());
+            assertTrue(log.getCommitCount() < log.getAppendedCount());
+            assertEquals(List.of("tin 4998", "tin 4999"), texts(log.readRecent("room-2", 2)));
+        }
+    }
+
+    @Test
+    void recoversIndexAndDropsTornTail() throws Exception {
+        try (ChatLog log = new ChatLog(directory, 64 * 1024, 16, 100)) {
+            for (int i = 0; i < 3000; i++) {
+                String room = "room-" + (i % 5);
+                log.append(room, new ChatMessage("sv01", "tin " + i, room));
+            }
+            assertTrue(log.sync(5000));
+            assertTrue(log.getSegmentCount() > 1);
+        }
+        // Giả lập bản ghi ghi dở ở cuối segment đang ghi
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        long end;
+        try (ChatLog log = new ChatLog(directory, 64 * 1024, 16, 100)) {
+            end = log.getCommittedOffset();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            file.seek(end - Long.parseLong(last.getFileName().toString().substring(0, 20)));
+            file.writeInt(40);
+            file.writeInt(12345);
+        }
+
+        try (ChatLog log = new ChatLog(directory, 64 * 1024, 16, 100)) {
+            assertEquals(3000, log.getRecoveredRecords());
+            assertEquals(end, log.getCommittedOffset());
+            assertEquals(List.of("tin 2994", "tin 2999"), texts(log.readRecent("room-4", 2)));
+            assertEquals(2, log.recoveredMessages("room-4", 2).size());
+
+            // Ghi tiếp sau khi phục hồi: tin mới không lẫn vào phần đã có từ lần chạy trước
+            log.append("room-4", new ChatMessage("sv02", "sau khởi động", "room-4"));
+            assertTrue(log.sync(5000));
+            assertEquals(List.of("tin 2999", "sau khởi động"), texts(log.readRecent("room-4", 2)));
+            assertEquals("tin 2999", log.recoveredMessages("room-4", 1).get(0).getMessage());
+        }
+    }
+
+    @Test
+    void recoveryIgnoresRecordsAppendedSinceStartup() throws Exception {
+        try (ChatLog log = new ChatLog(directory, 1024 * 1024, 4, 4)) {
+            for (int i = 0; i < 10; i++) {
+                log.append("general", new ChatMessage("sv01", "cũ " + i, "general"));
+            }
+            assertTrue(log.sync(5000));
+        }
+        try (ChatLog log = new ChatLog(directory, 1024 * 1024, 4, 4)) {
+            // Phòng nhận nhiều tin (vd. sự kiện từ node khác) trước khi lịch sử được nạp lần đầu
+            for (int i = 0; i < 100; i++) {
+                log.append("general", new ChatMessage("sv02", "mới " + i, "general"));
+            }
+            assertTrue(log.sync(5000));
+
+            List<String> recovered = new ArrayList<>();
+            log.recoveredMessages("general", 3).forEach(message -> recovered.add(message.getMessage()));
+            assertEquals(List.of("cũ 7", "cũ 8", "cũ 9"), recovered);
+            assertTrue(log.recoveredMessages("study", 3).isEmpty());
+        }
+    }
+
+    @Test
+    void oldSegmentsAreDeletedPastRetention() throws Exception {
+        try (ChatLog log = new ChatLog(directory, 16 * 1024, 8, 3)) {
+            for (int i = 0; i < 5000; i++) {
+                log.append("general", new ChatMessage("sv01", "tin " + i, "general"));
+            }
+            assertTrue(log.sync(5000));
+            assertEquals(3, log.getSegmentCount());
+            assertEquals(List.of("tin 4999"), texts(log.readRecent("general", 1)));
+            // Xin nhiều hơn số còn giữ: trả về những gì còn trên đĩa, bắt đầu từ segment cũ nhất còn lại
+            List<String> all = texts(log.readRecent("general", 5000));
+            assertTrue(all.size() < 5000);
+            assertEquals("tin 4999", all.get(all.size() - 1));
+        }
+    }
+
+    private static List<String> texts(List<ByteBuffer> frames) {
+        List<String> texts = new ArrayList<>();
+        for (ByteBuffer frame : frames) {
+            texts.add(BinaryChatCodec.decode(frame).message().getMessage());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo.cluster;
+
+import com.example.demo.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Mỗi TcpRoomEventBus đóng vai một instance riêng, nối với nhau qua loopback
+class TcpRoomEventBusTest {
+
+    private static final String SECRET = "bí mật chung";
+
+    private final List<TcpRoomEventBus> nodes = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        nodes.forEach(TcpRoomEventBus::close);
+    }
+
+    @Test
+    void everyNodeReceivesEveryEventOnceInOrder() throws Exception {
+        int nodeCount = 3;
+        int perNode = 2_000;
+        List<Queue<RoomEvent>> received = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            Queue<RoomEvent> events = new ConcurrentLinkedQueue<>();
+            received.add(events);
+            startNode("node-" + i, events);
+        }
+        connectFullMesh();
+
+        for (int n = 0; n < perNode; n++) {
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.get(i).publish("room-" + (n % 10), new ChatMessage("sv" + i, "m-" + n, "room-" + (n % 10)));
+            }
+        }
+
+        for (Queue<RoomEvent> events : received) {
+            await(() -> events.size() >= nodeCount * perNode);
+            assertEquals(nodeCount * perNode, events.size());
+
+            // Theo từng node phát: đủ, không trùng, đúng thứ tự
+            Map<String, Long> lastId = new HashMap<>();
+            for (RoomEvent event : events) {
+                Long previous = lastId.put(event.origin(), event.id());
+                assertTrue(previous == null || event.id() == previous + 1);
+            }
+            assertEquals(nodeCount, lastId.size());
+        }
+
+        long sent = nodes.stream().mapToLong(TcpRoomEventBus::getEventsSent).sum();
+        long batches = nodes.stream().mapToLong(TcpRoomEventBus::getBatchesSent).sum();
+        System.out.printf("Cluster fan-out: %d events in %d batches (%.1f events/batch)%n",
+            sent, batches, (double) sent / batches);
+        assertTrue(batches < sent);
+    }
+
+    @Test
+    void reconnectResendsMissedEventsWithoutDuplicates() throws Exception {
+        Queue<RoomEvent> onA = new ConcurrentLinkedQueue<>();
+        Queue<RoomEvent> onB = new ConcurrentLinkedQueue<>();
+        TcpRoomEventBus a = startNode("a", onA);
+        TcpRoomEventBus b = startNode("b", onB);
+        a.addPeer(new InetSocketAddress("127.0.0.1", b.getPort()));
+
+        for (int i = 0; i < 100; i++) {
+            a.publish("general", new ChatMessage("sv01", "before-" + i, "general"));
+        }
+        await(() -> onB.size() >= 100);
+
+        // Mạng chập chờn: B cắt kết nối, A phát hiện khi ghi, kết nối lại và gửi lại phần còn giữ
+        b.dropInboundConnections();
+        for (int i = 0; i < 100; i++) {
+            a.publish("general", new ChatMessage("sv01", "after-" + i, "general"));
+            Thread.sleep(2);
+        }
+        await(() -> onB.size() >= 200);
+        Thread.sleep(200);
+
+        assertEquals(200, onB.size());
+        long expected = 1;
+        for (RoomEvent event : onB) {
+            assertEquals(expected++, event.id());
+        }
+        System.out.println("Duplicates dropped after reconnect: " + b.getDuplicatesDropped());
+        assertFalse(onA.isEmpty());
+    }
+
+    @Test
+    void restartedPeerOnlyGetsEventsPublishedAfterItStarted() throws Exception {
+        TcpRoomEventBus a = startNode("a", new ConcurrentLinkedQueue<>());
+        TcpRoomEventBus b = startNode("b", new ConcurrentLinkedQueue<>());
+        int port = b.getPort();
+        a.addPeer(new InetSocketAddress("127.0.0.1", port));
+        for (int i = 0; i < 100; i++) {
+            a.publish("general", new ChatMessage("sv01", "before-" + i, "general"));
+        }
+        await(() -> b.getEventsReceived() >= 100);
+
+        // B khởi động lại trên cùng cổng: A kết nối lại nhưng không gửi lại cửa sổ cũ cho B mới
+        b.close();
+        Queue<RoomEvent> onRestarted = new ConcurrentLinkedQueue<>();
+        TcpRoomEventBus restarted = new TcpRoomEventBus("b", "127.0.0.1", port, SECRET);
+        restarted.start(onRestarted::add);
+        nodes.add(restarted);
+        for (int i = 0; i < 5; i++) {
+            a.publish("general", new ChatMessage("sv01", "after-" + i, "general"));
+            Thread.sleep(2);
+        }
+        await(() -> onRestarted.size() >= 5);
+        Thread.sleep(200);
+
+        assertEquals(5, onRestarted.size());
+        for (RoomEvent event : onRestarted) {
+            assertTrue(event.message().getMessage().startsWith("after-"));
+        }
+    }
+
+    @Test
+    void peerWithoutTheSharedSecretIsRejected() throws Exception {
+        Queue<RoomEvent> onB = new ConcurrentLinkedQueue<>();
+        TcpRoomEventBus b = startNode("b", onB);
+        TcpRoomEventBus intruder = startNode("x", "đoán bừa", new ConcurrentLinkedQueue<>());
+        intruder.addPeer(new InetSocketAddress("127.0.0.1", b.getPort()));
+
+        intruder.publish("general", new ChatMessage("admin", "giả mạo", "general"));
+        await(() -> b.getPeersRejected() > 0);
+        Thread.sleep(100);
+
+        assertTrue(b.getPeersRejected() > 0);
+        assertTrue(onB.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new TcpRoomEventBus("c", "127.0.0.1", 0, ""));
+    }
+
+    @Test
+    void filterDropsReplaysAndForgetsRestartedNodes() {
+        DeliveryFilter filter = new DeliveryFilter();
+        assertTrue(filter.accept("a@1", 1));
+        assertTrue(filter.accept("a@1", 2));
+        assertFalse(filter.accept("a@1", 2));
+        assertFalse(filter.accept("a@1", 1));
+
+        // Node a khởi động lại: đánh số lại từ 1 với origin mới
+        filter.register("a@2");
+        assertEquals(0, filter.getOriginCount());
+        assertTrue(filter.accept("a@2", 1));
+    }
+
+    private TcpRoomEventBus startNode(String nodeId, Queue<RoomEvent> sink) {
+        return startNode(nodeId, SECRET, sink);
+    }
+
+    private TcpRoomEventBus startNode(String nodeId, String secret, Queue<RoomEvent> sink) {
+        TcpRoomEventBus node = new TcpRoomEventBus(nodeId, "127.0.0.1", 0, secret);
+        node.start(sink::add);
+        nodes.add(node);
+        return node;
+    }
+
+    private void connectFullMesh() {
+        for (TcpRoomEventBus from : nodes) {
+            for (TcpRoomEventBus to : nodes) {
+                if (from != to) {
+                    from.addPeer(new InetSocketAddress("127.0.0.1", to.getPort()));
+                }
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
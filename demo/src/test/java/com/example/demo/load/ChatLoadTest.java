@@ -0,0 +1,267 @@
+package com.example.demo.load;
+
+import com.example.demo.ChatHandler;
+import com.example.demo.session.OutboundStats;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Chạy app thật trên cổng ngẫu nhiên và mô phỏng hàng nghìn client /chat trong cùng JVM.
+// Không chạy cùng `gradle test`; chạy riêng bằng `gradle loadTest`, cấu hình qua -Dload.*, ví dụ:
+//   ./gradlew loadTest -Dload.clients=5000 -Dload.rooms=50 -Dload.messagesPerSecond=2000
+// Mỗi tin nhắn mang thời điểm gửi (System.nanoTime, cùng JVM nên so sánh được) nên độ trễ
+// đo được là đầu-cuối: client gửi -> server parse, chạy bot, fan-out -> client khác nhận.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    // Mọi client đến từ 127.0.0.1 nên giới hạn theo IP sẽ chặn gần hết
+    "chat.admission.enabled=false",
+    "chat.log.enabled=false"
+})
+class ChatLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 2000);
+    private static final int ROOMS = Integer.getInteger("load.rooms", 20);
+    // Phân bố client vào phòng: 0 = đều, > 0 = Zipf với số mũ này (phòng đầu đông nhất)
+    private static final double ROOM_SKEW = Double.parseDouble(System.getProperty("load.roomSkew", "1.0"));
+    // Tổng số tin nhắn gửi mỗi giây của cả hệ thống
+    private static final int MESSAGES_PER_SECOND = Integer.getInteger("load.messagesPerSecond", 500);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.durationSeconds", 20);
+    // Tỉ lệ client chậm: chỉ đọc một frame mỗi slowClientDelayMs (mạng di động yếu)
+    private static final double SLOW_CLIENT_RATIO = Double.parseDouble(System.getProperty("load.slowClientRatio", "0.05"));
+    private static final long SLOW_CLIENT_DELAY_MS = Long.getLong("load.slowClientDelayMs", 250);
+
+    private static final String MARKER = "load:";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ChatHandler chatHandler;
+
+    @Test
+    void sustainedRoomTraffic() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        ScheduledExecutorService timers = Executors.newScheduledThreadPool(2);
+        LatencyRecorder fastLatency = new LatencyRecorder();
+        LatencyRecorder slowLatency = new LatencyRecorder();
+        CountDownLatch joined = new CountDownLatch(CLIENTS);
+
+        // Chia phòng và chọn client chậm (cố định theo seed để các lần chạy so sánh được)
+        Random random = new Random(42);
+        double[] cumulative = roomWeights();
+        int[] fastMembers = new int[ROOMS];
+        List<LoadClient> clients = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            int room = pickRoom(cumulative, random.nextDouble());
+            boolean slow = random.nextDouble() < SLOW_CLIENT_RATIO;
+            if (!slow) {
+                fastMembers[room]++;
+            }
+            clients.add(new LoadClient("load-" + i, "room-" + room, room, slow,
+                slow ? slowLatency : fastLatency, joined, timers));
+        }
+
+        URI uri = URI.create("ws://localhost:" + port + "/chat");
+        List<CompletableFuture<WebSocket>> connecting = new ArrayList<>(CLIENTS);
+        for (LoadClient client : clients) {
+            connecting.add(http.newWebSocketBuilder().buildAsync(uri, client));
+        }
+        CompletableFuture.allOf(connecting.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+        for (LoadClient client : clients) {
+            client.send("/join " + client.room);
+        }
+        assertTrue(joined.await(60, TimeUnit.SECONDS), "clients still joining: " + joined.getCount());
+
+        List<LoadClient> senders = clients.stream().filter(client -> !client.slow).toList();
+        AtomicLong sent = new AtomicLong();
+        AtomicLong expectedFast = new AtomicLong();
+        long tickMillis = 10;
+        double perTick = MESSAGES_PER_SECOND * tickMillis / 1000.0;
+        double[] carry = new double[1];
+        long started = System.nanoTime();
+        var sending = timers.scheduleAtFixedRate(() -> {
+            carry[0] += perTick;
+            ThreadLocalRandom tick = ThreadLocalRandom.current();
+            for (; carry[0] >= 1; carry[0]--) {
+                LoadClient sender = senders.get(tick.nextInt(senders.size()));
+                sender.send(MARKER + System.nanoTime() + ":");
+                sent.incrementAndGet();
+                expectedFast.addAndGet(fastMembers[sender.roomIndex]);
+            }
+        }, 0, tickMillis, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SECONDS));
+        sending.cancel(false);
+        double sendSeconds = (System.nanoTime() - started) / 1e9;
+        // Cho các frame đang trên đường tới nơi
+        Thread.sleep(2000);
+        double totalSeconds = (System.nanoTime() - started) / 1e9;
+
+        long deliveredFast = clients.stream().filter(client -> !client.slow).mapToLong(client -> client.received.get()).sum();
+        long deliveredSlow = clients.stream().filter(client -> client.slow).mapToLong(client -> client.received.get()).sum();
+        long serverDropped = chatHandler.getOutboundStats().stream().mapToLong(OutboundStats::dropped).sum();
+        long slowCount = clients.size() - senders.size();
+
+        System.out.printf("Load: %d clients (%d slow) in %d rooms (skew %.1f, largest room %d), %d msg/s for %d s%n",
+            CLIENTS, slowCount, ROOMS, ROOM_SKEW, maxOf(fastMembers), MESSAGES_PER_SECOND, DURATION_SECONDS);
+        System.out.printf("Sent %d messages (%.0f msg/s), delivered %d/%d to fast clients (%.2f%%), %d to slow clients%n",
+            sent.get(), sent.get() / sendSeconds, deliveredFast, expectedFast.get(),
+            100.0 * deliveredFast / Math.max(1, expectedFast.get()), deliveredSlow);
+        System.out.printf("Delivery throughput: %.0f msg/s; server outbound drops: %d%n",
+            (deliveredFast + deliveredSlow) / totalSeconds, serverDropped);
+        System.out.printf("End-to-end latency (fast clients): p50=%.2f ms p99=%.2f ms p999=%.2f ms (%d samples)%n",
+            fastLatency.percentileMillis(0.50), fastLatency.percentileMillis(0.99),
+            fastLatency.percentileMillis(0.999), fastLatency.count());
+        System.out.printf("End-to-end latency (slow clients): p50=%.2f ms p99=%.2f ms%n",
+            slowLatency.percentileMillis(0.50), slowLatency.percentileMillis(0.99));
+
+        for (LoadClient client : clients) {
+            client.close();
+        }
+        timers.shutdownNow();
+
+        assertEquals(CLIENTS, clients.stream().filter(client -> client.joinedRoom.get()).count());
+        // Client chậm không được kéo client nhanh xuống: gần như mọi tin nhắn phải tới nơi
+        assertTrue(deliveredFast >= expectedFast.get() * 0.95,
+            "fast clients received " + deliveredFast + " of " + expectedFast.get());
+    }
+
+    private static double[] roomWeights() {
+        double[] cumulative = new double[ROOMS];
+        double total = 0;
+        for (int room = 0; room < ROOMS; room++) {
+            total += 1.0 / Math.pow(room + 1, ROOM_SKEW);
+            cumulative[room] = total;
+        }
+        for (int room = 0; room < ROOMS; room++) {
+            cumulative[room] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int pickRoom(double[] cumulative, double sample) {
+        for (int room = 0; room < cumulative.length; room++) {
+            if (sample < cumulative[room]) {
+                return room;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    private static int maxOf(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    // Một client /chat mô phỏng. Client chậm chỉ xin frame tiếp theo sau một khoảng trễ,
+    // nên TCP của nó đầy dần và server phải áp dụng chính sách tràn hàng đợi
+    private static final class LoadClient implements WebSocket.Listener {
+
+        final String nickname;
+        final String room;
+        final int roomIndex;
+        final boolean slow;
+        final AtomicLong received = new AtomicLong();
+        final AtomicBoolean joinedRoom = new AtomicBoolean();
+        private final LatencyRecorder latency;
+        private final CountDownLatch joined;
+        private final ScheduledExecutorService timers;
+        private final String joinConfirmation;
+        private final StringBuilder partial = new StringBuilder();
+        private volatile WebSocket socket;
+        // JDK WebSocket chỉ cho một lần gửi chưa xong tại một thời điểm: xếp nối tiếp
+        private CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+
+        LoadClient(String nickname, String room, int roomIndex, boolean slow, LatencyRecorder latency,
+                   CountDownLatch joined, ScheduledExecutorService timers) {
+            this.nickname = nickname;
+            this.room = room;
+            this.roomIndex = roomIndex;
+            this.slow = slow;
+            this.latency = latency;
+            this.joined = joined;
+            this.timers = timers;
+            this.joinConfirmation = "Bạn đã tham gia phòng: " + room;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            socket = webSocket;
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                handle(partial.toString());
+                partial.setLength(0);
+            }
+            if (slow && last) {
+                timers.schedule(() -> webSocket.request(1), SLOW_CLIENT_DELAY_MS, TimeUnit.MILLISECONDS);
+            } else {
+                webSocket.request(1);
+            }
+            return null;
+        }
+
+        // Frame có thể là một tin nhắn hoặc mảng tin nhắn (gộp frame, lịch sử):
+        // chỉ cần tìm dấu thời gian, không cần parse JSON đầy đủ
+        private void handle(String frame) {
+            long now = System.nanoTime();
+            if (!joinedRoom.get() && frame.contains(joinConfirmation) && joinedRoom.compareAndSet(false, true)) {
+                joined.countDown();
+            }
+            if (!joinedRoom.get()) {
+                return; // Lịch sử/tin nhắn của phòng general trước khi chuyển phòng
+            }
+            for (int at = frame.indexOf(MARKER); at >= 0; at = frame.indexOf(MARKER, at + 1)) {
+                int start = at + MARKER.length();
+                int end = frame.indexOf(':', start);
+                if (end > start) {
+                    latency.record(now - Long.parseLong(frame, start, end, 10));
+                    received.incrementAndGet();
+                }
+            }
+        }
+
+        synchronized void send(String text) {
+            WebSocket webSocket = socket;
+            if (webSocket == null) {
+                return;
+            }
+            String json = "{\"nickname\":\"" + nickname + "\",\"message\":\"" + text + "\",\"room\":\"" + room + "\"}";
+            sending = sending.handle((ignored, error) -> null).thenCompose(ignored -> webSocket.sendText(json, true));
+        }
+
+        void close() {
+            WebSocket webSocket = socket;
+            if (webSocket != null) {
+                webSocket.abort();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.load;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histogram độ trễ không khóa, độ phân giải micro giây, sai số tương đối ~3%:
+// giá trị dưới 64 µs được đếm chính xác, từ đó trở lên chia theo lũy thừa 2, mỗi nhóm 32 ô
+final class LatencyRecorder {
+
+    private static final int LINEAR = 64;
+    private static final int SUB_BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + 58 * SUB_BUCKETS);
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(0, nanos / 1000)));
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - 5;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+    }
+
+    // Giá trị giữa ô (micro giây)
+    static double valueAt(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        long lower = (long) ((index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lower + (1L << shift) / 2.0;
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Phân vị (0..1) tính bằng mili giây
+    double percentileMillis(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return valueAt(i) / 1000.0;
+            }
+        }
+        return valueAt(counts.length() - 1) / 1000.0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.metrics;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.bot.BotManager;
+import com.example.demo.moderation.ModerationGate;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMetricsTest {
+
+    @Test
+    void histogramReportsBucketUpperBounds() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(3, histogram.percentile(0.50));
+        assertEquals(3, histogram.percentile(0.99));
+        // 1000 nằm trong ô [512, 1024), cận trên bị chặn bởi giá trị lớn nhất đã ghi
+        assertEquals(1000, histogram.percentile(0.999));
+        assertEquals(0, new Histogram().percentile(0.99));
+    }
+
+    @Test
+    void concurrentWritersLoseNoCounts() throws Exception {
+        ChatMetrics metrics = new ChatMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.broadcast(10, 50_000);
+                    metrics.sendFailure();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, metrics.getFanOut().getCount());
+        assertEquals(80_000, metrics.getSendFailures());
+        assertEquals(10, metrics.getFanOut().percentile(0.99));
+        assertEquals(50, metrics.getBroadcastLatency().percentile(0.5));
+    }
+
+    @Test
+    void botManagerRecordsPerBotHitsAndModerationActions() {
+        ChatMetrics metrics = new ChatMetrics();
+        BotManager botManager = new BotManager(metrics);
+
+        botManager.processMessage(new ChatMessage("sv01", "/help", "general"), null);
+        botManager.processMessage(new ChatMessage("sv01", "xin chào", "general"), null);
+        assertEquals(2, metrics.bot("helpbot").getCanHandleCalls());
+        assertEquals(1, metrics.bot("helpbot").getHits());
+        assertEquals(2, metrics.bot("spamdetector").getHits());
+
+        botManager.getModerationService().muteUser("sv02", 5, "spam", "teacher01");
+        new ModerationGate(botManager.getModerationService(), metrics).check("sv02");
+        assertEquals(1, metrics.getModerationActions("mute"));
+        assertEquals(1, metrics.getModerationActions("blocked_muted"));
+
+        Map<String, Object> snapshot = metrics.snapshot(0, 0);
+        assertTrue(((Map<?, ?>) snapshot.get("bots")).containsKey("helpbot"));
+        assertEquals(1L, ((Map<?, ?>) snapshot.get("moderation")).get("mute"));
+    }
+}
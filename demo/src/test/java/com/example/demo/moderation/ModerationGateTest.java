@@ -0,0 +1,74 @@
+package com.example.demo.moderation;
+
+import com.example.demo.metrics.ChatMetrics;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModerationGateTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(System.nanoTime());
+    private final ModerationService moderationService = new ModerationService();
+    private final ChatMetrics metrics = new ChatMetrics();
+
+    @Test
+    void bannedAndMutedSendersAreDroppedWithReason() {
+        ModerationGate gate = new ModerationGate(moderationService, metrics);
+        moderationService.banUser("sv02", "spam", "admin");
+        moderationService.muteUser("sv03", 5, "spam", "teacher01");
+
+        ModerationGate.Verdict banned = gate.check("sv02");
+        assertEquals(ModerationGate.Action.DROP, banned.action());
+        assertEquals(ModerationGate.Reason.BANNED, banned.reason());
+        assertTrue(banned.notice().contains("bị cấm chat"));
+
+        ModerationGate.Verdict muted = gate.check("sv03");
+        assertEquals(ModerationGate.Action.DROP, muted.action());
+        assertEquals(ModerationGate.Reason.MUTED, muted.reason());
+        assertTrue(muted.notice().contains("bị tắt tiếng"));
+
+        ModerationGate.Verdict allowed = gate.check("sv01");
+        assertSame(ModerationGate.Verdict.ALLOW, allowed);
+        assertNull(allowed.notice());
+        assertEquals(1, metrics.getModerationActions("blocked_banned"));
+        assertEquals(1, metrics.getModerationActions("blocked_muted"));
+    }
+
+    @Test
+    void botLikeNamesAreNotExempt() {
+        // Trả lời của bot không đi qua gate: danh tính dạng "🤖 ..." vẫn bị xét như mọi người gửi
+        ModerationGate gate = new ModerationGate(moderationService, metrics, 1, 1, now::get);
+        moderationService.banUser("🤖 HelpBot", "thử", "admin");
+
+        assertEquals(ModerationGate.Reason.BANNED, gate.check("🤖 HelpBot").reason());
+        assertTrue(gate.check("🤖 x").allowed());
+        assertEquals(ModerationGate.Action.THROTTLE, gate.check("🤖 x").action());
+    }
+
+    @Test
+    void fastSenderIsThrottledThenRecovers() {
+        // 2 tin/s mỗi người, dồn tối đa 3
+        ModerationGate gate = new ModerationGate(moderationService, metrics, 2, 3, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(gate.check("sv01").allowed());
+        }
+        ModerationGate.Verdict throttled = gate.check("sv01");
+        assertEquals(ModerationGate.Action.THROTTLE, throttled.action());
+        assertEquals(ModerationGate.Reason.RATE_LIMITED, throttled.reason());
+        // Người khác không bị ảnh hưởng
+        assertTrue(gate.check("sv02").allowed());
+
+        now.addAndGet(500 * MS);
+        assertTrue(gate.check("sv01").allowed());
+        assertEquals(ModerationGate.Action.THROTTLE, gate.check("sv01").action());
+        assertEquals(2, metrics.getModerationActions("throttled"));
+    }
+}
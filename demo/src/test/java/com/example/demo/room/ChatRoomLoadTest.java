@@ -0,0 +1,167 @@
+package com.example.demo.room;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.support.TestClients;
+import com.example.demo.wire.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatRoomLoadTest {
+
+    private static final int MEMBERS_PER_ROOM = 10;
+    private static final int SENDERS_PER_ROOM = 2;
+    private static final int MESSAGES_PER_SENDER = 100;
+    // Mô phỏng ~50µs cho mỗi lần ghi ra socket
+    private static final long SEND_DELAY_NANOS = 50_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Đủ worker để 4 phòng thử nghiệm nằm trên 4 worker khác nhau
+    private final RoomEngine engine = new RoomEngine(8);
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    // So sánh thông lượng theo thời gian thực, dễ sai trên máy CI bận: chỉ chạy với `gradle loadTest`
+    @Tag("load")
+    @Test
+    void aggregateThroughputGrowsWithActiveRooms() throws Exception {
+        double oneRoom = measureThroughput(1);
+        double fourRooms = measureThroughput(4);
+        System.out.printf("Broadcast throughput: 1 room = %.0f msg/s, 4 rooms = %.0f msg/s%n", oneRoom, fourRooms);
+
+        assertTrue(fourRooms > oneRoom * 2,
+            String.format("4 rooms (%.0f msg/s) should clearly outperform 1 room (%.0f msg/s)", fourRooms, oneRoom));
+    }
+
+    @Test
+    void perRoomOrderingIsPreserved() throws Exception {
+        ChatRoom room = new ChatRoom("general");
+        List<StubWebSocketSession> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS_PER_ROOM; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("s" + i);
+            members.add(session);
+            room.add(TestClients.direct(session));
+        }
+
+        runSenders(List.of(room), 4, MESSAGES_PER_SENDER);
+
+        // Mọi thành viên phải thấy cùng một thứ tự tin nhắn
+        List<String> expected = members.get(0).getSentPayloads();
+        assertEquals(4 * MESSAGES_PER_SENDER, expected.size());
+        for (StubWebSocketSession member : members) {
+            assertEquals(expected, member.getSentPayloads());
+        }
+    }
+
+    @Test
+    void eachRoomRunsOnOneWorkerInOrder() throws Exception {
+        Map<String, Set<Thread>> threadsByRoom = new ConcurrentHashMap<>();
+        Map<String, List<Integer>> orderByRoom = new ConcurrentHashMap<>();
+        int rooms = 16;
+        int tasksPerRoom = 1_000;
+        CountDownLatch done = new CountDownLatch(rooms * tasksPerRoom);
+        for (int t = 0; t < tasksPerRoom; t++) {
+            for (int r = 0; r < rooms; r++) {
+                String room = "room-" + r;
+                int task = t;
+                engine.execute(room, () -> {
+                    // Không khóa: chỉ worker của phòng chạm vào danh sách của phòng
+                    threadsByRoom.computeIfAbsent(room, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+                    orderByRoom.computeIfAbsent(room, k -> new ArrayList<>()).add(task);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        Set<Thread> allWorkers = new HashSet<>();
+        for (int r = 0; r < rooms; r++) {
+            String room = "room-" + r;
+            assertEquals(1, threadsByRoom.get(room).size());
+            allWorkers.addAll(threadsByRoom.get(room));
+            List<Integer> order = orderByRoom.get(room);
+            for (int t = 0; t < tasksPerRoom; t++) {
+                assertEquals(t, (int) order.get(t));
+            }
+        }
+        assertEquals(engine.getWorkerCount(), allWorkers.size());
+    }
+
+    private double measureThroughput(int roomCount) throws Exception {
+        List<ChatRoom> rooms = new ArrayList<>();
+        for (int r = 0; r < roomCount; r++) {
+            ChatRoom room = new ChatRoom("room-" + r);
+            for (int i = 0; i < MEMBERS_PER_ROOM; i++) {
+                room.add(TestClients.direct(new StubWebSocketSession("room-" + r + "-s" + i, SEND_DELAY_NANOS)));
+            }
+            rooms.add(room);
+        }
+
+        long start = System.nanoTime();
+        runSenders(rooms, SENDERS_PER_ROOM, MESSAGES_PER_SENDER);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long messages = (long) roomCount * SENDERS_PER_ROOM * MESSAGES_PER_SENDER;
+        return messages / seconds;
+    }
+
+    // Các sender gửi đồng thời từ nhiều thread; broadcast được xếp vào hộp thư của worker sở hữu phòng.
+    // Kết thúc khi mọi broadcast đã được giao.
+    private void runSenders(List<ChatRoom> rooms, int sendersPerRoom, int messagesPerSender) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(rooms.size() * sendersPerRoom);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(rooms.size() * sendersPerRoom);
+        try {
+            for (ChatRoom room : rooms) {
+                for (int s = 0; s < sendersPerRoom; s++) {
+                    int sender = s;
+                    executor.execute(() -> {
+                        try {
+                            startSignal.await();
+                            for (int m = 0; m < messagesPerSender; m++) {
+                                ChatMessage message = new ChatMessage("u" + sender, String.valueOf(m), room.getName());
+                                OutboundFrame frame = OutboundFrame.encode(message, objectMapper);
+                                engine.execute(room.getName(), () -> room.broadcast(frame));
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+            startSignal.countDown();
+            assertTrue(done.await(60, TimeUnit.SECONDS), "Senders did not finish in time");
+
+            // Task cuối cùng của mỗi phòng chạy sau mọi broadcast trước nó
+            CountDownLatch delivered = new CountDownLatch(rooms.size());
+            for (ChatRoom room : rooms) {
+                engine.execute(room.getName(), delivered::countDown);
+            }
+            assertTrue(delivered.await(60, TimeUnit.SECONDS), "Broadcasts were not delivered in time");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
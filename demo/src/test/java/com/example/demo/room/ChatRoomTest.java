@@ -0,0 +1,93 @@
+package com.example.demo.room;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.session.ClientSession;
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.support.TestClients;
+import com.example.demo.wire.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketMessage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ChatRoomTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void allMembersReceiveTheSameEncodedFrame() throws Exception {
+        ChatRoom room = new ChatRoom("general");
+        List<StubWebSocketSession> members = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            StubWebSocketSession session = new StubWebSocketSession("s" + i);
+            members.add(session);
+            room.add(TestClients.direct(session));
+        }
+
+        OutboundFrame frame = OutboundFrame.encode(new ChatMessage("sv01", "xin chào", "general"), objectMapper);
+        room.broadcast(frame);
+
+        for (StubWebSocketSession member : members) {
+            assertEquals(1, member.getSentCount());
+            assertSame(frame.asTextMessage(), member.getSentMessages().get(0));
+        }
+    }
+
+    @Test
+    void brokenSessionIsReportedAndOthersStillReceive() throws Exception {
+        ChatRoom room = new ChatRoom("general");
+        StubWebSocketSession healthy = new StubWebSocketSession("ok");
+        StubWebSocketSession broken = new StubWebSocketSession("broken") {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        List<String> failed = new ArrayList<>();
+        room.add(TestClients.direct(healthy));
+        room.add(TestClients.direct(broken, session -> {
+            failed.add(session.getId());
+            room.remove(ClientSession.of(session));
+        }));
+
+        room.broadcast(OutboundFrame.encode(new ChatMessage("sv01", "hi", "general"), objectMapper));
+
+        assertEquals(List.of("broken"), failed);
+        assertEquals(1, room.size());
+        assertEquals(1, healthy.getSentCount());
+    }
+
+    @Test
+    void membershipChangesDuringBroadcastPublishNewSnapshots() throws Exception {
+        ChatRoom room = new ChatRoom("general");
+        StubWebSocketSession lateSession = new StubWebSocketSession("late");
+        ClientSession late = TestClients.direct(lateSession);
+        // Thành viên mới join ngay trong lúc phòng đang gửi cho thành viên đầu tiên
+        StubWebSocketSession firstSession = new StubWebSocketSession("first") {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                room.add(late);
+                super.sendMessage(message);
+            }
+        };
+        ClientSession first = TestClients.direct(firstSession);
+        room.add(first);
+
+        List<ClientSession> before = room.getMembers();
+        room.broadcast(OutboundFrame.encode(new ChatMessage("sv01", "hi", "general"), objectMapper));
+
+        assertEquals(List.of(first), before);
+        assertEquals(2, room.size());
+        assertEquals(1, firstSession.getSentCount());
+        assertEquals(0, lateSession.getSentCount());
+
+        room.remove(first);
+        room.remove(first);
+        assertEquals(List.of(late), room.getMembers());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.room;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PresenceNoticesTest {
+
+    @Test
+    void coalescesJoinsAndCancelsBlips() {
+        PresenceNotices notices = new PresenceNotices();
+        notices.joined("an");
+        notices.left("binh");
+        notices.joined("binh");   // Mất sóng rồi vào lại trong cửa sổ: không thông báo
+        notices.joined("chi");
+        notices.left("dung");
+
+        assertEquals(List.of("an, chi đã tham gia phòng", "dung đã rời phòng"), notices.messages());
+    }
+
+    @Test
+    void longListsAreCounted() {
+        PresenceNotices notices = new PresenceNotices();
+        for (int i = 1; i <= 40; i++) {
+            notices.joined("sv" + i);
+        }
+
+        assertEquals(List.of("sv1, sv2, sv3, sv4, sv5 và 35 người khác đã tham gia phòng"), notices.messages());
+    }
+}
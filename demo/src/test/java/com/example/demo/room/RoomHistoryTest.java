@@ -0,0 +1,106 @@
+package com.example.demo.room;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.wire.BinaryChatCodec;
+import com.example.demo.wire.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomHistoryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void keepsTheLastNFramesInOrder() throws Exception {
+        RoomHistory history = RoomHistory.create(3, new HistoryBudget(1024 * 1024), 0);
+        for (int i = 1; i <= 5; i++) {
+            history.append(frame("tin " + i));
+        }
+
+        assertEquals(3, history.size());
+        assertEquals(List.of("tin 3", "tin 4", "tin 5"), texts(history.snapshot()));
+    }
+
+    @Test
+    void globalBudgetCapsAllRooms() throws Exception {
+        OutboundFrame sample = frame("tin 0");
+        long overhead = 10L * RoomHistory.SLOT_OVERHEAD;
+        // Đủ cho vòng đệm của hai phòng và tổng cộng 4 tin nhắn
+        HistoryBudget budget = new HistoryBudget(2 * overhead + 4L * sample.size());
+        RoomHistory general = RoomHistory.create(10, budget, 0);
+        RoomHistory study = RoomHistory.create(10, budget, 0);
+
+        for (int i = 1; i <= 3; i++) {
+            general.append(frame("tin " + i));
+        }
+        for (int i = 4; i <= 6; i++) {
+            study.append(frame("tin " + i));
+        }
+
+        // Phòng chạm trần tự bỏ tin cũ nhất của mình, tổng không vượt ngân sách
+        assertTrue(budget.getUsedBytes() <= budget.getMaxBytes());
+        assertEquals(List.of("tin 1", "tin 2", "tin 3"), texts(general.snapshot()));
+        assertEquals(List.of("tin 6"), texts(study.snapshot()));
+        assertEquals(general.getBytes() + study.getBytes() + 2 * overhead, budget.getUsedBytes());
+        // Ngân sách đã đầy: phòng thứ ba không có lịch sử
+        assertNull(RoomHistory.create(10, budget, 0));
+    }
+
+    @Test
+    void replayIsOneFrameForBothFormats() throws Exception {
+        RoomHistory history = RoomHistory.create(5, new HistoryBudget(1024 * 1024), 0);
+        history.append(frame("tin 1"));
+        history.append(frame("tin 2"));
+
+        OutboundFrame replay = OutboundFrame.batchOf(history.snapshot());
+        assertEquals("[{\"nickname\":\"sv01\",\"message\":\"tin 1\",\"room\":\"general\"},"
+            + "{\"nickname\":\"sv01\",\"message\":\"tin 2\",\"room\":\"general\"}]", replay.asTextMessage().getPayload());
+
+        assertEquals(BinaryChatCodec.TYPE_BATCH, replay.asBinaryMessage().getPayload().get(0));
+    }
+
+    @Test
+    void resumeSendsOnlyTheMissedRange() throws Exception {
+        RoomHistory history = RoomHistory.create(3, new HistoryBudget(1024 * 1024), 1000);
+        for (int i = 1; i <= 5; i++) {
+            OutboundFrame frame = frame("tin " + i).sequenced(history.nextSequence());
+            history.append(frame);
+        }
+        assertEquals(1005, history.getLastSequence());
+
+        // Vòng đệm còn 1003..1005
+        assertEquals(List.of("tin 4", "tin 5"), texts(history.since(1003)));
+        assertEquals(List.of("tin 3", "tin 4", "tin 5"), texts(history.since(1002)));
+        assertEquals(List.of(), texts(history.since(1005)));
+        // Phần bị lỡ đã rời vòng đệm, hoặc số không thuộc chuỗi của phòng: cần lịch sử đầy đủ
+        assertNull(history.since(1001));
+        assertNull(history.since(0));
+        assertNull(history.since(2000));
+    }
+
+    @Test
+    void sequencedFrameCarriesTheNumberInBothFormats() throws Exception {
+        OutboundFrame frame = frame("tin 1").sequenced(42);
+        assertEquals("{\"seq\":42,\"nickname\":\"sv01\",\"message\":\"tin 1\",\"room\":\"general\"}",
+            frame.asTextMessage().getPayload());
+        assertEquals(42, BinaryChatCodec.decode(frame.asBinaryMessage().getPayload()).sequence());
+    }
+
+    private OutboundFrame frame(String text) throws Exception {
+        return OutboundFrame.encode(new ChatMessage("sv01", text, "general"), objectMapper);
+    }
+
+    private static List<String> texts(List<OutboundFrame> frames) {
+        List<String> texts = new ArrayList<>();
+        for (OutboundFrame frame : frames) {
+            texts.add(frame.getMessage().getMessage());
+        }
+        return texts;
+    }
+}
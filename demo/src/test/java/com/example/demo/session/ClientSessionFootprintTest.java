@@ -0,0 +1,51 @@
+package com.example.demo.session;
+
+import com.example.demo.support.StubWebSocketSession;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Đo heap qua System.gc()/Runtime, kết quả khác nhau theo JVM và bộ thu gom rác: chỉ chạy với
+// `gradle loadTest`
+@Tag("load")
+class ClientSessionFootprintTest {
+
+    private static final int CONNECTIONS = 20_000;
+
+    // Ước lượng bộ nhớ server giữ cho mỗi kết nối rảnh (ClientSession + hàng đợi gửi/nhận),
+    // không tính đối tượng WebSocketSession của container
+    @Test
+    void reportsMemoryPerConnection() {
+        Executor executor = Runnable::run;
+        List<StubWebSocketSession> sessions = new ArrayList<>(CONNECTIONS);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            sessions.add(new StubWebSocketSession("s" + i));
+        }
+
+        long before = usedHeap();
+        List<ClientSession> clients = new ArrayList<>(CONNECTIONS);
+        for (StubWebSocketSession session : sessions) {
+            OutboundQueue outbound = new OutboundQueue(session, 256, OverflowPolicy.DROP_OLDEST, executor, null, s -> { });
+            ClientSession client = new ClientSession(session, outbound, new SerialExecutor(executor));
+            client.attach();
+            clients.add(client);
+        }
+        long after = usedHeap();
+
+        long bytesPerConnection = (after - before) / CONNECTIONS;
+        System.out.println("Per-connection chat state: ~" + bytesPerConnection + " bytes (" + clients.size() + " connections)");
+        assertTrue(bytesPerConnection < 2048, "per-connection state unexpectedly large: " + bytesPerConnection + " bytes");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlowControlledInboundTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final CountDownLatch stuck = new CountDownLatch(1);
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        stuck.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void dropsInsteadOfBlockingWhenNoBlockingPermitIsLeft() {
+        // Các session khác đã chặn đủ số thread cho phép
+        FlowControlledInbound inbound = new FlowControlledInbound(executor, 1, 1, 5000, new Semaphore(0),
+            release -> { }, dropped::incrementAndGet);
+
+        long start = System.nanoTime();
+        inbound.execute(this::awaitStuck);
+        for (int i = 0; i < 20; i++) {
+            inbound.execute(() -> { });
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 1000, "execute() should not block without a permit, took " + elapsedMillis + "ms");
+        assertTrue(dropped.get() > 0);
+    }
+
+    @Test
+    void blockedThreadReturnsItsPermit() {
+        Semaphore permits = new Semaphore(1);
+        FlowControlledInbound inbound = new FlowControlledInbound(executor, 1, 1, 50, permits,
+            release -> { }, dropped::incrementAndGet);
+
+        inbound.execute(this::awaitStuck);
+        while (dropped.get() == 0) {
+            inbound.execute(() -> { });
+        }
+
+        // Lần chặn cuối hết maxBlockMillis rồi bỏ tin nhắn, và trả lại chỗ cho session khác
+        assertEquals(1, permits.availablePermits());
+    }
+
+    private void awaitStuck() {
+        try {
+            stuck.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
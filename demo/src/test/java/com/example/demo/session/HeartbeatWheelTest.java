@@ -0,0 +1,91 @@
+package com.example.demo.session;
+
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.support.TestClients;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeartbeatWheelTest {
+
+    private static final long TICK = 100;
+    private static final long PING_AFTER = 1_000;
+    private static final long EVICT_AFTER = 3_000;
+
+    private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+    private final List<ClientSession> evicted = new ArrayList<>();
+    private final HeartbeatWheel wheel = new HeartbeatWheel(TICK, PING_AFTER, EVICT_AFTER, now::get, evicted::add);
+
+    @Test
+    void silentClientIsPingedThenEvicted() {
+        StubWebSocketSession session = new StubWebSocketSession("silent");
+        ClientSession client = TestClients.direct(session);
+        wheel.register(client);
+
+        advance(PING_AFTER - TICK);
+        assertEquals(0, pings(session));
+
+        advance(2 * TICK);
+        assertEquals(1, pings(session));
+        assertTrue(evicted.isEmpty());
+
+        advance(EVICT_AFTER);
+        assertEquals(List.of(client), evicted);
+        assertEquals(0, wheel.getTrackedCount());
+    }
+
+    @Test
+    void activeClientIsNeitherPingedNorEvicted() {
+        StubWebSocketSession session = new StubWebSocketSession("active");
+        ClientSession client = TestClients.direct(session);
+        wheel.register(client);
+
+        for (int i = 0; i < 50; i++) {
+            advance(PING_AFTER / 2);
+            client.touch(now.get());
+        }
+        assertEquals(0, pings(session));
+        assertTrue(evicted.isEmpty());
+        assertEquals(1, wheel.getTrackedCount());
+    }
+
+    @Test
+    void closedSessionsLeaveTheWheel() {
+        List<ClientSession> clients = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            ClientSession client = TestClients.direct(new StubWebSocketSession("s-" + i));
+            wheel.register(client);
+            clients.add(client);
+        }
+        assertEquals(1_000, wheel.getTrackedCount());
+
+        clients.forEach(ClientSession::markClosed);
+        advance(PING_AFTER + TICK);
+        assertEquals(0, wheel.getTrackedCount());
+        assertTrue(evicted.isEmpty());
+    }
+
+    // Quay bánh xe như thread hẹn giờ thật: mỗi tick đồng hồ tăng TICK ms
+    private void advance(long millis) {
+        for (long elapsed = 0; elapsed < millis; elapsed += TICK) {
+            now.addAndGet(TICK);
+            wheel.tick();
+        }
+    }
+
+    private static long pings(StubWebSocketSession session) {
+        int count = 0;
+        for (WebSocketMessage<?> message : session.getSentMessages()) {
+            if (message instanceof PingMessage) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
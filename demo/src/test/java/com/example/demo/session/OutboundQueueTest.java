@@ -0,0 +1,186 @@
+package com.example.demo.session;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.support.StubWebSocketSession;
+import com.example.demo.wire.OutboundFrame;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void slowClientDoesNotBlockTheCaller() {
+        StubWebSocketSession slow = new StubWebSocketSession("slow", TimeUnit.MILLISECONDS.toNanos(200));
+        OutboundQueue queue = new OutboundQueue(slow, 16, OverflowPolicy.DROP_OLDEST, executor, null, s -> { });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(OutboundFrame.raw("m" + i)));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 100, "offer() should not wait for the socket, took " + elapsedMillis + "ms");
+        assertTrue(slow.getSentCount() < 10, "frames should still be in flight");
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestFrames() throws Exception {
+        BlockingSession session = new BlockingSession();
+        OutboundQueue queue = new OutboundQueue(session, 2, OverflowPolicy.DROP_OLDEST, executor, null, s -> { });
+
+        fillWhileBlocked(queue, session, "m1", "m2", "m3", "m4");
+        session.release();
+        awaitSent(session, 3);
+
+        assertEquals(List.of("m1", "m3", "m4"), session.getSentPayloads());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    void coalesceReplacesBacklogWithNotice() throws Exception {
+        BlockingSession session = new BlockingSession();
+        OutboundQueue queue = new OutboundQueue(session, 2, OverflowPolicy.COALESCE, executor,
+            skipped -> OutboundFrame.raw("skipped " + skipped), s -> { });
+
+        fillWhileBlocked(queue, session, "m1", "m2", "m3", "m4");
+        session.release();
+        awaitSent(session, 3);
+
+        assertEquals(List.of("m1", "skipped 2", "m4"), session.getSentPayloads());
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    void disconnectClosesSlowSession() throws Exception {
+        BlockingSession session = new BlockingSession();
+        OutboundQueue queue = new OutboundQueue(session, 2, OverflowPolicy.DISCONNECT, executor, null, s -> { });
+
+        fillWhileBlocked(queue, session, "m1", "m2", "m3");
+        assertFalse(queue.offer(OutboundFrame.raw("m4")));
+        session.release();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (session.getCloseStatus() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+        assertTrue(queue.isClosed());
+        assertEquals(0, queue.getDepth());
+    }
+
+    @Test
+    void stuckSendPastTheTimeLimitDisconnects() throws Exception {
+        BlockingSession session = new BlockingSession();
+        OutboundQueue queue = new OutboundQueue(session, 16, OverflowPolicy.DROP_OLDEST, executor, null, s -> { },
+            null, 0, 50);
+
+        fillWhileBlocked(queue, session, "m1", "m2");
+        // Còn trong giới hạn: vẫn nhận frame như bình thường
+        assertEquals(1, queue.getDepth());
+        Thread.sleep(100);
+        try {
+            assertFalse(queue.offer(OutboundFrame.raw("m3")));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (session.getCloseStatus() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(CloseStatus.SESSION_NOT_RELIABLE.getCode(), session.getCloseStatus().getCode());
+            assertTrue(queue.isClosed());
+            assertEquals(0, queue.getDepth());
+        } finally {
+            session.release();
+        }
+    }
+
+    @Test
+    void batchWindowSendsChatMessagesAsOneJsonArray() throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession("batched");
+        OutboundQueue queue = new OutboundQueue(session, 64, OverflowPolicy.DROP_OLDEST, executor, null, s -> { },
+            scheduler, 50);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer(OutboundFrame.encode(new ChatMessage("sv0" + i, "m" + i, "general"), objectMapper));
+        }
+        queue.offer(OutboundFrame.raw("pong"));
+        queue.offer(OutboundFrame.encode(new ChatMessage("sv09", "m5", "general"), objectMapper));
+        awaitSent(session, 3);
+
+        List<String> payloads = session.getSentPayloads();
+        ChatMessage[] batch = objectMapper.readValue(payloads.get(0), ChatMessage[].class);
+        assertEquals(5, batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            assertEquals("m" + i, batch[i].getMessage());
+        }
+        assertEquals("pong", payloads.get(1));
+        assertEquals("m5", objectMapper.readValue(payloads.get(2), ChatMessage.class).getMessage());
+        assertEquals(7, queue.getSentCount());
+        assertEquals(3, queue.getWriteCount());
+    }
+
+    // Gửi frame đầu tiên và chờ nó bị kẹt trong socket, sau đó dồn các frame còn lại vào hàng đợi
+    private void fillWhileBlocked(OutboundQueue queue, BlockingSession session, String first, String... rest) throws Exception {
+        queue.offer(OutboundFrame.raw(first));
+        assertTrue(session.sending.await(2, TimeUnit.SECONDS));
+        for (String text : rest) {
+            queue.offer(OutboundFrame.raw(text));
+        }
+    }
+
+    private void awaitSent(StubWebSocketSession session, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (session.getSentCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, session.getSentCount());
+    }
+
+    // Session giữ frame đầu tiên cho tới khi test cho phép (mô phỏng socket bị nghẽn)
+    private static class BlockingSession extends StubWebSocketSession {
+        final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        BlockingSession() {
+            super("blocking");
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            sending.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            super.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+// WebSocketSession giả lập cho test: ghi lại các frame nhận được
+// và có thể mô phỏng độ trễ mạng của mỗi lần gửi
+public class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final long sendDelayNanos;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> sent = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean open = true;
+    private volatile CloseStatus closeStatus;
+    private volatile String acceptedProtocol;
+    private volatile URI uri = URI.create("ws://localhost/chat");
+    private volatile Principal principal;
+
+    public StubWebSocketSession(String id) {
+        this(id, 0);
+    }
+
+    public StubWebSocketSession(String id, long sendDelayNanos) {
+        this.id = id;
+        this.sendDelayNanos = sendDelayNanos;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (!open) {
+            throw new IOException("Session " + id + " is closed");
+        }
+        if (sendDelayNanos > 0) {
+            LockSupport.parkNanos(sendDelayNanos);
+        }
+        sent.add(message);
+    }
+
+    public List<WebSocketMessage<?>> getSentMessages() {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    public List<String> getSentPayloads() {
+        List<String> payloads = new ArrayList<>();
+        for (WebSocketMessage<?> message : getSentMessages()) {
+            if (message instanceof TextMessage textMessage) {
+                payloads.add(textMessage.getPayload());
+            }
+        }
+        return payloads;
+    }
+
+    public int getSentCount() {
+        return sent.size();
+    }
+
+    public CloseStatus getCloseStatus() {
+        return closeStatus;
+    }
+
+    // Subprotocol mà handshake đã chọn (null = JSON mặc định)
+    public void setAcceptedProtocol(String acceptedProtocol) {
+        this.acceptedProtocol = acceptedProtocol;
+    }
+
+    // URL của handshake (query mang thông tin kết nối lại)
+    public void setUri(URI uri) {
+        this.uri = uri;
+    }
+
+    // Tài khoản đã đăng nhập của handshake (null = chưa đăng nhập)
+    public void setPrincipal(Principal principal) {
+        this.principal = principal;
+    }
+
+    @Override
+    public String getId() { return id; }
+
+    @Override
+    public URI getUri() { return uri; }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+
+    @Override
+    public Map<String, Object> getAttributes() { return attributes; }
+
+    @Override
+    public Principal getPrincipal() { return principal; }
+
+    @Override
+    public InetSocketAddress getLocalAddress() { return null; }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() { return null; }
+
+    @Override
+    public String getAcceptedProtocol() { return acceptedProtocol; }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) { }
+
+    @Override
+    public int getTextMessageSizeLimit() { return Integer.MAX_VALUE; }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+
+    @Override
+    public int getBinaryMessageSizeLimit() { return Integer.MAX_VALUE; }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() { return List.of(); }
+
+    @Override
+    public boolean isOpen() { return open; }
+
+    @Override
+    public void close() throws IOException {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        this.closeStatus = status;
+        this.open = false;
+    }
+}
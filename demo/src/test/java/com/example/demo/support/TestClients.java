@@ -0,0 +1,26 @@
+package com.example.demo.support;
+
+import com.example.demo.session.ClientSession;
+import com.example.demo.session.OutboundQueue;
+import com.example.demo.session.OverflowPolicy;
+import org.springframework.web.socket.WebSocketSession;
+import java.util.function.Consumer;
+
+// Tạo ClientSession cho test mà hàng đợi gửi được xả ngay trên thread gọi
+public final class TestClients {
+
+    private TestClients() {
+    }
+
+    public static ClientSession direct(WebSocketSession session) {
+        return direct(session, s -> { });
+    }
+
+    public static ClientSession direct(WebSocketSession session, Consumer<WebSocketSession> onFailure) {
+        OutboundQueue queue = new OutboundQueue(session, Integer.MAX_VALUE, OverflowPolicy.DROP_OLDEST,
+            Runnable::run, null, onFailure);
+        ClientSession client = new ClientSession(session, queue, null);
+        client.attach();
+        return client;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.wire;
+
+import com.example.demo.ChatMessage;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryChatCodecTest {
+
+    @Test
+    void chatMessageRoundTrips() {
+        ChatMessage message = new ChatMessage("sv01", "Xin chào cả lớp 👋", "general");
+        byte[] encoded = BinaryChatCodec.encode(message, 300);
+
+        BinaryChatCodec.Frame frame = BinaryChatCodec.decode(ByteBuffer.wrap(encoded));
+        assertEquals(BinaryChatCodec.TYPE_CHAT, frame.type());
+        assertEquals(300, frame.sequence());
+        assertEquals("sv01", frame.message().getNickname());
+        assertEquals("Xin chào cả lớp 👋", frame.message().getMessage());
+        assertEquals("general", frame.message().getRoom());
+    }
+
+    @Test
+    void nullAndEmptyFieldsStayDistinct() {
+        byte[] encoded = BinaryChatCodec.encode(new ChatMessage(null, "", null), 0);
+
+        ChatMessage decoded = BinaryChatCodec.decode(ByteBuffer.wrap(encoded)).message();
+        assertNull(decoded.getNickname());
+        assertEquals("", decoded.getMessage());
+        assertNull(decoded.getRoom());
+    }
+
+    @Test
+    void decodesFromAnOffsetBuffer() {
+        byte[] encoded = BinaryChatCodec.encode(new ChatMessage("a", "b", "c"), 7);
+        byte[] padded = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, padded, 2, encoded.length);
+
+        ByteBuffer slice = ByteBuffer.wrap(padded, 2, encoded.length).slice();
+        assertEquals("b", BinaryChatCodec.decode(slice).message().getMessage());
+        // decode không làm thay đổi position của buffer gốc
+        assertEquals(0, slice.position());
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        byte[] encoded = BinaryChatCodec.encode(new ChatMessage("sv01", "hello", "general"), 0);
+        byte[] truncated = new byte[encoded.length - 3];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryChatCodec.decode(ByteBuffer.wrap(truncated)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryChatCodec.decode(ByteBuffer.wrap(new byte[] { 99, 0, 0 })));
+        assertThrows(IllegalArgumentException.class, () -> BinaryChatCodec.decode(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    void batchFrameCarriesEachEncodedFrame() {
+        byte[] first = BinaryChatCodec.encode(new ChatMessage("a", "1", "r"), 0);
+        byte[] second = BinaryChatCodec.encode(new ChatMessage("b", "2", "r"), 0);
+        ByteBuffer batch = ByteBuffer.wrap(BinaryChatCodec.encodeBatch(List.of(first, second)));
+
+        assertEquals(BinaryChatCodec.TYPE_BATCH, batch.get());
+        batch.get(); // flags
+        batch.get(); // sequence
+        assertEquals(2, batch.get());
+        assertEquals(first.length, batch.get());
+        ByteBuffer inner = batch.slice();
+        inner.limit(first.length);
+        assertEquals("1", BinaryChatCodec.decode(inner).message().getMessage());
+    }
+
+    @Test
+    void largeBotRepliesAreCompressedAndRoundTrip() {
+        FrameCompressor compressor = new FrameCompressor(6, 256);
+        String help = """
+            📚 **DANH SÁCH LỆNH HỖ TRỢ:**
+
+            🔹 `/help` - Hiển thị danh sách lệnh
+            🔹 `/nội quy` - Xem nội quy phòng chat
+            🔹 `/hướng dẫn` - Hướng dẫn sử dụng
+            🔹 `/join <tên_phòng>` - Tham gia phòng mới
+            """;
+        ChatMessage reply = new ChatMessage("🤖 HelpBot", help, "general");
+
+        byte[] plain = BinaryChatCodec.encode(reply, 0);
+        byte[] compressed = BinaryChatCodec.encode(reply, 0, compressor);
+        assertEquals(BinaryChatCodec.FLAG_DEFLATE, compressed[1]);
+        assertTrue(compressed.length < plain.length / 2);
+
+        ChatMessage decoded = BinaryChatCodec.decode(ByteBuffer.wrap(compressed)).message();
+        assertEquals("🤖 HelpBot", decoded.getNickname());
+        assertEquals(help, decoded.getMessage());
+        assertEquals("general", decoded.getRoom());
+
+        // Dưới ngưỡng thì gửi nguyên văn
+        byte[] small = BinaryChatCodec.encode(new ChatMessage("sv01", "ok", "general"), 0, compressor);
+        assertEquals(0, small[1]);
+        assertEquals(1, compressor.getCompressedFrames());
+    }
+
+    @Test
+    void oversizedCompressedBodyIsRejected() {
+        byte[] frame = { BinaryChatCodec.TYPE_CHAT, BinaryChatCodec.FLAG_DEFLATE, 0, (byte) 0x80, (byte) 0x80, 0x40, 0 };
+        assertThrows(IllegalArgumentException.class, () -> BinaryChatCodec.decode(ByteBuffer.wrap(frame)));
+    }
+}
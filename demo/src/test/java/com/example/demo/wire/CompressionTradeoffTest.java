@@ -0,0 +1,115 @@
+package com.example.demo.wire;
+
+import com.example.demo.ChatMessage;
+import com.example.demo.bot.BotManager;
+import com.example.demo.support.StubWebSocketSession;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Đo đánh đổi CPU / băng thông của việc nén frame nhị phân trên tập tin nhắn điển hình
+// (chủ yếu tin ngắn, xen kẽ trả lời dài của bot), theo mức nén và ngưỡng kích thước
+class CompressionTradeoffTest {
+
+    private static final int ROUNDS = 300;
+    // Một broadcast tới phòng 100 người: permessage-deflate nén lại cho từng kết nối
+    private static final int ROOM_SIZE = 100;
+
+    @Test
+    void reportCpuVersusBandwidth() {
+        List<ChatMessage> traffic = trafficWithBotReplies();
+        assertFalse(traffic.isEmpty());
+
+        Result plain = measure(traffic, null);
+        System.out.printf("%-34s %8d bytes  %6.0f ns/msg%n", "binary, no compression", plain.bytes, plain.nanosPerMessage);
+
+        for (int minSize : new int[] { 0, 256, 512 }) {
+            for (int level : new int[] { 1, 6, 9 }) {
+                Result result = measure(traffic, new FrameCompressor(level, minSize));
+                System.out.printf("%-34s %8d bytes  %6.0f ns/msg  (%.1f%% smaller)%n",
+                    "dictionary, level " + level + ", min " + minSize,
+                    result.bytes, result.nanosPerMessage, 100.0 * (plain.bytes - result.bytes) / plain.bytes);
+                assertTrue(result.bytes <= plain.bytes);
+            }
+        }
+
+        // Tương đương permessage-deflate không giữ ngữ cảnh: không có từ điển, nén lại cho mỗi người nhận
+        Result perConnection = measurePerMessageDeflate(traffic);
+        Result shared = measure(traffic, new FrameCompressor(6, 256));
+        System.out.printf("%-34s %8d bytes  %6.0f ns/msg%n", "per-message deflate, no dictionary",
+            perConnection.bytes, perConnection.nanosPerMessage);
+        System.out.printf("CPU per broadcast to %d members: per-connection deflate %.1f us, shared dictionary frame %.1f us%n",
+            ROOM_SIZE, perConnection.nanosPerMessage * ROOM_SIZE / 1000, shared.nanosPerMessage / 1000);
+        assertTrue(shared.bytes < perConnection.bytes);
+    }
+
+    private Result measure(List<ChatMessage> traffic, FrameCompressor compressor) {
+        long bytes = 0;
+        for (ChatMessage message : traffic) {
+            bytes += BinaryChatCodec.encode(message, 0, compressor).length;
+        }
+        long elapsed = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (ChatMessage message : traffic) {
+                    BinaryChatCodec.encode(message, 0, compressor);
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        return new Result(bytes, (double) elapsed / (ROUNDS * traffic.size()));
+    }
+
+    private Result measurePerMessageDeflate(List<ChatMessage> traffic) {
+        Deflater deflater = new Deflater(6, true);
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        long elapsed = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            bytes = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                for (ChatMessage message : traffic) {
+                    deflater.setInput(BinaryChatCodec.encode(message, 0));
+                    deflater.finish();
+                    bytes += deflater.deflate(buffer);
+                    deflater.reset();
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        deflater.end();
+        return new Result(bytes / ROUNDS, (double) elapsed / (ROUNDS * traffic.size()));
+    }
+
+    // 100 tin nhắn: 80 tin ngắn của người dùng, 12 thông báo hệ thống, 8 trả lời thật của bot
+    private static List<ChatMessage> trafficWithBotReplies() {
+        BotManager botManager = new BotManager();
+        StubWebSocketSession session = new StubWebSocketSession("admin");
+        List<ChatMessage> botReplies = new ArrayList<>();
+        for (String command : new String[] { "/help", "/nội quy", "/hướng dẫn", "/list-bots" }) {
+            botReplies.addAll(botManager.processMessage(new ChatMessage("sv01", command, "general"), session));
+        }
+
+        List<ChatMessage> traffic = new ArrayList<>();
+        String[] shortTexts = { "ok", "chào mọi người", "bài 3 làm sao vậy?", "mình nộp rồi nhé", "haha 😂" };
+        for (int i = 0; i < 80; i++) {
+            traffic.add(new ChatMessage("sv" + (i % 40), shortTexts[i % shortTexts.length], "general"));
+        }
+        for (int i = 0; i < 12; i++) {
+            traffic.add(new ChatMessage("System", "sv" + i + " đã tham gia phòng", "general"));
+        }
+        for (int i = 0; i < 8; i++) {
+            traffic.add(botReplies.get(i % botReplies.size()));
+        }
+        return traffic;
+    }
+
+    private record Result(long bytes, double nanosPerMessage) {
+    }
+}
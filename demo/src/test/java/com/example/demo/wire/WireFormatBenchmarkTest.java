@@ -0,0 +1,104 @@
+package com.example.demo.wire;
+
+import com.example.demo.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// So sánh JSON (Jackson) với subprotocol nhị phân trên một tập tin nhắn chat điển hình:
+// kích thước trên đường truyền và thời gian encode/parse mỗi tin nhắn
+class WireFormatBenchmarkTest {
+
+    // Số lần lặp lại cả tập tin nhắn trong mỗi phép đo
+    private static final int ROUNDS = 2_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareJsonAndBinaryWireFormats() throws Exception {
+        List<ChatMessage> traffic = typicalTraffic();
+
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+        List<String> jsonFrames = new ArrayList<>();
+        List<byte[]> binaryFrames = new ArrayList<>();
+        for (ChatMessage message : traffic) {
+            byte[] json = objectMapper.writeValueAsBytes(message);
+            byte[] binary = BinaryChatCodec.encode(message, 0);
+            jsonBytes += json.length;
+            binaryBytes += binary.length;
+            jsonFrames.add(new String(json, StandardCharsets.UTF_8));
+            binaryFrames.add(binary);
+        }
+        double saved = 100.0 * (jsonBytes - binaryBytes) / jsonBytes;
+        System.out.printf("Bytes on wire for %d messages: JSON %d, binary %d (%.1f%% smaller)%n",
+            traffic.size(), jsonBytes, binaryBytes, saved);
+        assertTrue(binaryBytes < jsonBytes);
+
+        // Chạy hai lượt: lượt đầu để JIT khởi động, lượt sau mới in kết quả
+        for (int round = 0; round < 2; round++) {
+            long jsonEncode = time(() -> {
+                for (ChatMessage message : traffic) {
+                    objectMapper.writeValueAsBytes(message);
+                }
+            });
+            long binaryEncode = time(() -> {
+                for (ChatMessage message : traffic) {
+                    BinaryChatCodec.encode(message, 0);
+                }
+            });
+            long jsonParse = time(() -> {
+                for (String frame : jsonFrames) {
+                    objectMapper.readValue(frame, ChatMessage.class);
+                }
+            });
+            long binaryParse = time(() -> {
+                for (byte[] frame : binaryFrames) {
+                    BinaryChatCodec.decode(ByteBuffer.wrap(frame));
+                }
+            });
+            if (round == 1) {
+                double perMessage = (double) ROUNDS * traffic.size();
+                System.out.printf("encode: JSON %.0f ns/msg, binary %.0f ns/msg%n",
+                    jsonEncode / perMessage, binaryEncode / perMessage);
+                System.out.printf("parse:  JSON %.0f ns/msg, binary %.0f ns/msg%n",
+                    jsonParse / perMessage, binaryParse / perMessage);
+            }
+        }
+    }
+
+    // Tỉ lệ xấp xỉ lưu lượng thật: chủ yếu tin nhắn ngắn, một ít thông báo hệ thống và trả lời của bot
+    private static List<ChatMessage> typicalTraffic() {
+        List<ChatMessage> traffic = new ArrayList<>();
+        String[] shortTexts = { "ok", "chào mọi người", "bài 3 làm sao vậy?", "mình nộp rồi nhé", "haha 😂", "/quiz" };
+        for (int i = 0; i < 80; i++) {
+            traffic.add(new ChatMessage("sv" + (i % 40), shortTexts[i % shortTexts.length], "general"));
+        }
+        for (int i = 0; i < 15; i++) {
+            traffic.add(new ChatMessage("System", "sv" + i + " đã tham gia phòng", "general"));
+        }
+        for (int i = 0; i < 5; i++) {
+            traffic.add(new ChatMessage("🤖 QuizBot",
+                "❓ Câu hỏi " + i + ": Thủ đô của Việt Nam là gì?\nA. Hà Nội\nB. Huế\nC. Đà Nẵng\nD. TP.HCM", "general"));
+        }
+        return traffic;
+    }
+
+    private long time(ThrowingRunnable body) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            body.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}